@@ -0,0 +1,290 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CellRangeRules keeps values (such as styles) that apply to single cells and
+ * to rectangular ranges of cells. The most recently added rule that covers a
+ * cell wins. Single cells are kept in a map so that styling cells one at a
+ * time stays cheap to look up; ranges are kept in a list. Rules that are
+ * completely covered by a newer range are dropped, and a range that continues
+ * the one added just before it with the same value is merged into it. The
+ * browser keeps a copy of the rules and is sent only the rules added since the
+ * last time, which it adds the same way (see DataGrid's AddRules function).
+ */
+class CellRangeRules {
+
+    /**
+     * used as the end of a range that has no end
+     */
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+    /**
+     * the rules for single cells, by getKey
+     */
+    private final Map<Long, Rule> cells = new HashMap<>();
+    /**
+     * the rules for ranges, oldest first
+     */
+    private final List<Rule> ranges = new ArrayList<>();
+    /**
+     * the rules added since the last call to appendChanges, oldest first
+     */
+    private final List<Rule> changes = new ArrayList<>();
+    /**
+     * the sequence number of the newest rule
+     */
+    private int sequence = 0;
+
+    /**
+     * Adds a rule for the given range; ends are inclusive
+     *
+     * @param rowStart the first row
+     * @param rowEnd the last row, or UNBOUNDED
+     * @param colStart the first column
+     * @param colEnd the last column, or UNBOUNDED
+     * @param value the value for the cells in the range
+     */
+    void add(int rowStart, int rowEnd, int colStart, int colEnd, String value) {
+        changes.add(new Rule(rowStart, rowEnd, colStart, colEnd, value, 0));
+        Rule rule = new Rule(rowStart, rowEnd, colStart, colEnd, value, ++sequence);
+        if (rowStart == rowEnd && colStart == colEnd) {
+            cells.put(getKey(rowStart, colStart), rule);
+            return;
+        }
+        for (Iterator<Rule> iterator = cells.values().iterator(); iterator.hasNext();) {
+            if (rule.covers(iterator.next())) {
+                iterator.remove();
+            }
+        }
+        ranges.removeIf(old -> rule.covers(old));
+        if (!ranges.isEmpty()) {
+            Rule last = ranges.get(ranges.size() - 1);
+            if (last.sequence == sequence - 1 && last.value.equals(value)) { //nothing was added in between
+                if (last.rowStart == rowStart && last.rowEnd == rowEnd && last.colEnd != UNBOUNDED && last.colEnd + 1 == colStart) {
+                    last.colEnd = colEnd;
+                    last.sequence = sequence;
+                    return;
+                } else if (last.colStart == colStart && last.colEnd == colEnd && last.rowEnd != UNBOUNDED && last.rowEnd + 1 == rowStart) {
+                    last.rowEnd = rowEnd;
+                    last.sequence = sequence;
+                    return;
+                }
+            }
+        }
+        ranges.add(rule);
+    }
+
+    /**
+     * Gets the value for the given cell
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value of the newest rule covering the cell, or null
+     */
+    String get(int row, int col) {
+        Rule cell = cells.get(getKey(row, col));
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            Rule rule = ranges.get(i);
+            if (cell != null && rule.sequence < cell.sequence) {
+                break; //the cell's own rule is newer than the rest
+            } else if (rule.contains(row, col)) {
+                return rule.value;
+            }
+        }
+        return cell == null ? null : cell.value;
+    }
+
+    /**
+     * @return true if rules were added since the last call to appendChanges
+     */
+    boolean hasChanges() {
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Forgets the rules added since the last call to appendChanges, when the
+     * browser will be sent all of them anyway
+     */
+    void clearChanges() {
+        changes.clear();
+    }
+
+    /**
+     * Removes all of the rules
+     */
+    void clear() {
+        cells.clear();
+        ranges.clear();
+        changes.clear();
+        sequence = 0;
+    }
+
+    /**
+     * Appends all of the rules as a JavaScript object: c holds [sequence,
+     * value] of each single cell by "row_col", r holds [rowStart, rowEnd,
+     * colStart, colEnd, value, sequence] of each range oldest first, and n is
+     * the newest sequence number. The browser now has every rule, so there are
+     * no changes left to send.
+     *
+     * @param script the JavaScript being built
+     */
+    void appendScript(StringBuilder script) {
+        script.append("{c: {");
+        boolean first = true;
+        for (Rule rule : cells.values()) {
+            script.append(first ? "\"" : ", \"").append(rule.rowStart).append("_").append(rule.colStart).append("\": [").append(rule.sequence).append(", ");
+            appendString(rule.value, script);
+            script.append("]");
+            first = false;
+        }
+        script.append("}, r: [");
+        for (int i = 0; i < ranges.size(); i++) {
+            Rule rule = ranges.get(i);
+            script.append(i == 0 ? "[" : ",[");
+            appendRange(rule, script);
+            script.append(",").append(rule.sequence).append("]");
+        }
+        script.append("], n: ").append(sequence).append("}");
+        changes.clear();
+    }
+
+    /**
+     * Appends the rules added since the last call as a JavaScript array of
+     * [rowStart, rowEnd, colStart, colEnd, value] arrays, oldest first, and
+     * forgets them
+     *
+     * @param script the JavaScript being built
+     */
+    void appendChanges(StringBuilder script) {
+        script.append("[");
+        for (int i = 0; i < changes.size(); i++) {
+            script.append(i == 0 ? "[" : ",[");
+            appendRange(changes.get(i), script);
+            script.append("]");
+        }
+        script.append("]");
+        changes.clear();
+    }
+
+    /**
+     * Appends the range and value of a rule, separated by commas
+     *
+     * @param rule the rule
+     * @param script the JavaScript being built
+     */
+    private static void appendRange(Rule rule, StringBuilder script) {
+        script.append(rule.rowStart).append(",").append(rule.rowEnd).append(",").append(rule.colStart).append(",").append(rule.colEnd).append(",");
+        appendString(rule.value, script);
+    }
+
+    /**
+     * Appends a value as a JavaScript string
+     *
+     * @param value the value
+     * @param script the JavaScript being built
+     */
+    private static void appendString(String value, StringBuilder script) {
+        script.append("\"").append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append("\"");
+    }
+
+    /**
+     * @param row the row index
+     * @param col the column index
+     * @return the key of the cell in the map of single cells
+     */
+    private static long getKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    /**
+     * A value that applies to a range of cells
+     */
+    private static class Rule {
+
+        /**
+         * the inclusive range of cells
+         */
+        int rowStart, rowEnd, colStart, colEnd;
+        /**
+         * the value for the cells in the range
+         */
+        final String value;
+        /**
+         * orders the rules; the higher one wins
+         */
+        int sequence;
+
+        /**
+         * Constructor
+         *
+         * @param rowStart the first row
+         * @param rowEnd the last row
+         * @param colStart the first column
+         * @param colEnd the last column
+         * @param value the value for the cells in the range
+         * @param sequence orders the rules
+         */
+        Rule(int rowStart, int rowEnd, int colStart, int colEnd, String value, int sequence) {
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @param row the row index
+         * @param col the column index
+         * @return true if the cell is in this range
+         */
+        boolean contains(int row, int col) {
+            return row >= rowStart && row <= rowEnd && col >= colStart && col <= colEnd;
+        }
+
+        /**
+         * @param other another rule
+         * @return true if the other rule's range is entirely within this range
+         */
+        boolean covers(Rule other) {
+            return other.rowStart >= rowStart && other.rowEnd <= rowEnd && other.colStart >= colStart && other.colEnd <= colEnd;
+        }
+    }
+
+}
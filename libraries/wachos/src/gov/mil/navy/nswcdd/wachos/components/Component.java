@@ -33,12 +33,16 @@
 package gov.mil.navy.nswcdd.wachos.components;
 
 import gov.mil.navy.nswcdd.wachos.components.layout.Layout;
+import gov.mil.navy.nswcdd.wachos.tools.AssetBundles;
 import gov.mil.navy.nswcdd.wachos.tools.WSession;
 import gov.mil.navy.nswcdd.wachos.tools.WTools;
 import gov.mil.navy.nswcdd.wachos.tools.Color;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * The Component class serves as the foundation for creating WACHOS graphical
@@ -77,6 +81,18 @@ import java.util.Map;
  */
 public abstract class Component<T extends Component> implements Serializable {
 
+    /**
+     * the modules of a component that doesn't need any
+     */
+    private static final String[] NO_MODULES = new String[0];
+    /**
+     * finds script tags, with their attributes and bodies
+     */
+    private static final Pattern SCRIPT = Pattern.compile("<script([^>]*)>(.*?)</script>", Pattern.DOTALL);
+    /**
+     * finds the src attribute of a script tag
+     */
+    private static final Pattern SCRIPT_SRC = Pattern.compile("src\\s*=\\s*(['\"])(.*?)\\1");
     /**
      * HTML properties for this component
      */
@@ -539,6 +555,51 @@ public abstract class Component<T extends Component> implements Serializable {
         return toHtml();
     }
 
+    /**
+     * Gets the JavaScript modules this component needs, such as "chart"; they
+     * are loaded the first time a component that needs them is shown, and its
+     * scripts wait until they are (see AssetBundles)
+     *
+     * @return the names of the modules; none by default
+     */
+    public String[] getModules() {
+        return NO_MODULES;
+    }
+
+    /**
+     * Makes the scripts in some HTML wait for the modules this component needs;
+     * a script tag that loads a file is replaced with one that loads it after
+     * them
+     *
+     * @param html the HTML, as generated by toHtml
+     * @return the HTML, with the scripts wrapped in tfRequire
+     */
+    protected String requireModules(String html) {
+        String[] modules = getModules();
+        if (modules.length == 0) {
+            return html;
+        }
+        Matcher matcher = SCRIPT.matcher(html);
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            String attributes = matcher.group(1);
+            Matcher src = SCRIPT_SRC.matcher(attributes);
+            String replacement;
+            if (src.find()) {
+                String[] urls = Arrays.copyOf(modules, modules.length + 1);
+                urls[modules.length] = src.group(2);
+                replacement = "<script>" + AssetBundles.require(urls, "") + "</script>";
+            } else if (attributes.contains("type") && !attributes.contains("javascript")) {
+                replacement = matcher.group(); //not a script, such as a shader
+            } else {
+                replacement = "<script" + attributes + ">" + AssetBundles.require(modules, matcher.group(2)) + "</script>";
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
     /**
      * To be called when this component is no longer needed; does nothing by
      * default
@@ -555,7 +616,7 @@ public abstract class Component<T extends Component> implements Serializable {
         if (session == null) {
             session = WSession.getSession(); //can happen if the component hasn't been added to a layout yet
         }
-        session.exec(javascript);
+        session.exec(getModules().length == 0 ? javascript : AssetBundles.run(getModules(), javascript));
     }
 
     /**
@@ -568,6 +629,6 @@ public abstract class Component<T extends Component> implements Serializable {
         if (session == null) {
             session = WSession.getSession(); //can happen if the component hasn't been added to a layout yet
         }
-        session.exec(javascript, milliDelay);
+        session.exec(getModules().length == 0 ? javascript : AssetBundles.run(getModules(), javascript), milliDelay);
     }
 }
@@ -75,6 +75,13 @@ public class ComponentListeners {
         listeners.remove(listener);
     }
 
+    /**
+     * @return true if there are no listeners
+     */
+    public boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
     /**
      * Removes all of the elements from this list
      */
@@ -32,8 +32,16 @@
  */
 package gov.mil.navy.nswcdd.wachos.components;
 
-import java.util.HashMap;
+import gov.mil.navy.nswcdd.wachos.tools.DelimitedWriter;
+import gov.mil.navy.nswcdd.wachos.tools.FlushScheduler;
+import gov.mil.navy.nswcdd.wachos.tools.WSession;
+import gov.mil.navy.nswcdd.wachos.tools.WTools;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * Provides a grid of editable data
@@ -41,20 +49,68 @@ import java.util.Map;
 public class DataGrid extends Component {
 
     /**
-     * the data that makes up this grid
+     * the data that makes up this grid; null if the grid was created from
+     * numbers or is backed by a DataGridProvider
+     *
+     * @deprecated use getValue, getRowCount and getColumnCount, which work for
+     * every kind of grid
      */
+    @Deprecated
     public String[][] data;
     /**
-     * captures the formatting of a given cell; key is [row],[col]; value is the
-     * content of the 'style=' tag
+     * supplies the data block by block as the user scrolls; null if the whole
+     * grid is sent to the browser
+     */
+    private DataGridProvider provider;
+    /**
+     * number of rows that the browser requests at a time from the provider
+     */
+    private int blockSize = 100;
+    /**
+     * number of blocks that the browser keeps before dropping the least
+     * recently used one
      */
-    private final Map<String, String> formatMap = new HashMap<>();
+    private int cachedBlockLimit = 20;
     /**
-     * captures editability for a given cell; key is [row],[col]; value is flag
-     * indicating if editing can happen; unless flag is false, editing is
+     * captures the formatting of cells, columns and rows; value is the content
+     * of the 'style=' tag; a cell style beats a column style, which beats a
+     * row style
+     */
+    private final CellRangeRules cellStyles = new CellRangeRules(), columnStyles = new CellRangeRules(), rowStyles = new CellRangeRules();
+    /**
+     * captures editability of cells, columns and rows; value is flag
+     * indicating if editing can happen; unless a flag is false, editing is
      * possible!
      */
-    private final Map<String, String> editMap = new HashMap<>();
+    private final CellRangeRules cellEditing = new CellRangeRules(), columnEditing = new CellRangeRules(), rowEditing = new CellRangeRules();
+    /**
+     * cell values from setCell that haven't been sent to the client yet; key is
+     * the row, and value is the new value by column
+     */
+    private final Map<Integer, Map<Integer, String>> dirtyCells = new LinkedHashMap<>();
+    /**
+     * rows that need to be rendered again on the next flush
+     */
+    private final TreeSet<Integer> invalidRows = new TreeSet<>();
+    /**
+     * flag indicating if every row needs to be rendered again on the next
+     * flush
+     */
+    private boolean invalidateAll = false;
+    /**
+     * sends the collected changes to the client; collects changes for about
+     * one animation frame by default
+     */
+    private final FlushScheduler flusher = new FlushScheduler(16, this::flush);
+    /**
+     * when more rows than this change in one flush, the whole grid is rendered
+     * again rather than a list of rows
+     */
+    private static final int MAX_INVALID_ROWS = 1000;
+    /**
+     * separates the values of a pasted or filled block of cells
+     */
+    private static final char RANGE_SEPARATOR = '\u001f';
     /**
      * default width and height of widget
      */
@@ -64,21 +120,32 @@ public class DataGrid extends Component {
      */
     private int cellWidth = 60;
     /**
-     * listens for when the available options change
+     * listens for when the user edits a single cell; the update is the row,
+     * column and new value separated by spaces. When the user pastes or fills
+     * a block of cells, this gets an update for each cell only if there are no
+     * cellRangeChangedListeners.
      */
     public final ComponentListeners cellChangedListeners = new ComponentListeners();
+    /**
+     * listens for when the user pastes or fills a block of cells; the update is
+     * the first row, first column, last row and last column (inclusive) of the
+     * changed cells separated by spaces, and the new values are already in the
+     * grid's data or provider
+     */
+    public final ComponentListeners cellRangeChangedListeners = new ComponentListeners();
     /**
      * listens for when the available options change
      */
     public final ComponentListeners cellSelectionListeners = new ComponentListeners();
 
     /**
-     * Constructor
+     * Constructor; the numbers are kept in a DoubleMatrixProvider and only
+     * formatted as their rows are sent to the browser
      *
      * @param data the data that makes up this grid
      */
     public DataGrid(double[][] data) {
-        this.data = toStrings(data);
+        this.provider = new DoubleMatrixProvider(data);
     }
 
     /**
@@ -91,29 +158,25 @@ public class DataGrid extends Component {
     }
 
     /**
-     * Converts the 2D array of doubles to a 2D array of Strings
+     * Constructor for a grid whose rows are requested from the provider as the
+     * user scrolls, rather than all being embedded in the page
      *
-     * @param data convert this
-     * @return the String representations of the doubles
+     * @param provider supplies the rows of the grid
      */
-    private String[][] toStrings(double[][] data) {
-        String[][] dataStrs = new String[data.length][data[0].length];
-        for (int i = 0; i < data.length; i++) {
-            for (int j = 0; j < data[0].length; j++) {
-                dataStrs[i][j] = data[i][j] + "";
-            }
-        }
-        return dataStrs;
+    public DataGrid(DataGridProvider provider) {
+        this.provider = provider;
     }
 
     /**
-     * Sets the data of this grid to be this new 2D array
+     * Sets the data of this grid to be this new 2D array; the numbers are kept
+     * in a DoubleMatrixProvider and only formatted as their rows are sent to
+     * the browser
      *
      * @param data the new 2D array that makes up this grid
      * @return this
      */
     public DataGrid setData(double[][] data) {
-        return setData(toStrings(data));
+        return setProvider(new DoubleMatrixProvider(data));
     }
 
     /**
@@ -124,6 +187,7 @@ public class DataGrid extends Component {
      */
     public DataGrid setData(String[][] data) {
         this.data = data;
+        this.provider = null;
         if (isRendered()) {
             redraw();
         }
@@ -131,50 +195,304 @@ public class DataGrid extends Component {
     }
 
     /**
-     * Sets the style of the specified row
+     * Sets the provider that supplies the rows of this grid as the user
+     * scrolls
      *
-     * @param row the index of the row to style
-     * @param style the css styling for the row
+     * @param provider supplies the rows of the grid
      * @return this
      */
-    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
-    public DataGrid setRowStyle(int row, String style) {
-        StringBuilder rowStyles = new StringBuilder();
-        formatMap.put(row + ",∞", style);
+    public DataGrid setProvider(DataGridProvider provider) {
+        this.provider = provider;
+        this.data = null;
         if (isRendered()) {
-            rowStyles.append("FormatMap.set(\"" + row + ",∞\", \"" + style + "\");\n"
-                    + getId() + "grid.invalidateRow(" + row + ");\n"
-                    + getId() + "grid.render();\n");
+            redraw();
         }
-        if (isRendered()) {
-            exec(rowStyles.toString());
+        return this;
+    }
+
+    /**
+     * @return the provider that supplies the rows of this grid, or null if the
+     * whole grid is sent to the browser
+     */
+    public DataGridProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Sets how many rows the browser requests from the provider at a time
+     *
+     * @param blockSize the number of rows in each block
+     * @return this
+     */
+    public DataGrid setBlockSize(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+        if (isRendered() && provider != null) {
+            redraw();
         }
         return this;
     }
 
     /**
-     * Sets the style of the specified row
+     * Sets how many blocks of rows the browser keeps; when there are more, the
+     * least recently used block is dropped and requested again if needed
      *
-     * @param col the index of the column to style
-     * @param style the css styling for the column
+     * @param cachedBlockLimit the maximum number of blocks kept by the browser
      * @return this
      */
-    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
-    public DataGrid setColumnStyle(int col, String style) {
-        StringBuilder colStyles = new StringBuilder();
-        formatMap.put("∞," + col, style);
+    public DataGrid setCachedBlockLimit(int cachedBlockLimit) {
+        this.cachedBlockLimit = Math.max(1, cachedBlockLimit);
+        if (isRendered() && provider != null) {
+            exec(getId() + "data.limit = " + this.cachedBlockLimit + ";");
+        }
+        return this;
+    }
 
-        if (isRendered()) {
-            colStyles.append("FormatMap.set(\"∞," + col + "\", \"" + style + "\");\n"
-                    + getId() + "grid.invalidate();\n"
-                    + getId() + "grid.render();\n");
+    /**
+     * Tells the browser to drop the rows it has received from the provider and
+     * request them again; call this when the provider's values or row count
+     * have changed
+     */
+    public void refresh() {
+        if (isRendered() && provider != null) {
+            exec(getId() + "data.reset(" + provider.getRowCount() + ");");
         }
-        if (isRendered()) {
-            exec(colStyles.toString());
+    }
+
+    /**
+     * @return the number of rows in this grid
+     */
+    public int getRowCount() {
+        return provider != null ? provider.getRowCount() : data.length;
+    }
+
+    /**
+     * @return the number of columns in this grid
+     */
+    public int getColumnCount() {
+        return provider != null ? provider.getColumnCount() : data.length == 0 ? 0 : data[0].length;
+    }
+
+    /**
+     * Gets the value of a single cell
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value of the cell
+     */
+    public String getValue(int row, int col) {
+        return provider != null ? provider.getBlock(row, row + 1)[0][col] : data[row][col];
+    }
+
+    /**
+     * Sets the value of a single cell; changes are collected and sent to the
+     * client together, once per flush interval
+     *
+     * @param row the row index
+     * @param col the column index
+     * @param value the new value of the cell
+     * @return this
+     */
+    public DataGrid setCell(int row, int col, String value) {
+        synchronized (dirtyCells) {
+            storeCell(row, col, value);
         }
+        flusher.schedule();
         return this;
     }
 
+    /**
+     * Sets the values of many cells that aren't necessarily next to each other
+     *
+     * @param rows the row index of each cell
+     * @param cols the column index of each cell
+     * @param values the new value of each cell
+     * @return this
+     */
+    public DataGrid setCells(int[] rows, int[] cols, String[] values) {
+        synchronized (dirtyCells) {
+            for (int i = 0; i < values.length; i++) {
+                storeCell(rows[i], cols[i], values[i]);
+            }
+        }
+        flusher.schedule();
+        return this;
+    }
+
+    /**
+     * Sets the values of a rectangular block of cells
+     *
+     * @param rowStart the row index of the top left cell
+     * @param colStart the column index of the top left cell
+     * @param values the new values, one array of column values per row
+     * @return this
+     */
+    public DataGrid setRange(int rowStart, int colStart, String[][] values) {
+        synchronized (dirtyCells) {
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values[i].length; j++) {
+                    storeCell(rowStart + i, colStart + j, values[i][j]);
+                }
+            }
+        }
+        flusher.schedule();
+        return this;
+    }
+
+    /**
+     * Writes a value into the data or provider and marks it to be sent to the
+     * client; must be called while holding the lock on dirtyCells
+     *
+     * @param row the row index
+     * @param col the column index
+     * @param value the new value of the cell
+     */
+    private void storeCell(int row, int col, String value) {
+        if (provider != null) {
+            provider.setValue(row, col, value);
+        } else {
+            data[row][col] = value;
+        }
+        markCell(row, col, value);
+    }
+
+    /**
+     * Sends the stored values of cells back to the client, after the provider
+     * rejected what the user typed
+     *
+     * @param rowStart the first row
+     * @param colStart the first column
+     * @param values the stored values, one array of column values per row
+     */
+    private void revertCells(int rowStart, int colStart, String[][] values) {
+        synchronized (dirtyCells) {
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values[i].length; j++) {
+                    markCell(rowStart + i, colStart + j, values[i][j]);
+                }
+            }
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Marks a cell's value to be sent to the client; must be called while
+     * holding the lock on dirtyCells
+     *
+     * @param row the row index
+     * @param col the column index
+     * @param value the value of the cell
+     */
+    private void markCell(int row, int col, String value) {
+        Map<Integer, String> dirtyRow = dirtyCells.get(row);
+        if (dirtyRow == null) {
+            dirtyRow = new LinkedHashMap<>();
+            dirtyCells.put(row, dirtyRow);
+        }
+        dirtyRow.put(col, value);
+        invalidateRows(row, row);
+    }
+
+    /**
+     * Marks rows to be rendered again on the next flush; must be called while
+     * holding the lock on dirtyCells
+     *
+     * @param rowStart the first row
+     * @param rowEnd the last row, inclusive
+     */
+    private void invalidateRows(int rowStart, int rowEnd) {
+        if (invalidateAll) {
+            return;
+        } else if (rowEnd == CellRangeRules.UNBOUNDED || rowEnd - rowStart + invalidRows.size() >= MAX_INVALID_ROWS) {
+            invalidateAll = true;
+            invalidRows.clear();
+            return;
+        }
+        for (int row = rowStart; row <= rowEnd; row++) {
+            invalidRows.add(row);
+        }
+    }
+
+    /**
+     * Sets how often the changes from setCell and the style and editing
+     * methods are sent to the client
+     *
+     * @param millis the number of milliseconds to collect changes before
+     * sending them
+     */
+    public void setFlushInterval(long millis) {
+        flusher.setInterval(millis);
+    }
+
+    /**
+     * Sends all pending cell values, styles and editability to the client,
+     * followed by a single render of the rows that changed
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    public void flush() {
+        StringBuilder script = new StringBuilder();
+        synchronized (dirtyCells) {
+            if (isRendered()) {
+                if (!dirtyCells.isEmpty()) {
+                    script.append(getId() + "SetCells([");
+                    boolean first = true;
+                    for (Map.Entry<Integer, Map<Integer, String>> dirtyRow : dirtyCells.entrySet()) {
+                        for (Map.Entry<Integer, String> dirtyCell : dirtyRow.getValue().entrySet()) {
+                            String value = dirtyCell.getValue() == null ? "" : dirtyCell.getValue();
+                            script.append(first ? "[" : ",[").append(dirtyRow.getKey()).append(",").append(dirtyCell.getKey())
+                                    .append(",\"").append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r")).append("\"]");
+                            first = false;
+                        }
+                    }
+                    script.append("]);\n");
+                }
+                appendRuleChanges(getId() + "Styles.cell", cellStyles, script);
+                appendRuleChanges(getId() + "Styles.col", columnStyles, script);
+                appendRuleChanges(getId() + "Styles.row", rowStyles, script);
+                appendRuleChanges(getId() + "Editing.cell", cellEditing, script);
+                appendRuleChanges(getId() + "Editing.col", columnEditing, script);
+                appendRuleChanges(getId() + "Editing.row", rowEditing, script);
+                if (invalidateAll) {
+                    script.append(getId() + "grid.invalidate();\n");
+                } else if (!invalidRows.isEmpty()) {
+                    script.append(getId() + "grid.invalidateRows(" + invalidRows + ");\n"
+                            + getId() + "grid.render();\n");
+                }
+            } else {
+                for (CellRangeRules rules : new CellRangeRules[]{cellStyles, columnStyles, rowStyles, cellEditing, columnEditing, rowEditing}) {
+                    rules.clearChanges(); //they'll all be sent when the grid is drawn
+                }
+            }
+            dirtyCells.clear();
+            invalidRows.clear();
+            invalidateAll = false;
+        }
+        if (script.length() > 0) {
+            exec(script.toString());
+        }
+    }
+
+    /**
+     * Sets the style of the specified row
+     *
+     * @param row the index of the row to style
+     * @param style the css styling for the row
+     * @return this
+     */
+    public DataGrid setRowStyle(int row, String style) {
+        return addStyle(rowStyles, row, row, 0, CellRangeRules.UNBOUNDED, style);
+    }
+
+    /**
+     * Sets the style of the specified column
+     *
+     * @param col the index of the column to style
+     * @param style the css styling for the column
+     * @return this
+     */
+    public DataGrid setColumnStyle(int col, String style) {
+        return addStyle(columnStyles, 0, CellRangeRules.UNBOUNDED, col, col, style);
+    }
+
     /**
      * Sets the CSS style for the given row/col cell
      *
@@ -184,12 +502,41 @@ public class DataGrid extends Component {
      * @return this
      */
     public DataGrid setCellStyle(int row, int col, String style) {
-        formatMap.put(row + "," + col, style);
-        if (isRendered()) {
-            exec(getId() + "FormatMap.set(\"" + row + "," + col + "\", \"" + style + "\");\n"
-                    + getId() + "grid.invalidateRow(" + row + ");\n"
-                    + getId() + "grid.render();");
+        return addStyle(cellStyles, row, row, col, col, style);
+    }
+
+    /**
+     * Sets the CSS style for a rectangular range of cells; this takes the same
+     * precedence as setCellStyle
+     *
+     * @param rowStart the first row
+     * @param rowEnd the last row, inclusive
+     * @param colStart the first column
+     * @param colEnd the last column, inclusive
+     * @param style the CSS style
+     * @return this
+     */
+    public DataGrid setRangeStyle(int rowStart, int rowEnd, int colStart, int colEnd, String style) {
+        return addStyle(cellStyles, rowStart, rowEnd, colStart, colEnd, style);
+    }
+
+    /**
+     * Adds a style rule and schedules the affected rows to be rendered again
+     *
+     * @param rules the rules to add to
+     * @param rowStart the first row
+     * @param rowEnd the last row, inclusive
+     * @param colStart the first column
+     * @param colEnd the last column, inclusive
+     * @param style the CSS style
+     * @return this
+     */
+    private DataGrid addStyle(CellRangeRules rules, int rowStart, int rowEnd, int colStart, int colEnd, String style) {
+        synchronized (dirtyCells) {
+            rules.add(rowStart, rowEnd, colStart, colEnd, style);
+            invalidateRows(rowStart, rowEnd);
         }
+        flusher.schedule();
         return this;
     }
 
@@ -201,11 +548,7 @@ public class DataGrid extends Component {
      * @return this
      */
     public DataGrid setRowEditable(int row, boolean canEdit) {
-        editMap.put(row + ",∞", canEdit + "");
-        if (isRendered()) {
-            exec(getId() + "EditMap.set(\"" + row + ",∞\", \"" + canEdit + "\");");
-        }
-        return this;
+        return addEditing(rowEditing, row, row, 0, CellRangeRules.UNBOUNDED, canEdit);
     }
 
     /**
@@ -216,11 +559,7 @@ public class DataGrid extends Component {
      * @return this
      */
     public DataGrid setColumnEditable(int col, boolean canEdit) {
-        editMap.put("∞," + col, canEdit + "");
-        if (isRendered()) {
-            exec(getId() + "EditMap.set(\"∞," + col + "\", \"" + canEdit + "\");");
-        }
-        return this;
+        return addEditing(columnEditing, 0, CellRangeRules.UNBOUNDED, col, col, canEdit);
     }
 
     /**
@@ -232,13 +571,77 @@ public class DataGrid extends Component {
      * @return this
      */
     public DataGrid setEditable(int row, int col, boolean canEdit) {
-        editMap.put(row + "," + col, canEdit + "");
-        if (isRendered()) {
-            exec(getId() + "EditMap.set(\"" + row + "," + col + "\", \"" + canEdit + "\");");
+        return addEditing(cellEditing, row, row, col, col, canEdit);
+    }
+
+    /**
+     * Sets whether a rectangular range of cells is editable; this takes the
+     * same precedence as setEditable
+     *
+     * @param rowStart the first row
+     * @param rowEnd the last row, inclusive
+     * @param colStart the first column
+     * @param colEnd the last column, inclusive
+     * @param canEdit flag indicating if the cells can be edited
+     * @return this
+     */
+    public DataGrid setRangeEditable(int rowStart, int rowEnd, int colStart, int colEnd, boolean canEdit) {
+        return addEditing(cellEditing, rowStart, rowEnd, colStart, colEnd, canEdit);
+    }
+
+    /**
+     * Adds an editability rule
+     *
+     * @param rules the rules to add to
+     * @param rowStart the first row
+     * @param rowEnd the last row, inclusive
+     * @param colStart the first column
+     * @param colEnd the last column, inclusive
+     * @param canEdit flag indicating if the cells can be edited
+     * @return this
+     */
+    private DataGrid addEditing(CellRangeRules rules, int rowStart, int rowEnd, int colStart, int colEnd, boolean canEdit) {
+        synchronized (dirtyCells) {
+            rules.add(rowStart, rowEnd, colStart, colEnd, canEdit + "");
         }
+        flusher.schedule();
         return this;
     }
 
+    /**
+     * Appends the cell, column and row rules as a JavaScript object
+     *
+     * @param cellRules the rules for cells
+     * @param columnRules the rules for columns
+     * @param rowRules the rules for rows
+     * @param script the JavaScript being built
+     */
+    private static void appendRules(CellRangeRules cellRules, CellRangeRules columnRules, CellRangeRules rowRules, StringBuilder script) {
+        script.append("{cell: ");
+        cellRules.appendScript(script);
+        script.append(", col: ");
+        columnRules.appendScript(script);
+        script.append(", row: ");
+        rowRules.appendScript(script);
+        script.append("}");
+    }
+
+    /**
+     * Appends the rules added since the last flush, if there are any, for the
+     * browser to add to its copy
+     *
+     * @param name the JavaScript variable of the browser's copy
+     * @param rules the rules
+     * @param script the JavaScript being built
+     */
+    private void appendRuleChanges(String name, CellRangeRules rules, StringBuilder script) {
+        if (rules.hasChanges()) {
+            script.append(getId()).append("AddRules(").append(name).append(", ");
+            rules.appendChanges(script);
+            script.append(");\n");
+        }
+    }
+
     /**
      * Sets the size of the DataGrid widget
      *
@@ -284,6 +687,40 @@ public class DataGrid extends Component {
         exec(getId() + "grid.getCanvasNode().focus();");
     }
 
+    /**
+     * Allows the user to download the grid's data as a delimited file (CSV,
+     * TSV, etc.). Rows are streamed to the browser as it reads them rather than
+     * being built into one large string.
+     *
+     * @param fileName the name of the file to download
+     * @param delimiter the character that separates values, e.g. ',' or '\t'
+     * @param gzip flag indicating if the file should be gzipped in transit
+     * when the browser accepts it
+     */
+    public void export(String fileName, char delimiter, boolean gzip) {
+        String[][] exported = data;
+        DataGridProvider exportedProvider = provider;
+        if (session == null) {
+            session = WSession.getSession(); //can happen if the component hasn't been added to a layout yet
+        }
+        WTools.downloadFile(session, fileName, delimiter == '\t' ? "text/tab-separated-values" : "text/csv", gzip, out -> {
+            DelimitedWriter writer = new DelimitedWriter(out, delimiter);
+            if (exportedProvider != null) {
+                int rowCount = exportedProvider.getRowCount();
+                for (int rowStart = 0; rowStart < rowCount; rowStart += blockSize) {
+                    for (String[] row : exportedProvider.getBlock(rowStart, Math.min(rowCount, rowStart + blockSize))) {
+                        writer.writeRow(row);
+                    }
+                }
+            } else {
+                for (String[] row : exported) {
+                    writer.writeRow(row);
+                }
+            }
+            writer.flush();
+        });
+    }
+
     /**
      * Notifies cellChangedListeners that a value has changed
      *
@@ -294,27 +731,193 @@ public class DataGrid extends Component {
         if (!isEnabled()) {
             return;
         }
-        String[] strs = value.split("\\s+");
-        if (strs[0].equals("selected")) {
+        if (value.startsWith("cells\n")) {
+            applyCells(value);
+        } else if (value.startsWith("blocks ")) {
+            sendBlocks(value.split("\\s+"));
+        } else if (value.startsWith("selected ")) {
+            String[] strs = value.split("\\s+");
             cellSelectionListeners.update(strs[1] + " " + strs[2]);
         } else {
-            String newValue = value.replaceFirst(strs[0], "").replaceFirst(strs[1], "").trim();
-            data[Integer.parseInt(strs[0])][Integer.parseInt(strs[1])] = newValue;
+            int rowEnd = value.indexOf(' ');
+            int colEnd = value.indexOf(' ', rowEnd + 1);
+            int row = Integer.parseInt(value.substring(0, rowEnd));
+            int col = Integer.parseInt(value.substring(rowEnd + 1, colEnd));
+            String newValue = value.substring(colEnd + 1).trim();
+            if (provider == null) {
+                data[row][col] = newValue;
+            } else if (!provider.setValue(row, col, newValue)) {
+                revertCells(row, col, new String[][]{{getValue(row, col)}}); //the browser shows what was typed, so put the old value back
+                return;
+            }
             cellChangedListeners.update(value);
         }
     }
 
+    /**
+     * Applies the cells that the user pasted or filled; the event is "cells"
+     * on the first line, followed by the row, column and value of each changed
+     * cell separated by the unit separator character. When the cells fill a
+     * rectangle they are stored as one block, otherwise one cell at a time.
+     *
+     * @param value the cells event
+     */
+    private void applyCells(String value) {
+        List<String> fields = new ArrayList<>();
+        int start = value.indexOf('\n') + 1;
+        while (start > 0) {
+            int end = value.indexOf(RANGE_SEPARATOR, start);
+            fields.add(value.substring(start, end == -1 ? value.length() : end));
+            start = end + 1;
+        }
+        int count = fields.size() / 3;
+        if (count == 0) {
+            return;
+        }
+        int[] rows = new int[count], cols = new int[count];
+        int rowStart = Integer.MAX_VALUE, colStart = Integer.MAX_VALUE, rowEnd = -1, colEnd = -1;
+        for (int i = 0; i < count; i++) {
+            rows[i] = Integer.parseInt(fields.get(3 * i));
+            cols[i] = Integer.parseInt(fields.get(3 * i + 1));
+            rowStart = Math.min(rowStart, rows[i]);
+            rowEnd = Math.max(rowEnd, rows[i]);
+            colStart = Math.min(colStart, cols[i]);
+            colEnd = Math.max(colEnd, cols[i]);
+        }
+        //a later change to the same cell wins
+        String[][] values = new String[rowEnd - rowStart + 1][colEnd - colStart + 1];
+        int filled = 0;
+        for (int i = 0; i < count; i++) {
+            if (values[rows[i] - rowStart][cols[i] - colStart] == null) {
+                filled++;
+            }
+            values[rows[i] - rowStart][cols[i] - colStart] = fields.get(3 * i + 2);
+        }
+        if (filled == values.length * values[0].length) {
+            if (provider != null) {
+                String[][] before = provider.getBlock(rowStart, rowEnd + 1);
+                if (!provider.setBlock(rowStart, colStart, values)) {
+                    String[][] stored = provider.getBlock(rowStart, rowEnd + 1);
+                    for (int i = 0; i < values.length; i++) {
+                        for (int j = 0; j < values[i].length; j++) {
+                            String kept = stored[i][colStart + j];
+                            values[i][j] = kept.equals(before[i][colStart + j]) ? null : kept; //the listeners are only told about the values that were kept
+                        }
+                        revertCells(rowStart + i, colStart, new String[][]{Arrays.copyOfRange(stored[i], colStart, colEnd + 1)});
+                    }
+                }
+            } else {
+                for (int i = 0; i < values.length; i++) {
+                    System.arraycopy(values[i], 0, data[rowStart + i], colStart, values[i].length);
+                }
+            }
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values[i].length; j++) {
+                    if (values[i][j] == null) {
+                        continue;
+                    }
+                    if (provider == null) {
+                        data[rowStart + i][colStart + j] = values[i][j];
+                    } else if (!provider.setValue(rowStart + i, colStart + j, values[i][j])) {
+                        revertCells(rowStart + i, colStart + j, new String[][]{{getValue(rowStart + i, colStart + j)}});
+                        values[i][j] = null; //rejected, so the listeners aren't told
+                    }
+                }
+            }
+        }
+        if (cellRangeChangedListeners.isEmpty()) {
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values[i].length; j++) {
+                    if (values[i][j] != null) {
+                        cellChangedListeners.update((rowStart + i) + " " + (colStart + j) + " " + values[i][j]);
+                    }
+                }
+            }
+        } else {
+            cellRangeChangedListeners.update(rowStart + " " + colStart + " " + rowEnd + " " + colEnd);
+        }
+    }
+
+    /**
+     * Sends the requested blocks of rows from the provider to the browser
+     *
+     * @param strs "blocks" followed by the index of each requested block
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    private void sendBlocks(String[] strs) {
+        if (provider == null) {
+            return;
+        }
+        int rowCount = provider.getRowCount();
+        StringBuilder script = new StringBuilder();
+        for (int i = 1; i < strs.length; i++) {
+            int block;
+            try {
+                block = Integer.parseInt(strs[i]);
+            } catch (NumberFormatException ex) {
+                continue; //a malformed request is ignored
+            }
+            if (block < 0 || (long) block * blockSize >= rowCount) {
+                continue;
+            }
+            int rowStart = block * blockSize;
+            script.append(getId() + "data.put(" + block + ", ");
+            appendRows(provider.getBlock(rowStart, Math.min(rowCount, rowStart + blockSize)), script);
+            script.append(");\n");
+        }
+        if (script.length() > 0) {
+            exec(script.toString());
+        }
+    }
+
+    /**
+     * Appends the rows as a JavaScript array of arrays of strings
+     *
+     * @param rows the rows to append
+     * @param script the JavaScript being built
+     */
+    private static void appendRows(String[][] rows, StringBuilder script) {
+        script.append("[");
+        for (int i = 0; i < rows.length; i++) {
+            script.append(i == 0 ? "[" : ",\n[");
+            for (int j = 0; j < rows[i].length; j++) {
+                String value = rows[i][j] == null ? "" : rows[i][j];
+                script.append(j == 0 ? "\"" : ",\"").append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r")).append("\"");
+            }
+            script.append("]");
+        }
+        script.append("]");
+    }
+
     /**
      * Called when this component is no longer needed; clears data and listeners
      */
     @Override
     public void dispose() {
         data = null;
-        formatMap.clear();
-        editMap.clear();
+        provider = null;
+        synchronized (dirtyCells) {
+            cellStyles.clear();
+            columnStyles.clear();
+            rowStyles.clear();
+            cellEditing.clear();
+            columnEditing.clear();
+            rowEditing.clear();
+            dirtyCells.clear();
+            invalidRows.clear();
+        }
         cellChangedListeners.clear();
     }
 
+    /**
+     * @return "slickgrid", which this component needs
+     */
+    @Override
+    public String[] getModules() {
+        return new String[]{"slickgrid"};
+    }
+
     /**
      * Provides the HTML representation of this Component
      *
@@ -323,41 +926,157 @@ public class DataGrid extends Component {
     @Override
     @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
     public String toHtml() {
-        StringBuilder gridStr = new StringBuilder("var " + getId() + "data = [\n");
-        for (int i = 0; i < data.length; i++) {
-            gridStr.append("[");
-            for (int j = 0; j < data[i].length; j++) {
-                gridStr.append("\"").append(data[i][j].replace("\"", "\\\"")).append("\"").append(j == data[i].length - 1 ? "" : ",");
-            }
-            gridStr.append("]").append(i == data.length - 1 ? "\n" : ",\n");
+        StringBuilder gridStr = new StringBuilder("var " + getId() + "data = ");
+        if (provider != null) {
+            //rows are requested a block at a time and kept in a Map, which iterates in insertion order, so the first key is the least recently used
+            gridStr.append("{\n"
+                    + "    rowCount: " + provider.getRowCount() + ",\n"
+                    + "    blockSize: " + blockSize + ",\n"
+                    + "    limit: " + cachedBlockLimit + ",\n"
+                    + "    blocks: new Map(),\n"
+                    + "    last: -1,\n"
+                    + "    requested: new Set(),\n"
+                    + "    toRequest: [],\n"
+                    + "    getLength: function () {\n"
+                    + "      return this.rowCount;\n"
+                    + "    },\n"
+                    + "    getItem: function (i) {\n"
+                    + "      var b = Math.floor(i / this.blockSize);\n"
+                    + "      var block = this.blocks.get(b);\n"
+                    + "      if (block === undefined) {\n"
+                    + "        this.request(b);\n"
+                    + "        return [];\n"
+                    + "      }\n"
+                    + "      if (this.last !== b) {\n"
+                    + "        this.blocks.delete(b);\n"
+                    + "        this.blocks.set(b, block);\n"
+                    + "        this.last = b;\n"
+                    + "      }\n"
+                    + "      return block[i - b * this.blockSize];\n"
+                    + "    },\n"
+                    + "    isLoaded: function (i) {\n"
+                    + "      return this.blocks.has(Math.floor(i / this.blockSize));\n"
+                    + "    },\n"
+                    + "    request: function (b) {\n"
+                    + "      if (this.requested.has(b)) {\n"
+                    + "        return;\n"
+                    + "      }\n"
+                    + "      this.requested.add(b);\n"
+                    + "      this.toRequest.push(b);\n"
+                    + "      if (this.toRequest.length === 1) {\n"
+                    + "        var self = this;\n"
+                    + "        setTimeout(function () {\n"
+                    + "          var blocks = self.toRequest.join(' ');\n"
+                    + "          self.toRequest = [];\n"
+                    + "          " + createEvent("'blocks ' + blocks") + "\n"
+                    + "        }, 0);\n"
+                    + "      }\n"
+                    + "    },\n"
+                    + "    put: function (b, rows) {\n"
+                    + "      this.requested.delete(b);\n"
+                    + "      this.blocks.set(b, rows);\n"
+                    + "      this.last = b;\n"
+                    + "      while (this.blocks.size > this.limit) {\n"
+                    + "        this.blocks.delete(this.blocks.keys().next().value);\n"
+                    + "      }\n"
+                    + "      var invalid = [];\n"
+                    + "      for (var i = 0; i < rows.length; i++) {\n"
+                    + "        invalid.push(b * this.blockSize + i);\n"
+                    + "      }\n"
+                    + "      " + getId() + "grid.invalidateRows(invalid);\n"
+                    + "      " + getId() + "grid.render();\n"
+                    + "    },\n"
+                    + "    reset: function (rowCount) {\n"
+                    + "      this.rowCount = rowCount;\n"
+                    + "      this.blocks.clear();\n"
+                    + "      this.last = -1;\n"
+                    + "      this.requested.clear();\n"
+                    + "      " + getId() + "grid.updateRowCount();\n"
+                    + "      " + getId() + "grid.invalidate();\n"
+                    + "    }\n"
+                    + "  };\n");
+        } else {
+            appendRows(data, gridStr);
+            gridStr.append(";\n");
         }
-        gridStr.append("];\n");
 
-        StringBuilder formatting = new StringBuilder("var " + getId() + "FormatMap = new Map();\n");
-        for (Map.Entry<String, String> entry : formatMap.entrySet()) {
-            formatting.append(getId() + "FormatMap.set(\"" + entry.getKey() + "\", \"" + entry.getValue() + "\");\n");
+        StringBuilder formatting = new StringBuilder("var " + getId() + "Styles = ");
+        StringBuilder editing = new StringBuilder("var " + getId() + "Editing = ");
+        synchronized (dirtyCells) {
+            appendRules(cellStyles, columnStyles, rowStyles, formatting);
+            appendRules(cellEditing, columnEditing, rowEditing, editing);
         }
-        formatting.append("function " + getId() + "FormatFunction(row, cell, value, columnDef, dataContext) {\n"
-                + "    var format = " + getId() + "FormatMap.get(row + ',' + cell);\n"
+        formatting.append(";\n");
+        editing.append(";\n");
+        //single cells are looked up in c and ranges in r; the rule with the highest sequence number wins
+        formatting.append("function " + getId() + "FindRule(rules, row, cell) {\n"
+                + "    var c = rules.c[row + '_' + cell];\n"
+                + "    for (var i = rules.r.length - 1; i >= 0; i--) {\n"
+                + "      var r = rules.r[i];\n"
+                + "      if (c !== undefined && r[5] < c[0]) {\n"
+                + "        break;\n"
+                + "      }\n"
+                + "      if (row >= r[0] && row <= r[1] && cell >= r[2] && cell <= r[3]) {\n"
+                + "        return r[4];\n"
+                + "      }\n"
+                + "    }\n"
+                + "    return c === undefined ? undefined : c[1];\n"
+                + "  }\n"
+                //adds the rules sent by flush exactly as CellRangeRules.add does, so the copy stays the same size
+                + "function " + getId() + "AddRules(rules, added) {\n"
+                + "    for (var i = 0; i < added.length; i++) {\n"
+                + "      var a = added[i], n = ++rules.n;\n"
+                + "      if (a[0] === a[1] && a[2] === a[3]) {\n"
+                + "        rules.c[a[0] + '_' + a[2]] = [n, a[4]];\n"
+                + "        continue;\n"
+                + "      }\n"
+                + "      var covers = function (r0, r1, c0, c1) { return r0 >= a[0] && r1 <= a[1] && c0 >= a[2] && c1 <= a[3]; };\n"
+                + "      for (var key in rules.c) {\n"
+                + "        var rc = key.split('_');\n"
+                + "        if (covers(+rc[0], +rc[0], +rc[1], +rc[1])) {\n"
+                + "          delete rules.c[key];\n"
+                + "        }\n"
+                + "      }\n"
+                + "      rules.r = rules.r.filter(function (r) { return !covers(r[0], r[1], r[2], r[3]); });\n"
+                + "      var last = rules.r[rules.r.length - 1];\n"
+                + "      if (last !== undefined && last[5] === n - 1 && last[4] === a[4] && last[0] === a[0] && last[1] === a[1] && last[3] !== " + CellRangeRules.UNBOUNDED + " && last[3] + 1 === a[2]) {\n"
+                + "        last[3] = a[3];\n"
+                + "        last[5] = n;\n"
+                + "      } else if (last !== undefined && last[5] === n - 1 && last[4] === a[4] && last[2] === a[2] && last[3] === a[3] && last[1] !== " + CellRangeRules.UNBOUNDED + " && last[1] + 1 === a[0]) {\n"
+                + "        last[1] = a[1];\n"
+                + "        last[5] = n;\n"
+                + "      } else {\n"
+                + "        rules.r.push([a[0], a[1], a[2], a[3], a[4], n]);\n"
+                + "      }\n"
+                + "    }\n"
+                + "  }\n"
+                + "function " + getId() + "FormatFunction(row, cell, value, columnDef, dataContext) {\n"
+                + "    if (value === undefined) {\n"
+                + "      value = '';\n" //the row hasn't arrived from the provider yet
+                + "    }\n"
+                + "    var format = " + getId() + "FindRule(" + getId() + "Styles.cell, row, cell);\n"
                 + "    if (format === undefined) {\n"
-                + "      format = " + getId() + "FormatMap.get('∞,' + cell);\n"
+                + "      format = " + getId() + "FindRule(" + getId() + "Styles.col, row, cell);\n"
                 + "    }\n"
                 + "    if (format === undefined) {\n"
-                + "      format = " + getId() + "FormatMap.get(row + ',∞');\n"
+                + "      format = " + getId() + "FindRule(" + getId() + "Styles.row, row, cell);\n"
                 + "    }\n"
                 + "    if (format === undefined) {\n"
                 + "      return value;\n"
                 + "    }\n"
                 + "    return \"<div style='\" + format + \"'>\" + value + \"</div>\";\n"
+                + "  }\n"
+                + "function " + getId() + "SetCells(cells) {\n"
+                + "    for (var i = 0; i < cells.length; i++) {\n"
+                + "      var c = cells[i];\n"
+                + "      if (" + getId() + "data.isLoaded === undefined || " + getId() + "data.isLoaded(c[0])) {\n"
+                + "        " + getId() + "grid.getDataItem(c[0])[c[1]] = c[2];\n"
+                + "      }\n"
+                + "    }\n"
                 + "  }\n");
 
-        StringBuilder editing = new StringBuilder("var " + getId() + "EditMap = new Map();\n");
-        for (Map.Entry<String, String> entry : editMap.entrySet()) {
-            editing.append(getId() + "EditMap.set(\"" + entry.getKey() + "\", \"" + entry.getValue() + "\");\n");
-        }
-
-        return "<div id='" + getId() + "' style='position:relative'>\n"
-                + "  <div style='width:" + Math.min(width, data[0].length * cellWidth + 19) + "px;'>\n"
+        return requireModules("<div id='" + getId() + "' style='position:relative'>\n"
+                + "  <div style='width:" + Math.min(width, getColumnCount() * cellWidth + 19) + "px;'>\n"
                 + "    <div id='grid" + getId() + "' style='width:100%;height:" + height + "px;'></div>\n"
                 + "  </div>\n"
                 + " <script>\n"
@@ -365,7 +1084,7 @@ public class DataGrid extends Component {
                 + "\n"
                 + formatting
                 + editing
-                + "  var columnCount = " + data[0].length + ";\n"
+                + "  var columnCount = " + getColumnCount() + ";\n"
                 + "  var " + getId() + "columns = [];\n"
                 + "  for (var i = 0; i < columnCount; i++) {\n"
                 + "    " + getId() + "columns.push({ id: i, name: (i + 1), field: i, width: " + cellWidth + ", formatter: " + getId() + "FormatFunction, editor: Slick.Editors.Text });\n"
@@ -380,11 +1099,33 @@ public class DataGrid extends Component {
                 + "    " + getId() + "grid.getCanvasNode().focus();\n" //set keyboard focus on the grid
                 + "    " + getId() + "grid.registerPlugin(new Slick.CellExternalCopyManager({ readOnlyMode: false, includeHeaderWhenCopying: false }));\n"
                 + "    " + getId() + "grid.onBeforeEditCell.subscribe(function(e,args) {\n"
-                + "      var canEdit = " + getId() + "EditMap.get(args.row + ',' + args.cell) !== 'false' && " + getId() + "EditMap.get(args.row + ',∞') !== 'false' && " + getId() + "EditMap.get('∞,' + args.cell) !== 'false';\n"
+                + "      var canEdit = (" + getId() + "data.isLoaded === undefined || " + getId() + "data.isLoaded(args.row))"
+                + " && " + getId() + "FindRule(" + getId() + "Editing.cell, args.row, args.cell) !== 'false'"
+                + " && " + getId() + "FindRule(" + getId() + "Editing.row, args.row, args.cell) !== 'false'"
+                + " && " + getId() + "FindRule(" + getId() + "Editing.col, args.row, args.cell) !== 'false';\n"
                 + "      return canEdit;\n" //yes, it's editable
                 + "    });\n"
+                //a paste or fill changes many cells in one go, so the changes are collected and sent as a single event after the current task
+                + "    " + getId() + "ChangedCells = [];\n"
                 + "    " + getId() + "grid.onCellChange.subscribe(function(e,args) {\n"
-                + "      " + createEvent("args.row + ' ' + args.cell + ' ' + " + getId() + "data[args.row][args.cell]") + "\n"
+                + "      var value = args.item[args.cell];\n" //the value now, in case a later block is unloaded or changed before the event is sent
+                + "      " + getId() + "ChangedCells.push([args.row, args.cell, value === undefined || value === null ? '' : value]);\n"
+                + "      if (" + getId() + "ChangedCells.length > 1) {\n"
+                + "        return;\n"
+                + "      }\n"
+                + "      setTimeout(function () {\n"
+                + "        var cells = " + getId() + "ChangedCells;\n"
+                + "        " + getId() + "ChangedCells = [];\n"
+                + "        if (cells.length === 1) {\n"
+                + "          " + createEvent("cells[0][0] + ' ' + cells[0][1] + ' ' + cells[0][2]") + "\n"
+                + "          return;\n"
+                + "        }\n"
+                + "        var fields = [];\n"
+                + "        for (var i = 0; i < cells.length; i++) {\n"
+                + "          fields.push(cells[i][0], cells[i][1], cells[i][2]);\n"
+                + "        }\n"
+                + "        " + createEvent("'cells\\n' + fields.join('\\u001f')") + "\n"
+                + "      }, 0);\n"
                 + "    });\n"
                 + "    " + getId() + "grid.onActiveCellChanged.subscribe(function(e,args) {\n"
                 + "      var curSelection = args.row + ' ' + args.cell;\n"
@@ -395,6 +1136,6 @@ public class DataGrid extends Component {
                 + "    });"
                 + "  })\n"
                 + " </script>\n"
-                + "</div>";
+                + "</div>");
     }
 }
@@ -0,0 +1,96 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+/**
+ * DataGridProvider supplies the values for a DataGrid that is too large to be
+ * sent to the browser all at once; the browser asks for blocks of rows as the
+ * user scrolls
+ */
+public interface DataGridProvider {
+
+    /**
+     * @return the number of rows in the grid
+     */
+    public int getRowCount();
+
+    /**
+     * @return the number of columns in the grid
+     */
+    public int getColumnCount();
+
+    /**
+     * Provides the values for a block of rows
+     *
+     * @param rowStart the index of the first row in the block
+     * @param rowEnd the index after the last row in the block
+     * @return the values of the rows, one array of column values per row
+     */
+    public String[][] getBlock(int rowStart, int rowEnd);
+
+    /**
+     * Called when the user edits a cell; the default implementation ignores
+     * the edit, so providers that should keep edits must override this
+     *
+     * @param row the row index
+     * @param col the column index
+     * @param value the new value of the cell
+     * @return false if the value was rejected, in which case the browser is
+     * sent the cell's value again and the DataGrid's listeners aren't told
+     */
+    public default boolean setValue(int row, int col, String value) {
+        return true;
+    }
+
+    /**
+     * Called when the user pastes or fills a block of cells; the default
+     * implementation calls setValue for each cell, so providers that can store
+     * a block more efficiently should override this
+     *
+     * @param rowStart the row index of the top left cell
+     * @param colStart the column index of the top left cell
+     * @param values the new values, one array of column values per row
+     * @return false if any of the values was rejected, in which case the
+     * browser is sent the block's values again
+     */
+    public default boolean setBlock(int rowStart, int colStart, String[][] values) {
+        boolean kept = true;
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < values[i].length; j++) {
+                kept &= setValue(rowStart + i, colStart + j, values[i][j]);
+            }
+        }
+        return kept;
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+/**
+ * DoubleMatrixProvider keeps a DataGrid's numbers in a single double[] in
+ * row-major order, so a large matrix doesn't become millions of Strings
+ */
+public class DoubleMatrixProvider extends MatrixProvider {
+
+    /**
+     * the values of the matrix in row-major order
+     */
+    private final double[] values;
+
+    /**
+     * Constructor
+     *
+     * @param values the values of the matrix in row-major order; this array is
+     * used directly rather than copied
+     * @param columnCount the number of columns in the matrix
+     */
+    public DoubleMatrixProvider(double[] values, int columnCount) {
+        super(columnCount == 0 ? 0 : values.length / columnCount, columnCount);
+        this.values = values;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param values the values of the matrix; these are copied into a
+     * row-major array
+     */
+    public DoubleMatrixProvider(double[][] values) {
+        super(values.length, values.length == 0 ? 0 : values[0].length);
+        this.values = new double[rowCount * columnCount];
+        for (int i = 0; i < rowCount; i++) {
+            System.arraycopy(values[i], 0, this.values, i * columnCount, columnCount);
+        }
+    }
+
+    /**
+     * Gets the value at the given row and column
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value
+     */
+    @Override
+    public double get(int row, int col) {
+        return values[row * columnCount + col];
+    }
+
+    /**
+     * Sets the value at the given row and column
+     *
+     * @param row the row index
+     * @param col the column index
+     * @param value the new value
+     */
+    public void set(int row, int col, double value) {
+        values[row * columnCount + col] = value;
+    }
+
+    /**
+     * @return the values of the matrix in row-major order
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Writes the user's edit back into the matrix; edits that aren't numbers
+     * are rejected
+     *
+     * @param row the row index
+     * @param col the column index
+     * @param value the new value of the cell
+     * @return false if the value isn't a number, so the matrix keeps its old
+     * value
+     */
+    @Override
+    public boolean setValue(int row, int col, String value) {
+        try {
+            set(row, col, Double.parseDouble(value.trim()));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedMatrixProvider shows a binary file of doubles or floats (row-major,
+ * no header) in a DataGrid without reading it onto the heap; the file is
+ * memory-mapped read-only, so user edits are not kept
+ */
+public class MappedMatrixProvider extends MatrixProvider {
+
+    /**
+     * the mapped file; each segment holds whole rows and is smaller than 2GB
+     */
+    private final MappedByteBuffer[] segments;
+    /**
+     * the number of rows in each segment
+     */
+    private final int rowsPerSegment;
+    /**
+     * flag indicating if the file contains floats instead of doubles
+     */
+    private final boolean floats;
+
+    /**
+     * Constructor for a big-endian file of doubles
+     *
+     * @param file the file to map
+     * @param columnCount the number of columns in the matrix
+     * @throws IOException if the file can't be mapped
+     */
+    public MappedMatrixProvider(File file, int columnCount) throws IOException {
+        this(file, columnCount, false, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param file the file to map
+     * @param columnCount the number of columns in the matrix
+     * @param floats true if the file contains floats, false if doubles
+     * @param order the byte order of the file
+     * @throws IOException if the file can't be mapped
+     */
+    public MappedMatrixProvider(File file, int columnCount, boolean floats, ByteOrder order) throws IOException {
+        super((int) (file.length() / ((long) columnCount * (floats ? Float.BYTES : Double.BYTES))), columnCount);
+        this.floats = floats;
+        long rowBytes = (long) columnCount * (floats ? Float.BYTES : Double.BYTES);
+        this.rowsPerSegment = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+        this.segments = new MappedByteBuffer[(rowCount + rowsPerSegment - 1) / rowsPerSegment];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < segments.length; i++) {
+                long rows = Math.min(rowsPerSegment, rowCount - (long) i * rowsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, i * rowsPerSegment * rowBytes, rows * rowBytes);
+                segments[i].order(order);
+            }
+        }
+    }
+
+    /**
+     * Gets the value at the given row and column
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value
+     */
+    @Override
+    public double get(int row, int col) {
+        int index = (row % rowsPerSegment) * columnCount + col;
+        MappedByteBuffer segment = segments[row / rowsPerSegment];
+        return floats ? segment.getFloat(index * Float.BYTES) : segment.getDouble(index * Double.BYTES);
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import java.text.DecimalFormat;
+
+/**
+ * MatrixProvider supplies a DataGrid with numbers that are kept in primitive
+ * form; values are only turned into Strings when their rows are sent to the
+ * browser
+ */
+public abstract class MatrixProvider implements DataGridProvider {
+
+    /**
+     * the number of rows and columns in the matrix
+     */
+    protected final int rowCount, columnCount;
+    /**
+     * the DecimalFormat pattern used to format values, or null to use
+     * Double.toString
+     */
+    private String format;
+
+    /**
+     * Constructor
+     *
+     * @param rowCount the number of rows in the matrix
+     * @param columnCount the number of columns in the matrix
+     */
+    protected MatrixProvider(int rowCount, int columnCount) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Gets the value at the given row and column
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value
+     */
+    public abstract double get(int row, int col);
+
+    /**
+     * Sets how values are formatted when they are sent to the browser
+     *
+     * @param format a DecimalFormat pattern (e.g. "0.000" or "0.##E0"), or
+     * null to show the full value
+     * @return this
+     */
+    public MatrixProvider setFormat(String format) {
+        if (format != null) {
+            new DecimalFormat(format); //throws IllegalArgumentException now, rather than when the grid is scrolled
+        }
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * @return the number of rows in the matrix
+     */
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of columns in the matrix
+     */
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Formats the values for a block of rows
+     *
+     * @param rowStart the index of the first row in the block
+     * @param rowEnd the index after the last row in the block
+     * @return the formatted values of the rows
+     */
+    @Override
+    public String[][] getBlock(int rowStart, int rowEnd) {
+        DecimalFormat decimalFormat = format == null ? null : new DecimalFormat(format); //DecimalFormat isn't thread safe, so each block gets its own
+        String[][] block = new String[rowEnd - rowStart][columnCount];
+        for (int i = rowStart; i < rowEnd; i++) {
+            String[] row = block[i - rowStart];
+            for (int j = 0; j < columnCount; j++) {
+                double value = get(i, j);
+                row[j] = decimalFormat == null ? Double.toString(value) : decimalFormat.format(value);
+            }
+        }
+        return block;
+    }
+
+}
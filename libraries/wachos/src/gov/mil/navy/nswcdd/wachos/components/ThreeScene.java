@@ -0,0 +1,366 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import gov.mil.navy.nswcdd.wachos.tools.FlushScheduler;
+import gov.mil.navy.nswcdd.wachos.tools.TypedArrays;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ThreeScene is a scene graph that lives on the server and is shown by one or
+ * more Threejs components (see Threejs.setScene). Changes to its nodes are
+ * collected and sent as one small update per flush: only the nodes that were
+ * added, removed or changed, with their transforms in a single typed array. A
+ * scene can be shared by the components of many sessions, in which case each
+ * update is built once and pushed to all of them.
+ */
+public class ThreeScene {
+
+    /**
+     * flag for a change to a node's position, rotation or scale
+     */
+    static final int TRANSFORM = 1;
+    /**
+     * flag for a change to a node's color, opacity, wireframe or visibility
+     */
+    static final int MATERIAL = 2;
+    /**
+     * flag for a new node, or a change to a node's shape, name or parent
+     */
+    static final int SHAPE = 4;
+    /**
+     * the nodes in this scene, parents before their children
+     */
+    private final Map<String, ThreeSceneNode> nodes = new LinkedHashMap<>();
+    /**
+     * what has changed for each node since the last flush
+     */
+    private final Map<String, Integer> dirty = new LinkedHashMap<>();
+    /**
+     * the IDs of the nodes removed since the last flush
+     */
+    private final Set<String> removed = new LinkedHashSet<>();
+    /**
+     * the components showing this scene
+     */
+    private final List<Threejs> views = new CopyOnWriteArrayList<>();
+    /**
+     * sends the collected changes to the client; collects changes for about one
+     * animation frame by default
+     */
+    private final FlushScheduler flusher = new FlushScheduler(16, this::flush);
+
+    /**
+     * Adds a node to this scene, or returns the node if it already exists
+     *
+     * @param id the ID of the node, unique within this scene
+     * @param parentId the ID of the parent node, or null to put it at the top
+     * of the scene
+     * @return the node
+     */
+    public ThreeSceneNode addNode(String id, String parentId) {
+        ThreeSceneNode node;
+        synchronized (nodes) {
+            node = nodes.get(id);
+            if (node != null) {
+                return node;
+            }
+            if (parentId != null && !nodes.containsKey(parentId)) {
+                throw new IllegalArgumentException("There is no node with the ID " + parentId);
+            }
+            node = new ThreeSceneNode(id, this, parentId);
+            nodes.put(id, node);
+            removed.remove(id);
+        }
+        changed(node, SHAPE | MATERIAL | TRANSFORM);
+        return node;
+    }
+
+    /**
+     * @param id the ID of a node
+     * @return the node, or null if it isn't in this scene
+     */
+    public ThreeSceneNode getNode(String id) {
+        synchronized (nodes) {
+            return nodes.get(id);
+        }
+    }
+
+    /**
+     * @return a copy of the nodes in this scene, parents before their children
+     */
+    public List<ThreeSceneNode> getNodes() {
+        synchronized (nodes) {
+            return new ArrayList<>(nodes.values());
+        }
+    }
+
+    /**
+     * Removes a node and all of its descendants
+     *
+     * @param id the ID of the node to remove
+     */
+    public void removeNode(String id) {
+        synchronized (nodes) {
+            ThreeSceneNode node = nodes.remove(id);
+            if (node == null) {
+                return;
+            }
+            node.scene = null;
+            dirty.remove(id);
+            removed.add(id); //the client removes the descendants along with it
+            Set<String> gone = new LinkedHashSet<>();
+            gone.add(id);
+            for (ThreeSceneNode child : new ArrayList<>(nodes.values())) { //parents come first, so one pass finds every descendant
+                if (child.parentId != null && gone.contains(child.parentId)) {
+                    gone.add(child.getId());
+                    nodes.remove(child.getId());
+                    dirty.remove(child.getId());
+                    child.scene = null;
+                }
+            }
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Moves a node under a different parent
+     *
+     * @param id the ID of the node to move
+     * @param parentId the ID of the new parent, or null to put it at the top
+     * of the scene
+     */
+    public void setParent(String id, String parentId) {
+        ThreeSceneNode node;
+        synchronized (nodes) {
+            node = nodes.get(id);
+            if (node == null || (parentId != null && !nodes.containsKey(parentId))) {
+                throw new IllegalArgumentException("There is no node with the ID " + (node == null ? id : parentId));
+            }
+            for (String ancestor = parentId; ancestor != null; ancestor = nodes.get(ancestor).parentId) {
+                if (ancestor.equals(id)) {
+                    throw new IllegalArgumentException("A node can't be moved under itself");
+                }
+            }
+            node.parentId = parentId;
+            if (parentId != null) { //keep parents before their children
+                nodes.remove(id);
+                nodes.put(id, node);
+                for (ThreeSceneNode child : new ArrayList<>(nodes.values())) {
+                    if (isDescendant(child, id)) {
+                        nodes.remove(child.getId());
+                        nodes.put(child.getId(), child);
+                    }
+                }
+            }
+        }
+        changed(node, SHAPE);
+    }
+
+    /**
+     * @param node a node
+     * @param ancestorId the ID of another node
+     * @return true if the node is below the other node
+     */
+    private boolean isDescendant(ThreeSceneNode node, String ancestorId) {
+        for (String parent = node.parentId; parent != null; parent = nodes.get(parent).parentId) {
+            if (parent.equals(ancestorId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every node
+     */
+    public void clear() {
+        synchronized (nodes) {
+            for (ThreeSceneNode node : nodes.values()) {
+                node.scene = null;
+                if (node.parentId == null) {
+                    removed.add(node.getId());
+                }
+            }
+            nodes.clear();
+            dirty.clear();
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Sets how often changes are sent to the client
+     *
+     * @param millis the number of milliseconds to collect changes before
+     * sending them
+     */
+    public void setFlushInterval(long millis) {
+        flusher.setInterval(millis);
+    }
+
+    /**
+     * Records a change to a node and starts the countdown to send it
+     *
+     * @param node the node that changed
+     * @param flag what changed
+     */
+    void changed(ThreeSceneNode node, int flag) {
+        synchronized (nodes) {
+            if (node.scene != this) {
+                return;
+            }
+            dirty.merge(node.getId(), flag, (a, b) -> a | b);
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Sends the changes since the last flush to every component showing this
+     * scene. The update is built once, however many components there are.
+     */
+    public void flush() {
+        String update;
+        synchronized (nodes) {
+            if (dirty.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            //nodes that are new or were moved are sent in the same order as the scene, so parents come first
+            List<ThreeSceneNode> changedNodes = new ArrayList<>();
+            for (ThreeSceneNode node : nodes.values()) {
+                if (dirty.containsKey(node.getId())) {
+                    changedNodes.add(node);
+                }
+            }
+            update = toUpdate(removed, changedNodes);
+            dirty.clear();
+            removed.clear();
+        }
+        for (Threejs view : views) {
+            if (view.session != null && !view.session.isValid()) {
+                views.remove(view); //its session has ended
+            } else if (view.isRendered()) {
+                view.exec(view.getId() + "SceneApply(" + update + ");");
+            }
+        }
+    }
+
+    /**
+     * @return the JavaScript object that creates the whole scene, for a
+     * component that is being drawn
+     */
+    String toSnapshot() {
+        synchronized (nodes) {
+            List<ThreeSceneNode> all = new ArrayList<>(nodes.values());
+            Map<String, Integer> saved = new LinkedHashMap<>(dirty);
+            for (ThreeSceneNode node : all) {
+                dirty.put(node.getId(), SHAPE | MATERIAL | TRANSFORM);
+            }
+            String snapshot = toUpdate(new LinkedHashSet<>(), all);
+            dirty.clear();
+            dirty.putAll(saved); //the other components still need these changes
+            return snapshot;
+        }
+    }
+
+    /**
+     * Builds an update: r is the removed IDs, a is the new or reshaped nodes, m
+     * is the materials, and t and v are the IDs and transforms (nine floats
+     * each) of the moved nodes
+     *
+     * @param removedIds the IDs of the removed nodes
+     * @param changedNodes the nodes that changed, parents first
+     * @return the update as a JavaScript object
+     */
+    private String toUpdate(Set<String> removedIds, List<ThreeSceneNode> changedNodes) {
+        StringBuilder r = new StringBuilder();
+        for (String id : removedIds) {
+            r.append(r.length() == 0 ? "\"" : ",\"").append(escape(id)).append("\"");
+        }
+        StringBuilder a = new StringBuilder();
+        StringBuilder m = new StringBuilder();
+        StringBuilder t = new StringBuilder();
+        List<float[]> transforms = new ArrayList<>();
+        for (ThreeSceneNode node : changedNodes) {
+            int flags = dirty.get(node.getId());
+            if ((flags & SHAPE) != 0) {
+                a.append(a.length() == 0 ? "" : ",").append(node.toShapeScript());
+            }
+            if ((flags & (MATERIAL | SHAPE)) != 0) { //a new object needs its material again
+                m.append(m.length() == 0 ? "" : ",").append(node.toMaterialScript());
+            }
+            if ((flags & (TRANSFORM | SHAPE)) != 0) {
+                t.append(t.length() == 0 ? "\"" : ",\"").append(escape(node.getId())).append("\"");
+                transforms.add(node.getTransform());
+            }
+        }
+        float[] values = new float[transforms.size() * 9];
+        for (int i = 0; i < transforms.size(); i++) {
+            System.arraycopy(transforms.get(i), 0, values, i * 9, 9);
+        }
+        return "{r:[" + r + "],a:[" + a + "],m:[" + m + "],t:[" + t + "],v:" + TypedArrays.toFloat32(values) + "}";
+    }
+
+    /**
+     * Starts showing this scene in a component
+     *
+     * @param view the component
+     */
+    void attach(Threejs view) {
+        if (!views.contains(view)) {
+            views.add(view);
+        }
+    }
+
+    /**
+     * Stops showing this scene in a component
+     *
+     * @param view the component
+     */
+    void detach(Threejs view) {
+        views.remove(view);
+    }
+
+    /**
+     * @param value text to put in a JavaScript string
+     * @return the text with quotes, backslashes and line breaks escaped
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
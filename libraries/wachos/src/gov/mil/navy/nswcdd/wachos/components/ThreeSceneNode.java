@@ -0,0 +1,349 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import gov.mil.navy.nswcdd.wachos.tools.Color;
+import gov.mil.navy.nswcdd.wachos.tools.WFileServlet;
+import gov.mil.navy.nswcdd.wachos.tools.WTools;
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * ThreeSceneNode is an object in a ThreeScene: a group, a simple shape, or a
+ * glTF model, with a position, rotation, scale and material. Every change is
+ * recorded by the scene and sent to the client on its next flush.
+ */
+public class ThreeSceneNode {
+
+    /**
+     * the ID of this node, unique within its scene
+     */
+    private final String id;
+    /**
+     * the scene this node belongs to; null once it has been removed
+     */
+    ThreeScene scene;
+    /**
+     * the ID of the parent node; null if this node is at the top of the scene
+     */
+    String parentId;
+    /**
+     * the name given to the Three.js object
+     */
+    private String name = "";
+    /**
+     * the kind of object: "group", "box", "sphere", "cylinder" or "model"
+     */
+    private String shape = "group";
+    /**
+     * the sizes of the shape, or the URL of the model, as JavaScript
+     */
+    private String shapeArgs = "null";
+    /**
+     * position (x, y, z), rotation in radians (x, y, z) and scale (x, y, z)
+     */
+    final float[] transform = {0, 0, 0, 0, 0, 0, 1, 1, 1};
+    /**
+     * the color of the material; null to leave a model's colors alone
+     */
+    private Color color = null;
+    /**
+     * the opacity of the material, from 0 to 1
+     */
+    private double opacity = 1;
+    /**
+     * flag indicating if the material is drawn as a wireframe
+     */
+    private boolean wireframe = false;
+    /**
+     * flag indicating if the node and its children are shown
+     */
+    private boolean visible = true;
+
+    /**
+     * Constructor; nodes are created with ThreeScene.addNode
+     *
+     * @param id the ID of this node, unique within its scene
+     * @param scene the scene this node belongs to
+     * @param parentId the ID of the parent node, or null
+     */
+    ThreeSceneNode(String id, ThreeScene scene, String parentId) {
+        this.id = id;
+        this.scene = scene;
+        this.parentId = parentId;
+    }
+
+    /**
+     * @return the ID of this node
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the ID of the parent node, or null if this node is at the top of
+     * the scene
+     */
+    public String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Sets the name of the Three.js object, which scripts can find with
+     * getObjectByName
+     *
+     * @param name the name of the object
+     * @return this
+     */
+    public ThreeSceneNode setName(String name) {
+        this.name = name == null ? "" : name;
+        return changed(ThreeScene.SHAPE);
+    }
+
+    /**
+     * Makes this node a box
+     *
+     * @param width the size along x
+     * @param height the size along y
+     * @param depth the size along z
+     * @return this
+     */
+    public ThreeSceneNode setBox(double width, double height, double depth) {
+        return setShape("box", "[" + width + "," + height + "," + depth + "]");
+    }
+
+    /**
+     * Makes this node a sphere
+     *
+     * @param radius the radius of the sphere
+     * @return this
+     */
+    public ThreeSceneNode setSphere(double radius) {
+        return setShape("sphere", "[" + radius + "]");
+    }
+
+    /**
+     * Makes this node a cylinder along y
+     *
+     * @param radiusTop the radius at the top
+     * @param radiusBottom the radius at the bottom
+     * @param height the size along y
+     * @return this
+     */
+    public ThreeSceneNode setCylinder(double radiusTop, double radiusBottom, double height) {
+        return setShape("cylinder", "[" + radiusTop + "," + radiusBottom + "," + height + "]");
+    }
+
+    /**
+     * Makes this node a glTF model. Each client loads a URL once, however
+     * many nodes use it.
+     *
+     * @param url the URL of the .glb or .gltf file
+     * @return this
+     */
+    public ThreeSceneNode setModel(String url) {
+        return setShape("model", "\"" + url.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+    }
+
+    /**
+     * Makes this node a glTF model that is served by the FileServlet (or the
+     * FileResponder in desktop mode); the file must be in an accessible folder
+     *
+     * @param file the .glb or .gltf file
+     * @return this
+     */
+    public ThreeSceneNode setModel(File file) {
+        try {
+            return setModel("FileServlet?file=" + URLEncoder.encode(WFileServlet.getPath(file), "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Makes this node an empty group, which only holds other nodes
+     *
+     * @return this
+     */
+    public ThreeSceneNode setGroup() {
+        return setShape("group", "null");
+    }
+
+    /**
+     * Sets the kind of object and its arguments
+     *
+     * @param shape the kind of object
+     * @param shapeArgs the arguments as JavaScript
+     * @return this
+     */
+    private ThreeSceneNode setShape(String shape, String shapeArgs) {
+        this.shape = shape;
+        this.shapeArgs = shapeArgs;
+        return changed(ThreeScene.SHAPE);
+    }
+
+    /**
+     * Sets where this node is, relative to its parent
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @return this
+     */
+    public ThreeSceneNode setPosition(double x, double y, double z) {
+        synchronized (transform) {
+            transform[0] = (float) x;
+            transform[1] = (float) y;
+            transform[2] = (float) z;
+        }
+        return changed(ThreeScene.TRANSFORM);
+    }
+
+    /**
+     * Sets the rotation of this node, relative to its parent
+     *
+     * @param x the rotation about x, in radians
+     * @param y the rotation about y, in radians
+     * @param z the rotation about z, in radians
+     * @return this
+     */
+    public ThreeSceneNode setRotation(double x, double y, double z) {
+        synchronized (transform) {
+            transform[3] = (float) x;
+            transform[4] = (float) y;
+            transform[5] = (float) z;
+        }
+        return changed(ThreeScene.TRANSFORM);
+    }
+
+    /**
+     * Sets the scale of this node, relative to its parent
+     *
+     * @param x the scale along x
+     * @param y the scale along y
+     * @param z the scale along z
+     * @return this
+     */
+    public ThreeSceneNode setScale(double x, double y, double z) {
+        synchronized (transform) {
+            transform[6] = (float) x;
+            transform[7] = (float) y;
+            transform[8] = (float) z;
+        }
+        return changed(ThreeScene.TRANSFORM);
+    }
+
+    /**
+     * @return a copy of the position, rotation and scale
+     */
+    public float[] getTransform() {
+        synchronized (transform) {
+            return transform.clone();
+        }
+    }
+
+    /**
+     * Sets the color of the material
+     *
+     * @param color the color, or null to keep a model's own colors
+     * @return this
+     */
+    public ThreeSceneNode setColor(Color color) {
+        this.color = color;
+        return changed(ThreeScene.MATERIAL);
+    }
+
+    /**
+     * Sets how opaque the material is
+     *
+     * @param opacity from 0 (invisible) to 1 (solid)
+     * @return this
+     */
+    public ThreeSceneNode setOpacity(double opacity) {
+        this.opacity = opacity;
+        return changed(ThreeScene.MATERIAL);
+    }
+
+    /**
+     * Sets whether the material is drawn as a wireframe
+     *
+     * @param wireframe true to draw only the edges
+     * @return this
+     */
+    public ThreeSceneNode setWireframe(boolean wireframe) {
+        this.wireframe = wireframe;
+        return changed(ThreeScene.MATERIAL);
+    }
+
+    /**
+     * Sets whether this node and its children are shown
+     *
+     * @param visible true to show the node
+     * @return this
+     */
+    public ThreeSceneNode setVisible(boolean visible) {
+        this.visible = visible;
+        return changed(ThreeScene.MATERIAL);
+    }
+
+    /**
+     * Records a change with the scene
+     *
+     * @param flag what changed
+     * @return this
+     */
+    private ThreeSceneNode changed(int flag) {
+        ThreeScene owner = scene;
+        if (owner != null) {
+            owner.changed(this, flag);
+        }
+        return this;
+    }
+
+    /**
+     * @return the JavaScript object that creates this node
+     */
+    String toShapeScript() {
+        return "{id:\"" + ThreeScene.escape(id) + "\",p:" + (parentId == null ? "null" : "\"" + ThreeScene.escape(parentId) + "\"")
+                + ",n:\"" + ThreeScene.escape(name) + "\",s:\"" + shape + "\",g:" + shapeArgs + "}";
+    }
+
+    /**
+     * @return the JavaScript object that sets this node's material
+     */
+    String toMaterialScript() {
+        return "{id:\"" + ThreeScene.escape(id) + "\",c:" + (color == null ? "null" : "\"" + WTools.toHex(color) + "\"")
+                + ",o:" + opacity + ",w:" + wireframe + ",v:" + visible + "}";
+    }
+}
@@ -32,8 +32,16 @@
  */
 package gov.mil.navy.nswcdd.wachos.components;
 
+import gov.mil.navy.nswcdd.wachos.tools.FlushScheduler;
+import gov.mil.navy.nswcdd.wachos.tools.TypedArrays;
+import gov.mil.navy.nswcdd.wachos.tools.WSession;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 /**
@@ -48,6 +56,10 @@ public class Threejs extends Component {
      * interactions
      */
     public final ComponentListeners threejsListeners = new ComponentListeners();
+    /**
+     * listeners for the batched messages sent with sendToWachos
+     */
+    public final List<ThreejsMessageListener> messageListeners = new CopyOnWriteArrayList<>();
     /**
      * Array of JavaScript paths or URLs to be loaded for this component
      */
@@ -60,6 +72,21 @@ public class Threejs extends Component {
      * the height of the Three.js container, defaulting to "400px"
      */
     private String height = "400px";
+    /**
+     * the latest transform of each object that hasn't been sent to the client
+     * yet
+     */
+    private final Map<String, float[]> pendingTransforms = new LinkedHashMap<>();
+    /**
+     * sends the collected transforms to the client; collects transforms for about one
+     * animation frame by default
+     */
+    private final FlushScheduler flusher = new FlushScheduler(16, this::flush);
+    /**
+     * the scene graph shown by this component; null if the scripts manage
+     * everything themselves
+     */
+    private ThreeScene scene = null;
 
     /**
      * Constructs a Three.js component with the specified JavaScript scripts.
@@ -103,20 +130,452 @@ public class Threejs extends Component {
      */
     public void threeExec(String value) {
         //call the client-side receive function with the provided value
-        exec("receiveFrom" + getId() + "(\"" + value + "\");");
+        exec("receiveFrom" + getId() + "(\"" + ThreeScene.escape(value) + "\");");
+    }
+
+    /**
+     * Executes a JavaScript function on the client side with the provided value
+     * and numeric buffers. Each buffer arrives as a Float32Array in the second
+     * argument of receiveFromWachos, without being formatted as text, which
+     * suits vertex positions, colors and normals.
+     *
+     * @param value the value to pass to the client-side JavaScript function
+     * @param buffers the buffers to pass as an array of Float32Arrays
+     */
+    public void threeExec(String value, float[]... buffers) {
+        StringBuilder arrays = new StringBuilder();
+        for (float[] buffer : buffers) {
+            arrays.append(arrays.length() == 0 ? "" : ", ").append(TypedArrays.toFloat32(buffer));
+        }
+        exec("receiveFrom" + getId() + "(\"" + ThreeScene.escape(value) + "\", [" + arrays + "]);");
+    }
+
+    /**
+     * Executes a JavaScript function on the client side with the provided value
+     * and numeric buffers. Each buffer arrives as a Float64Array in the second
+     * argument of receiveFromWachos.
+     *
+     * @param value the value to pass to the client-side JavaScript function
+     * @param buffers the buffers to pass as an array of Float64Arrays
+     */
+    public void threeExec(String value, double[]... buffers) {
+        StringBuilder arrays = new StringBuilder();
+        for (double[] buffer : buffers) {
+            arrays.append(arrays.length() == 0 ? "" : ", ").append(TypedArrays.toFloat64(buffer));
+        }
+        exec("receiveFrom" + getId() + "(\"" + ThreeScene.escape(value) + "\", [" + arrays + "]);");
+    }
+
+    /**
+     * Shows a server-side scene graph in this component. Scripts can add the
+     * scene to their own Three.js scene with wachosSceneRoot; if none of the
+     * scripts mention it, a default renderer, camera, lights and orbit
+     * controls are created. The same ThreeScene can be shown by components in
+     * many sessions.
+     *
+     * @param scene the scene to show, or null to stop showing one
+     * @return this
+     */
+    public Threejs setScene(ThreeScene scene) {
+        if (this.scene != null) {
+            this.scene.detach(this);
+        }
+        this.scene = scene;
+        if (scene != null) {
+            scene.attach(this);
+        }
+        if (isRendered()) {
+            redraw();
+        }
+        return this;
+    }
+
+    /**
+     * @return the scene graph shown by this component, or null
+     */
+    public ThreeScene getScene() {
+        return scene;
+    }
+
+    /**
+     * Initializes this component and stops showing the scene when the session
+     * closes, since a scene can outlive the sessions that show it
+     *
+     * @param masterId the layout this will ultimately be drawn inside of
+     * @param session the user's session
+     */
+    @Override
+    public void init(String masterId, WSession session) {
+        WSession previous = this.session;
+        super.init(masterId, session);
+        if (this.session != null && this.session != previous) {
+            this.session.onClose(() -> {
+                if (scene != null) {
+                    scene.detach(this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets the transform of an object, such as its position, rotation and
+     * scale. Transforms are collected and sent together, only the latest
+     * transform of each object is sent, and the client hands each one to the
+     * script's receiveTransformsFromWachos(objectId, values) once per
+     * animation frame.
+     *
+     * @param objectId the object being moved
+     * @param transform the numbers that describe where the object is
+     */
+    public void setTransform(String objectId, float[] transform) {
+        synchronized (pendingTransforms) {
+            pendingTransforms.remove(objectId); //keep the objects in the order they last changed
+            pendingTransforms.put(objectId, transform);
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Sets the transforms of many objects at once
+     *
+     * @param transforms the transform of each object, keyed by object ID
+     */
+    public void setTransforms(Map<String, float[]> transforms) {
+        synchronized (pendingTransforms) {
+            for (Map.Entry<String, float[]> transform : transforms.entrySet()) {
+                pendingTransforms.remove(transform.getKey());
+                pendingTransforms.put(transform.getKey(), transform.getValue());
+            }
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Sets how often the transforms from setTransform are sent to the client
+     *
+     * @param millis the number of milliseconds to collect transforms before
+     * sending them
+     */
+    public void setFlushInterval(long millis) {
+        flusher.setInterval(millis);
+    }
+
+    /**
+     * Sends the collected transforms to the client as one message: the object
+     * IDs, the length of each transform, and all of the values in one typed
+     * array
+     */
+    public void flush() {
+        List<String> ids;
+        List<float[]> transforms;
+        synchronized (pendingTransforms) {
+            if (pendingTransforms.isEmpty() || !isRendered()) {
+                return;
+            }
+            ids = new ArrayList<>(pendingTransforms.keySet());
+            transforms = new ArrayList<>(pendingTransforms.values());
+            pendingTransforms.clear();
+        }
+        int total = 0;
+        int[] lengths = new int[transforms.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = transforms.get(i).length;
+            total += lengths[i];
+        }
+        float[] values = new float[total];
+        int offset = 0;
+        for (float[] transform : transforms) {
+            System.arraycopy(transform, 0, values, offset, transform.length);
+            offset += transform.length;
+        }
+        StringBuilder script = new StringBuilder(getId() + "Receive([");
+        for (int i = 0; i < ids.size(); i++) {
+            script.append(i == 0 ? "\"" : ",\"").append(ThreeScene.escape(ids.get(i))).append("\"");
+        }
+        script.append("], ").append(TypedArrays.toInt32(lengths)).append(", ").append(TypedArrays.toFloat32(values)).append(");");
+        exec(script.toString());
     }
 
     /**
      * Handles client-side events fired by user interactions with the Three.js
-     * component. Notifies registered listeners of the updated value.
+     * component. Batches from sendToWachos go to the messageListeners, and
+     * everything else notifies the threejsListeners of the updated value.
      *
      * @param value the text value that has changed due to the event
      */
     @Override
     public void fireEvent(String value) {
+        if (value.startsWith("#channel\n")) {
+            //each line is "type\tobjectId\tvalue,value,...", with separators in the type and ID escaped by Send
+            for (String line : value.substring(9).split("\n")) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 3) {
+                    continue;
+                }
+                String[] strs = parts[2].isEmpty() ? new String[0] : parts[2].split(",");
+                float[] values = new float[strs.length];
+                try {
+                    for (int i = 0; i < strs.length; i++) {
+                        values[i] = Float.parseFloat(strs[i]);
+                    }
+                } catch (NumberFormatException ex) {
+                    continue; //a malformed line is dropped without losing the rest of the batch
+                }
+                String type = unescapeField(parts[0]);
+                String id = unescapeField(parts[1]);
+                for (ThreejsMessageListener listener : messageListeners) {
+                    listener.messageReceived(type, id, values);
+                }
+            }
+            return;
+        }
         threejsListeners.update(value); //notify listeners of the value change
     }
 
+    /**
+     * Reverses the escaping that Send applies to the type and object ID of a
+     * message, so that tabs and line breaks in them don't split the line
+     *
+     * @param field the escaped type or object ID
+     * @return the original text
+     */
+    private static String unescapeField(String field) {
+        return field.replace("%09", "\t").replace("%0A", "\n").replace("%0D", "\r").replace("%25", "%");
+    }
+
+    /**
+     * Provides the script that keeps a copy of the scene graph on the client.
+     * Updates remove nodes, add or rebuild nodes, and then set materials and
+     * transforms.
+     *
+     * @return the script, which comes before the component's scripts so that
+     * they can use wachosSceneRoot
+     */
+    private String getSceneScript() {
+        String id = getId();
+        return "<script>\n"
+                + "var " + id + "SceneNodes = new Map();\n"
+                + "var " + id + "SceneAssets = new Map();\n"
+                + "var " + id + "SceneGroup = null;\n"
+                + "function " + id + "SceneRoot() {\n"
+                + "  if (!" + id + "SceneGroup) {\n"
+                + "    " + id + "SceneGroup = new THREE.Group();\n"
+                + "  }\n"
+                + "  return " + id + "SceneGroup;\n"
+                + "}\n"
+                //models are loaded once per URL and cloned for each node
+                + "function " + id + "SceneModel(url, group) {\n"
+                + "  var asset = " + id + "SceneAssets.get(url);\n"
+                + "  if (!asset) {\n"
+                + "    asset = new Promise(function (resolve, reject) {\n"
+                + "      new THREE.GLTFLoader().load(url, function (gltf) { resolve(gltf.scene); }, undefined, function (error) {\n"
+                + "        console.error('Unable to load model ' + url, error);\n"
+                + "        " + id + "SceneAssets.delete(url);\n" //the next node with this URL tries again
+                + "        reject(error);\n"
+                + "      });\n"
+                + "    });\n"
+                + "    " + id + "SceneAssets.set(url, asset);\n"
+                + "  }\n"
+                + "  asset.then(function (model) {\n"
+                + "    group.add(model.clone());\n"
+                + "    " + id + "SceneMaterial(group, group.userData.wachosMaterial);\n"
+                + "  }, function () {});\n" //the error was logged once by the loader; the node stays an empty group
+                + "}\n"
+                + "function " + id + "SceneBuild(n) {\n"
+                + "  var o;\n"
+                + "  if (n.s === 'box') {\n"
+                + "    o = new THREE.Mesh(new THREE.BoxGeometry(n.g[0], n.g[1], n.g[2]), new THREE.MeshStandardMaterial());\n"
+                + "  } else if (n.s === 'sphere') {\n"
+                + "    o = new THREE.Mesh(new THREE.SphereGeometry(n.g[0], 32, 16), new THREE.MeshStandardMaterial());\n"
+                + "  } else if (n.s === 'cylinder') {\n"
+                + "    o = new THREE.Mesh(new THREE.CylinderGeometry(n.g[0], n.g[1], n.g[2], 32), new THREE.MeshStandardMaterial());\n"
+                + "  } else {\n"
+                + "    o = new THREE.Group();\n"
+                + "    if (n.s === 'model') {\n"
+                + "      " + id + "SceneModel(n.g, o);\n"
+                + "    }\n"
+                + "  }\n"
+                + "  o.name = n.n;\n"
+                + "  o.userData.wachosId = n.id;\n"
+                + "  return o;\n"
+                + "}\n"
+                + "function " + id + "SceneMaterial(o, m) {\n"
+                + "  if (!m) {\n"
+                + "    return;\n"
+                + "  }\n"
+                + "  o.userData.wachosMaterial = m;\n"
+                + "  o.visible = m.v;\n"
+                + "  var apply = function (child) {\n"
+                + "    if (child.material) {\n"
+                + "      if (m.c !== null) {\n"
+                + "        child.material.color.set(m.c);\n"
+                + "      }\n"
+                + "      child.material.opacity = m.o;\n"
+                + "      child.material.transparent = m.o < 1;\n"
+                + "      child.material.wireframe = m.w;\n"
+                + "    }\n"
+                + "  };\n"
+                + "  apply(o);\n"
+                + "  o.children.forEach(function (child) {\n"
+                + "    if (child.userData.wachosId === undefined) {\n"
+                + "      child.traverse(apply);\n" //the parts of a model, but not the child nodes
+                + "    }\n"
+                + "  });\n"
+                + "}\n"
+                + "function " + id + "SceneApply(d) {\n"
+                + "  var nodes = " + id + "SceneNodes;\n"
+                + "  var root = " + id + "SceneRoot();\n"
+                + "  d.r.forEach(function (nodeId) {\n"
+                + "    var o = nodes.get(nodeId);\n"
+                + "    if (o) {\n"
+                + "      o.removeFromParent();\n"
+                + "      o.traverse(function (child) {\n"
+                + "        if (child.userData.wachosId !== undefined) {\n"
+                + "          nodes.delete(child.userData.wachosId);\n"
+                + "        }\n"
+                + "        if (child.geometry && child.userData.wachosId !== undefined) {\n"
+                + "          child.geometry.dispose();\n"
+                + "          child.material.dispose();\n"
+                + "        }\n"
+                + "      });\n"
+                + "    }\n"
+                + "  });\n"
+                + "  d.a.forEach(function (n) {\n"
+                + "    var old = nodes.get(n.id);\n"
+                + "    var o = old;\n"
+                + "    if (!old || old.userData.wachosShape !== n.s + JSON.stringify(n.g)) {\n"
+                + "      o = " + id + "SceneBuild(n);\n"
+                + "      o.userData.wachosShape = n.s + JSON.stringify(n.g);\n"
+                + "      if (old) {\n" //keep the child nodes of a node whose shape changed
+                + "        old.children.slice().forEach(function (child) {\n"
+                + "          if (child.userData.wachosId !== undefined) {\n"
+                + "            o.add(child);\n"
+                + "          }\n"
+                + "        });\n"
+                + "        old.removeFromParent();\n"
+                + "        if (old.geometry) {\n"
+                + "          old.geometry.dispose();\n"
+                + "          old.material.dispose();\n"
+                + "        }\n"
+                + "      }\n"
+                + "      nodes.set(n.id, o);\n"
+                + "    }\n"
+                + "    o.name = n.n;\n"
+                + "    (n.p === null ? root : (nodes.get(n.p) || root)).add(o);\n"
+                + "  });\n"
+                + "  d.m.forEach(function (m) {\n"
+                + "    var o = nodes.get(m.id);\n"
+                + "    if (o) {\n"
+                + "      " + id + "SceneMaterial(o, m);\n"
+                + "    }\n"
+                + "  });\n"
+                + "  for (var i = 0; i < d.t.length; i++) {\n"
+                + "    var o = nodes.get(d.t[i]);\n"
+                + "    if (o) {\n"
+                + "      var v = d.v, j = i * 9;\n"
+                + "      o.position.set(v[j], v[j + 1], v[j + 2]);\n"
+                + "      o.rotation.set(v[j + 3], v[j + 4], v[j + 5]);\n"
+                + "      o.scale.set(v[j + 6], v[j + 7], v[j + 8]);\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n"
+                + "</script>\n";
+    }
+
+    /**
+     * @return the script that draws the scene graph when none of the scripts
+     * add it to a scene of their own
+     */
+    private String getDefaultViewerScript() {
+        String id = getId();
+        return "(function () {\n"
+                + "  var container = document.getElementById('" + id + "');\n"
+                + "  var scene = new THREE.Scene();\n"
+                + "  scene.background = new THREE.Color(0xf0f0f0);\n"
+                + "  scene.add(new THREE.HemisphereLight(0xffffff, 0x444444, 2));\n"
+                + "  var light = new THREE.DirectionalLight(0xffffff, 2);\n"
+                + "  light.position.set(5, 10, 7);\n"
+                + "  scene.add(light);\n"
+                + "  scene.add(" + id + "SceneRoot());\n"
+                + "  var camera = new THREE.PerspectiveCamera(45, container.clientWidth / Math.max(1, container.clientHeight), 0.1, 10000);\n"
+                + "  camera.position.set(0, 10, 20);\n"
+                + "  var renderer = new THREE.WebGLRenderer({antialias: true});\n"
+                + "  renderer.setSize(container.clientWidth, container.clientHeight);\n"
+                + "  container.appendChild(renderer.domElement);\n"
+                + "  var controls = new THREE.OrbitControls(camera, renderer.domElement);\n"
+                + "  var animate = function () {\n"
+                + "    if (!document.body.contains(container)) {\n" //stop once the component is gone
+                + "      renderer.dispose();\n"
+                + "      return;\n"
+                + "    }\n"
+                + "    requestAnimationFrame(animate);\n"
+                + "    if (renderer.domElement.width !== container.clientWidth || renderer.domElement.height !== container.clientHeight) {\n"
+                + "      camera.aspect = container.clientWidth / Math.max(1, container.clientHeight);\n"
+                + "      camera.updateProjectionMatrix();\n"
+                + "      renderer.setSize(container.clientWidth, container.clientHeight);\n"
+                + "    }\n"
+                + "    controls.update();\n"
+                + "    renderer.render(scene, camera);\n"
+                + "  };\n"
+                + "  animate();\n"
+                + "})();\n";
+    }
+
+    /**
+     * @return the script for the message channel: transforms from the server
+     * are kept per object until the next animation frame, and messages from
+     * sendToWachos are kept per type and object until the next animation frame
+     * and then sent as one event
+     */
+    private String getChannelScript() {
+        return "<script>\n"
+                + "var " + getId() + "Transforms = new Map();\n"
+                + "var " + getId() + "Outbox = new Map();\n"
+                + "var " + getId() + "Frame = false;\n"
+                + "function " + getId() + "Schedule() {\n"
+                + "  if (" + getId() + "Frame) {\n"
+                + "    return;\n"
+                + "  }\n"
+                + "  " + getId() + "Frame = true;\n"
+                + "  requestAnimationFrame(function () {\n"
+                + "    " + getId() + "Frame = false;\n"
+                + "    var transforms = " + getId() + "Transforms;\n"
+                + "    " + getId() + "Transforms = new Map();\n"
+                + "    if (typeof receiveTransformsFrom" + getId() + " === 'function') {\n"
+                + "      transforms.forEach(function (values, id) {\n"
+                + "        receiveTransformsFrom" + getId() + "(id, values);\n"
+                + "      });\n"
+                + "    }\n"
+                + "    if (" + getId() + "Outbox.size > 0) {\n"
+                + "      var lines = [];\n"
+                + "      " + getId() + "Outbox.forEach(function (line) {\n"
+                + "        lines.push(line);\n"
+                + "      });\n"
+                + "      " + getId() + "Outbox = new Map();\n"
+                + "      changed" + layoutId + "({id: '" + getId() + "', value: '#channel\\n' + lines.join('\\n')});\n"
+                + "    }\n"
+                + "  });\n"
+                + "}\n"
+                + "function " + getId() + "Receive(ids, lengths, values) {\n"
+                + "  var offset = 0;\n"
+                + "  for (var i = 0; i < ids.length; i++) {\n"
+                + "    " + getId() + "Transforms.set(ids[i], values.subarray(offset, offset + lengths[i]));\n"
+                + "    offset += lengths[i];\n"
+                + "  }\n"
+                + "  " + getId() + "Schedule();\n"
+                + "}\n"
+                + "function " + getId() + "Send(type, id, values) {\n"
+                + "  var esc = function (s) {\n"
+                + "    return String(s).replace(/%/g, '%25').replace(/\\t/g, '%09').replace(/\\n/g, '%0A').replace(/\\r/g, '%0D');\n"
+                + "  };\n"
+                + "  type = esc(type);\n"
+                + "  id = id === undefined || id === null ? '' : esc(id);\n"
+                + "  " + getId() + "Outbox.set(type + '\\t' + id, type + '\\t' + id + '\\t' + Array.prototype.join.call(values || [], ','));\n"
+                + "  " + getId() + "Schedule();\n"
+                + "}\n"
+                + "</script>\n";
+    }
+
     /**
      * Returns a unique identifier for this Three.js component
      *
@@ -128,6 +587,14 @@ public class Threejs extends Component {
         return "three" + hashCode();
     }
 
+    /**
+     * @return "three", which this component needs
+     */
+    @Override
+    public String[] getModules() {
+        return new String[]{"three"};
+    }
+
     /**
      * Generates the HTML representation of the Three.js component, including
      * the container div and any associated JavaScript scripts. Scripts are
@@ -141,6 +608,7 @@ public class Threejs extends Component {
         StringBuilder sb = new StringBuilder();
 
         //process each script provided in the constructor
+        boolean usesSceneRoot = false;
         for (String script : scripts) {
             boolean includeScript = false;
             //check if the script is a local resource and not an external URL
@@ -150,14 +618,18 @@ public class Threejs extends Component {
                     String str = new BufferedReader(new InputStreamReader(getClass().getClassLoader().getResourceAsStream("META-INF/resources/" + script))).lines().collect(Collectors.joining("\n"));
 
                     //check if the script contains WACHOS-specific markers
-                    if (str.contains("@wachoscanvas") || str.contains("fireWachosEvent(") || str.contains("receiveFromWachos(")) {
+                    if (str.contains("@wachoscanvas") || str.contains("fireWachosEvent(") || str.contains("receiveFromWachos(")
+                            || str.contains("receiveTransformsFromWachos(") || str.contains("sendToWachos(") || str.contains("wachosSceneRoot")) {
+                        usesSceneRoot |= str.contains("wachosSceneRoot");
                         //define regex to replace fireWachosEvent calls
                         String regex = "fireWachosEvent\\((.*?)\\);";
                         //define replacement to transform fireWachosEvent to a changed event
                         String replacement = "changed" + layoutId + "({id: '" + getId() + "', value: $1})";
 
                         //modify the script: replace canvas ID, event handlers, and receive functions
-                        sb.append("<script>" + str.replace("@wachoscanvas", getId()).replaceAll(regex, replacement).replace("receiveFromWachos(", "receiveFrom" + getId() + "(") + "</script>\n");
+                        sb.append("<script>" + str.replace("@wachoscanvas", getId()).replaceAll(regex, replacement).replace("receiveFromWachos(", "receiveFrom" + getId() + "(")
+                                .replace("receiveTransformsFromWachos(", "receiveTransformsFrom" + getId() + "(").replace("sendToWachos(", getId() + "Send(")
+                                .replace("wachosSceneRoot", getId() + "SceneRoot()") + "</script>\n");
                         includeScript = true;
                     }
                 } catch (Exception e) {
@@ -165,15 +637,18 @@ public class Threejs extends Component {
                 }
             }
             //if the script is an external URL or not processed locally, include it as a script tag
-            if (!includeScript) {
+            if (!includeScript && !script.equals("wjs/three.min.js")) { //three.js itself is a module
                 sb.append("<script src='").append(script).append("'></script>\n");
             }
         }
 
         //return the HTML div with the component's ID, dimensions, and scripts
-        return "<div id=\"" + getId() + "\" style='width: " + width + "; height: " + height + "; border: 0'>\n"
+        return requireModules("<div id=\"" + getId() + "\" style='width: " + width + "; height: " + height + "; border: 0'>\n"
+                + getChannelScript()
+                + (scene == null ? "" : getSceneScript())
                 + sb.toString()
-                + "</div>";
+                + (scene == null ? "" : "<script>\n" + (usesSceneRoot ? "" : getDefaultViewerScript()) + getId() + "SceneApply(" + scene.toSnapshot() + ");\n</script>\n")
+                + "</div>");
     }
 
     /**
@@ -182,5 +657,9 @@ public class Threejs extends Component {
     @Override
     public void dispose() {
         threejsListeners.clear();
+        messageListeners.clear();
+        if (scene != null) {
+            scene.detach(this);
+        }
     }
 }
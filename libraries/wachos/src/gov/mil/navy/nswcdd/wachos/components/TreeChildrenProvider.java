@@ -0,0 +1,75 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import gov.mil.navy.nswcdd.wachos.components.TreeView.TreeNode;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TreeChildrenProvider supplies the children of a TreeView's nodes when they
+ * are expanded, so a large hierarchy doesn't have to be built up front
+ */
+public interface TreeChildrenProvider {
+
+    /**
+     * Provides a page of children for the given node; nodes that have children
+     * of their own should be created with setHasChildren(true) rather than
+     * having their children added
+     *
+     * @param parent the node that was expanded; this is the TreeView's root
+     * node for the top level of the tree
+     * @param offset the number of children that have already been provided
+     * @param limit the maximum number of children to return; if exactly this
+     * many are returned, the user will be able to ask for more
+     * @return the next page of children
+     */
+    public List<TreeNode> getChildren(TreeNode parent, int offset, int limit);
+
+    /**
+     * Finds the nodes that match a TreeView search, including nodes whose
+     * branches haven't been loaded yet. The TreeView loads the branch leading
+     * to each match (following the first child with each text) and adds the
+     * matches to those found among the loaded nodes. The default
+     * implementation finds nothing, so only loaded nodes can match.
+     *
+     * @param query the words the user is looking for
+     * @param limit the maximum number of matches to return
+     * @return for each match, the text of each node from the top level of the
+     * tree down to the matching node
+     */
+    public default List<List<String>> search(String query, int limit) {
+        return Collections.emptyList();
+    }
+
+}
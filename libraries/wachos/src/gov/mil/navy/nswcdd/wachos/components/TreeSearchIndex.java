@@ -0,0 +1,229 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components;
+
+import gov.mil.navy.nswcdd.wachos.components.TreeView.TreeNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TreeSearchIndex finds the nodes of a TreeView by the words in their text. The
+ * words are kept in a prefix trie, which points at an inverted index of the
+ * nodes containing each word, so a query like "pum mot" finds "Pump Motor 3"
+ * without looking at every node. It is updated as nodes are added, renamed and
+ * removed.
+ */
+class TreeSearchIndex {
+
+    /**
+     * the root of the trie of every word in the tree
+     */
+    private final TrieNode trie = new TrieNode();
+    /**
+     * the nodes containing each word
+     */
+    private final Map<String, Set<TreeNode>> postings = new HashMap<>();
+    /**
+     * the words of each node, so they can be removed when the node changes
+     */
+    private final Map<TreeNode, List<String>> nodeWords = new HashMap<>();
+
+    /**
+     * Adds the node, replacing its previous words if it was already indexed
+     *
+     * @param node the node to index
+     * @param text the text of the node
+     */
+    void add(TreeNode node, String text) {
+        remove(node);
+        List<String> words = tokenize(text);
+        if (words.isEmpty()) {
+            return;
+        }
+        nodeWords.put(node, words);
+        for (String word : words) {
+            Set<TreeNode> nodes = postings.get(word);
+            if (nodes == null) {
+                nodes = new LinkedHashSet<>();
+                postings.put(word, nodes);
+                TrieNode trieNode = trie;
+                for (int i = 0; i < word.length(); i++) {
+                    trieNode = trieNode.children.computeIfAbsent(word.charAt(i), c -> new TrieNode());
+                }
+                trieNode.word = word;
+            }
+            nodes.add(node);
+        }
+    }
+
+    /**
+     * Removes the node from the index
+     *
+     * @param node the node to remove
+     */
+    void remove(TreeNode node) {
+        List<String> words = nodeWords.remove(node);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            Set<TreeNode> nodes = postings.get(word);
+            if (nodes != null && nodes.remove(node) && nodes.isEmpty()) {
+                postings.remove(word);
+                removeFromTrie(trie, word, 0);
+            }
+        }
+    }
+
+    /**
+     * Removes the word from the trie, along with any branches that no longer
+     * lead to a word
+     *
+     * @param trieNode the current position in the trie
+     * @param word the word to remove
+     * @param depth the number of characters already matched
+     * @return true if trieNode is now empty and can be dropped
+     */
+    private boolean removeFromTrie(TrieNode trieNode, String word, int depth) {
+        if (depth == word.length()) {
+            trieNode.word = null;
+        } else {
+            TrieNode child = trieNode.children.get(word.charAt(depth));
+            if (child != null && removeFromTrie(child, word, depth + 1)) {
+                trieNode.children.remove(word.charAt(depth));
+            }
+        }
+        return trieNode.word == null && trieNode.children.isEmpty();
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    void clear() {
+        trie.children.clear();
+        postings.clear();
+        nodeWords.clear();
+    }
+
+    /**
+     * Finds the nodes that have a word starting with each word of the query
+     *
+     * @param query the words to look for
+     * @param limit the maximum number of nodes to return
+     * @return the matching nodes
+     */
+    List<TreeNode> search(String query, int limit) {
+        Set<TreeNode> matches = null;
+        for (String prefix : tokenize(query)) {
+            Set<TreeNode> prefixMatches = new LinkedHashSet<>();
+            TrieNode trieNode = trie;
+            for (int i = 0; i < prefix.length() && trieNode != null; i++) {
+                trieNode = trieNode.children.get(prefix.charAt(i));
+            }
+            if (trieNode != null) {
+                collect(trieNode, prefixMatches);
+            }
+            if (matches == null) {
+                matches = prefixMatches;
+            } else {
+                matches.retainAll(prefixMatches);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        List<TreeNode> ret = new ArrayList<>();
+        if (matches != null) {
+            for (TreeNode node : matches) {
+                if (ret.size() >= limit) {
+                    break;
+                }
+                ret.add(node);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Adds the nodes of every word at or below this position in the trie
+     *
+     * @param trieNode the position in the trie
+     * @param matches the nodes found so far
+     */
+    private void collect(TrieNode trieNode, Set<TreeNode> matches) {
+        if (trieNode.word != null) {
+            matches.addAll(postings.get(trieNode.word));
+        }
+        for (TrieNode child : trieNode.children.values()) {
+            collect(child, matches);
+        }
+    }
+
+    /**
+     * Splits the text into lower case words of letters and digits
+     *
+     * @param text the text to split
+     * @return the distinct words in the text
+     */
+    static List<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text != null) {
+            for (String word : text.toLowerCase().split("[^\\p{L}\\p{Nd}]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * A position in the trie
+     */
+    private static class TrieNode {
+
+        /**
+         * the next positions by character
+         */
+        final Map<Character, TrieNode> children = new HashMap<>();
+        /**
+         * the word that ends here, or null
+         */
+        String word;
+    }
+
+}
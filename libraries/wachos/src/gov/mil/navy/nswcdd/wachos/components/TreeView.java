@@ -32,11 +32,20 @@
  */
 package gov.mil.navy.nswcdd.wachos.components;
 
+import gov.mil.navy.nswcdd.wachos.components.text.DropButton;
 import gov.mil.navy.nswcdd.wachos.components.text.Label;
 import gov.mil.navy.nswcdd.wachos.components.text.TextComponent;
 import gov.mil.navy.nswcdd.wachos.tools.WSession;
+import gov.mil.navy.nswcdd.wachos.tools.WTools;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * TreeView is a graphical user interface (GUI) component that displays
@@ -61,12 +70,89 @@ public class TreeView extends Component {
      * the ID of the currently selected node
      */
     private String selectedNode = "";
+    /**
+     * supplies the children of nodes as they are expanded; null if the whole
+     * tree is built up front
+     */
+    private TreeChildrenProvider childrenProvider;
+    /**
+     * the number of children requested from the childrenProvider at a time
+     */
+    private int pageSize = 500;
+    /**
+     * if true, the children of a collapsed node that came from the
+     * childrenProvider are dropped and requested again when it is expanded
+     */
+    private boolean unloadCollapsed = false;
+    /**
+     * every node in this tree by its ID, so nodes can be found without
+     * searching the tree
+     */
+    private final Map<String, TreeNode> nodeIndex = new HashMap<>();
+    /**
+     * the component of every node in this tree by the component's ID, along
+     * with the components nested in them (a DropButton's menu), so events can
+     * be dispatched without searching the tree
+     */
+    private final Map<String, Component<?>> componentIndex = new HashMap<>();
+    /**
+     * when a transaction needs more than this many operations in the browser,
+     * the whole tree is refreshed instead
+     */
+    private static final int MAX_BATCHED_OPERATIONS = 500;
+    /**
+     * the words in the text of every node in this tree
+     */
+    private final TreeSearchIndex searchIndex = new TreeSearchIndex();
+    /**
+     * the maximum number of nodes that a search will find
+     */
+    private int maxSearchResults = 1000;
 
     /**
      * Constructor
      */
     public TreeView() {
         rootNode.treeview = TreeView.this;
+        index(rootNode);
+    }
+
+    /**
+     * Constructor for a tree whose nodes are loaded from the provider as they
+     * are expanded, rather than all being sent to the browser up front
+     *
+     * @param childrenProvider supplies the children of each node, including
+     * the top level of the tree
+     */
+    public TreeView(TreeChildrenProvider childrenProvider) {
+        this();
+        this.childrenProvider = childrenProvider;
+        rootNode.setHasChildren(true);
+    }
+
+    /**
+     * Sets how many children are requested from the TreeChildrenProvider at a
+     * time; if a node has more, the user can ask for the next page
+     *
+     * @param pageSize the number of children in each page
+     * @return this
+     */
+    public TreeView setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        return this;
+    }
+
+    /**
+     * Sets whether the children of a collapsed node are dropped from the
+     * server and browser, to be requested from the TreeChildrenProvider again
+     * when the node is expanded
+     *
+     * @param unloadCollapsed true to drop the children of collapsed nodes
+     * @return this
+     */
+    public TreeView setUnloadCollapsed(boolean unloadCollapsed) {
+        this.unloadCollapsed = unloadCollapsed;
+        return this;
     }
 
     /**
@@ -97,6 +183,12 @@ public class TreeView extends Component {
         } else if (evt.startsWith("#deselected ")) {
             selectedNode = "";
             selectionListeners.update("");
+        } else if (evt.startsWith("#load ")) {
+            sendChildren(evt.replace("#load ", ""));
+        } else if (evt.startsWith("#more ")) {
+            sendMoreChildren(evt.replace("#more ", ""));
+        } else if (evt.startsWith("#collapsed ")) {
+            unloadChildren(evt.replace("#collapsed ", ""));
         } else if (evt.startsWith("#dragged ")) {
             String[] strs = evt.split("\\s+");
             TreeNode movedNode = getNode(strs[1]);
@@ -108,6 +200,102 @@ public class TreeView extends Component {
         }
     }
 
+    /**
+     * Requests the first page of children from the provider if the node has
+     * children that haven't been loaded yet
+     *
+     * @param node the node whose children are needed
+     */
+    private void loadChildren(TreeNode node) {
+        if (childrenProvider == null || !node.lazy || node.loaded) {
+            return;
+        }
+        node.loaded = true;
+        loadPage(node);
+    }
+
+    /**
+     * Requests the next page of children from the provider and adds them to
+     * the node, without sending anything to the browser
+     *
+     * @param node the node whose children are needed
+     * @return the children that were added
+     */
+    private List<TreeNode> loadPage(TreeNode node) {
+        List<TreeNode> page = childrenProvider.getChildren(node, node.provided, pageSize);
+        for (TreeNode child : page) {
+            node.attach(node.children.size(), child);
+        }
+        node.provided += page.size();
+        node.more = page.size() >= pageSize;
+        return page;
+    }
+
+    /**
+     * Sends the children of a node that the browser expanded for the first
+     * time
+     *
+     * @param id the ID of the expanded node
+     */
+    private void sendChildren(String id) {
+        TreeNode node = id.equals("#") ? rootNode : getNode(id);
+        if (node != null) {
+            loadChildren(node);
+        }
+        exec(getId() + "Loaded('" + id + "', [" + (node == null ? "" : node.getChildrenStr()) + "]);");
+    }
+
+    /**
+     * Sends the next page of children of a node, replacing its "more" entry
+     *
+     * @param id the ID of the node whose children are needed
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    private void sendMoreChildren(String id) {
+        TreeNode node = getNode(id);
+        if (node == null || !node.more || childrenProvider == null) {
+            return;
+        }
+        String par = node == rootNode ? "null" : "'" + node.getId() + "'";
+        StringBuilder script = new StringBuilder("var tfTree = $jq('#tree" + getId() + "').jstree(true);\n"
+                + "tfTree.delete_node('more" + node.getId() + "');\n");
+        for (TreeNode child : loadPage(node)) {
+            script.append("tfTree.create_node(" + par + ", " + child.toHtml() + ", 'last');\n");
+        }
+        if (node.more) {
+            script.append("tfTree.create_node(" + par + ", " + node.getMoreStr() + ", 'last');\n");
+        }
+        exec(script.toString());
+    }
+
+    /**
+     * Drops the children of a collapsed node that came from the provider, so
+     * they are requested again when the node is expanded
+     *
+     * @param id the ID of the collapsed node
+     */
+    private void unloadChildren(String id) {
+        TreeNode node = getNode(id);
+        if (!unloadCollapsed || node == null || node == rootNode || !node.lazy || !node.loaded) {
+            return;
+        }
+        for (TreeNode child : node.children) {
+            unindex(child);
+            child.dispose();
+        }
+        node.children.clear();
+        node.loaded = false;
+        node.provided = 0;
+        node.more = false;
+        exec("var tfTree = $jq('#tree" + getId() + "').jstree(true);\n"
+                + "var tfNode = tfTree.get_node('" + id + "');\n"
+                + "if (tfNode) {\n"
+                + "  tfNode.state.loaded = false;\n"
+                + "  tfTree.delete_node(tfNode.children.slice());\n"
+                + "  tfTree.redraw_node(tfNode, false);\n"
+                + "}");
+    }
+
     /**
      * @return the root node, which a user can add to or remove as needed
      */
@@ -119,31 +307,62 @@ public class TreeView extends Component {
      * Gets the node with the given ID
      *
      * @param id the value of 'getId' for the node we're trying to find
-     * @return the TreeNode with the matching ID
+     * @return the TreeNode with the matching ID, or null if it isn't in this
+     * tree
      */
     public TreeNode getNode(String id) {
-        return getNode(rootNode, id);
+        return nodeIndex.get(id);
+    }
+
+    /**
+     * Gets the component of a node in this tree, or a component nested in one
+     *
+     * @param componentId the ID of the component
+     * @return the matching component, or null if no node in this tree has it
+     */
+    public Component<?> getNodeComponent(String componentId) {
+        return componentIndex.get(componentId);
     }
 
     /**
-     * Recursively searches for the TreeNode with the given ID
+     * Adds the node and its descendants to the indexes
      *
-     * @param currentNode the node being searched
-     * @param id the ID of the node we're looking for
-     * @return the matching node if found; otherwise null
+     * @param node the node that was added to this tree
      */
-    private TreeNode getNode(TreeNode currentNode, String id) {
-        if (currentNode.getId().equals(id)) {
-            return currentNode;
+    private void index(TreeNode node) {
+        nodeIndex.put(node.getId(), node);
+        if (node != rootNode) {
+            searchIndex.add(node, WTools.desanitize(node.getText()));
         }
-        for (int i = 0; i < currentNode.children.size(); i++) {
-            TreeNode child = currentNode.children.get(i);
-            TreeNode foundById = getNode(child, id);
-            if (foundById != null) {
-                return foundById;
+        if (node.component != null) {
+            componentIndex.put(node.component.getId(), node.component);
+            if (node.component instanceof DropButton) {
+                ContextMenu menu = ((DropButton) node.component).menu;
+                componentIndex.put(menu.getId(), menu);
             }
         }
-        return null;
+        for (TreeNode child : node.children) {
+            index(child);
+        }
+    }
+
+    /**
+     * Removes the node and its descendants from the indexes
+     *
+     * @param node the node that was removed from this tree
+     */
+    private void unindex(TreeNode node) {
+        nodeIndex.remove(node.getId());
+        searchIndex.remove(node);
+        if (node.component != null) {
+            componentIndex.remove(node.component.getId());
+            if (node.component instanceof DropButton) {
+                componentIndex.remove(((DropButton) node.component).menu.getId());
+            }
+        }
+        for (TreeNode child : node.children) {
+            unindex(child);
+        }
     }
 
     /**
@@ -162,7 +381,9 @@ public class TreeView extends Component {
      * @param components add the found Components to this list
      */
     private void addNodeComponents(TreeNode node, List<Component> components) {
-        components.add(node.component);
+        if (node.component != null) {
+            components.add(node.component);
+        }
         for (TreeNode child : node.getChildren()) {
             addNodeComponents(child, components);
         }
@@ -180,6 +401,95 @@ public class TreeView extends Component {
         return getNode(selectedNode);
     }
 
+    /**
+     * Makes many changes to the tree and sends them to the browser together.
+     * Changes made through the Transaction are applied to the nodes right away,
+     * but the browser only gets the end result: a node that is added and then
+     * removed is never sent, a node that is renamed several times is renamed
+     * once, and a node added with all of its descendants is created in one
+     * go. If the end result needs many operations, the tree is refreshed as a
+     * whole instead.
+     *
+     * @param mutation makes the changes through the given Transaction
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    public void mutate(Mutation mutation) {
+        Transaction tx = new Transaction();
+        mutation.apply(tx);
+        if (!isRendered()) {
+            return;
+        }
+
+        //nodes that moved under a node the browser will create (or hasn't loaded) are removed and come back with it
+        List<String> deletes = new ArrayList<>(tx.removed);
+        for (TreeNode node : tx.moved) {
+            if (nodeIndex.containsKey(node.getId()) && tx.isCovered(node)) {
+                deletes.add(node.getId());
+            }
+        }
+        List<String> operations = new ArrayList<>();
+        StringBuilder sortables = new StringBuilder();
+        for (TreeNode parent : tx.parents) {
+            if (!nodeIndex.containsKey(parent.getId()) || tx.added.contains(parent) || tx.isCovered(parent) || parent.isUnloaded()) {
+                continue; //the browser gets these children some other way
+            }
+            String par = parent == rootNode ? "null" : "'" + parent.getId() + "'";
+            for (int i = 0; i < parent.children.size(); i++) {
+                TreeNode child = parent.children.get(i);
+                //each changed child goes right after its previous sibling, which is already in place by then
+                String position = i == 0 ? par + ", " : "'" + parent.children.get(i - 1).getId() + "', ";
+                String where = i == 0 ? "'first'" : "'after'";
+                if (tx.added.contains(child)) {
+                    operations.add("tfTree.create_node(" + position + child.toHtml() + ", " + where + ");");
+                    populateSortables(sortables, child);
+                } else if (tx.moved.contains(child)) {
+                    operations.add("tfTree.move_node('" + child.getId() + "', " + position + where + ");");
+                }
+            }
+        }
+        for (TreeNode node : tx.renamed) {
+            if (nodeIndex.containsKey(node.getId()) && !tx.added.contains(node) && !tx.isCovered(node)) {
+                node.prevUpdate = node.getTextHtml();
+                operations.add("tfTree.rename_node('" + node.getId() + "', \"" + node.prevUpdate.replace("\"", "\\\"").replace("\n", "\\n") + "\");");
+            }
+        }
+        if (deletes.isEmpty() && operations.isEmpty()) {
+            return;
+        }
+
+        StringBuilder script = new StringBuilder("var tfTree = $jq('#tree" + getId() + "').jstree(true);\n");
+        if (deletes.size() + operations.size() > MAX_BATCHED_OPERATIONS) {
+            sortables.setLength(0);
+            populateSortablesScript(sortables, rootNode);
+            script.append(sortables)
+                    .append(getId() + "RootData = [" + rootNode.getChildrenStr() + "];\n")
+                    .append("tfTree.refresh();");
+        } else {
+            if (!deletes.isEmpty()) {
+                script.append("tfTree.delete_node(" + deletes.toString().replace("[", "['").replace("]", "']").replace(", ", "', '") + ");\n");
+            }
+            script.append(sortables);
+            for (String operation : operations) {
+                script.append(operation).append("\n");
+            }
+        }
+        exec(script.toString());
+    }
+
+    /**
+     * Adds the node and its sortable descendants to the list of nodes that can
+     * be dragged
+     *
+     * @param sb the script we're adding to
+     * @param node the node that is being created in the browser
+     */
+    private void populateSortables(StringBuilder sb, TreeNode node) {
+        if (node.sortable) {
+            sb.append("tfSortableTreeNodes.push('").append(node.getId()).append("');\n");
+        }
+        populateSortablesScript(sb, node);
+    }
+
     /**
      * Selects the node in the treeview
      *
@@ -194,12 +504,157 @@ public class TreeView extends Component {
     }
 
     /**
-     * Filters on the nodes that match the given value
+     * Finds the nodes that have a word starting with each word of the given
+     * value (ignoring case), then expands just the branches leading to them
+     * and highlights them. The search is done on the server, so it includes
+     * nodes whose branches the browser hasn't loaded, and the
+     * TreeChildrenProvider is asked for matches that haven't been loaded at
+     * all.
+     *
+     * @param match the words to look for; empty to clear the highlighting
+     * @return the ID of each matching node, mapped to the IDs of its ancestors
+     * from the top of the tree down
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    public Map<String, List<String>> search(String match) {
+        Map<String, List<String>> results = new LinkedHashMap<>();
+        Map<String, List<String>> paths = new LinkedHashMap<>(); //the branches to expand, by the ID of the node at the end
+        Set<TreeNode> matches = new LinkedHashSet<>(searchIndex.search(match, maxSearchResults));
+        Set<TreeNode> reloaded = new LinkedHashSet<>(); //nodes whose children the browser must ask for again
+        StringBuilder script = new StringBuilder();
+        if (childrenProvider != null && !TreeSearchIndex.tokenize(match).isEmpty()) {
+            for (List<String> texts : childrenProvider.search(match, maxSearchResults)) {
+                if (matches.size() >= maxSearchResults) {
+                    break;
+                }
+                TreeNode node = loadPath(texts, reloaded, script);
+                if (node != null) {
+                    matches.add(node);
+                }
+            }
+        }
+        for (TreeNode node : matches) {
+            List<String> path = new ArrayList<>();
+            for (TreeNode ancestor = node.parent; ancestor != null && ancestor != rootNode; ancestor = ancestor.parent) {
+                path.add(0, ancestor.getId());
+            }
+            results.put(node.getId(), path);
+            if (!path.isEmpty()) {
+                paths.put(path.get(path.size() - 1), path);
+            }
+        }
+        if (isRendered()) {
+            for (TreeNode node : reloaded) {
+                script.append("var tfNode = $jq('#tree" + getId() + "').jstree(true).get_node('" + node.getId() + "');\n"
+                        + "if (tfNode) {\n"
+                        + "  tfNode.state.loaded = false;\n"
+                        + "  $jq('#tree" + getId() + "').jstree(true).delete_node(tfNode.children.slice());\n"
+                        + "}\n");
+            }
+            script.append(getId() + "OpenPaths([");
+            int i = 0;
+            for (List<String> path : paths.values()) {
+                script.append(i++ == 0 ? "" : ",").append(toScriptArray(path));
+            }
+            script.append("], " + toScriptArray(results.keySet()) + ");");
+            exec(script.toString());
+        }
+        return results;
+    }
+
+    /**
+     * Loads the branch leading to a match that the TreeChildrenProvider found
      *
-     * @param match must match this String
+     * @param texts the text of each node from the top level down to the match
+     * @param reloaded nodes that got new children are added to this, so the
+     * browser can ask for them again
+     * @param script the top level's new children are sent to the browser
+     * through this
+     * @return the matching node, or null if the branch doesn't lead to one
      */
-    public void search(String match) {
-        exec("$jq('#tree" + getId() + "').jstree(true).search(\"" + match.replace("\"", "").replace("\n", "") + "\");");
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    private TreeNode loadPath(List<String> texts, Set<TreeNode> reloaded, StringBuilder script) {
+        TreeNode node = rootNode;
+        for (String text : texts) {
+            if (node.isUnloaded()) {
+                loadChildren(node);
+                if (node != rootNode) { //the browser hasn't been sent the top level yet, so it gets the new children with it
+                    reloaded.add(node);
+                }
+            }
+            TreeNode next = findChild(node, text, 0);
+            while (next == null && node.more) {
+                int from = node.children.size();
+                List<TreeNode> page = loadPage(node);
+                if (node == rootNode) { //the top level is always in the browser, so its new children are added there
+                    script.append("$jq('#tree" + getId() + "').jstree(true).delete_node('more" + node.getId() + "');\n");
+                    for (TreeNode child : page) {
+                        script.append("$jq('#tree" + getId() + "').jstree(true).create_node(null, " + child.toHtml() + ", 'last');\n");
+                    }
+                    if (node.more) {
+                        script.append("$jq('#tree" + getId() + "').jstree(true).create_node(null, " + node.getMoreStr() + ", 'last');\n");
+                    }
+                } else {
+                    reloaded.add(node);
+                }
+                next = findChild(node, text, from);
+            }
+            if (next == null) {
+                return null;
+            }
+            node = next;
+        }
+        return node == rootNode ? null : node;
+    }
+
+    /**
+     * @param parent the node whose children are searched
+     * @param text the text to look for
+     * @param from the index of the first child to look at
+     * @return the first child with the given text, or null
+     */
+    private static TreeNode findChild(TreeNode parent, String text, int from) {
+        for (int i = from; i < parent.children.size(); i++) {
+            TreeNode child = parent.children.get(i);
+            if (text.equals(WTools.desanitize(child.getText()))) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the maximum number of nodes that a search will find
+     *
+     * @param maxSearchResults the maximum number of matching nodes
+     * @return this
+     */
+    public TreeView setMaxSearchResults(int maxSearchResults) {
+        this.maxSearchResults = maxSearchResults;
+        return this;
+    }
+
+    /**
+     * @param ids node IDs
+     * @return the IDs as a JavaScript array of strings
+     */
+    private static String toScriptArray(Collection<String> ids) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String id : ids) {
+            sb.append(sb.length() == 1 ? "'" : ",'").append(id).append("'");
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Updates the search index after the node's text changed
+     *
+     * @param node the node whose text changed
+     */
+    private void reindex(TreeNode node) {
+        if (nodeIndex.containsKey(node.getId()) && node != rootNode) {
+            searchIndex.add(node, WTools.desanitize(node.getText()));
+        }
     }
 
     /**
@@ -219,22 +674,81 @@ public class TreeView extends Component {
         }
     }
 
+    /**
+     * @return "jstree", which this component needs
+     */
+    @Override
+    public String[] getModules() {
+        return new String[]{"jstree"};
+    }
+
     /**
      * @return the HTML used to represent this Component
      */
     @Override
     public String toHtml() {
+        loadChildren(rootNode);
         StringBuilder sortablesScript = new StringBuilder();
         populateSortablesScript(sortablesScript, rootNode);
 
-        return "<div id='" + getId() + "'>\n"
+        return requireModules("<div id='" + getId() + "'>\n"
                 + "<div id='tree" + getId() + "' class='tftree  ui-inputfield ui-corner-all' " + getProperties() + "style='" + getStyle() + "'></div>\n"
                 + "<script>\n"
                 + sortablesScript.toString()
+                + "  var " + getId() + "RootData = [\n"
+                + rootNode.getChildrenStr()
+                + "  ];\n"
+                //jstree asks for the children of unloaded nodes ('children': true) through this callback when they're expanded
+                + "  var " + getId() + "Pending = {};\n"
+                //opens each branch one level at a time, so jstree can request any children it hasn't loaded, then highlights the matches
+                + "  function " + getId() + "OpenPaths(paths, matches) {\n"
+                + "    var tree = $jq('#tree" + getId() + "').jstree(true);\n"
+                + "    $jq('#tree" + getId() + " .jstree-search').removeClass('jstree-search');\n"
+                + "    var remaining = paths.length;\n"
+                + "    var highlight = function () {\n"
+                + "      for (var i = 0; i < matches.length; i++) {\n"
+                + "        var element = tree.get_node(matches[i], true);\n"
+                + "        if (element && element.length) {\n"
+                + "          element.children('.jstree-anchor').addClass('jstree-search');\n"
+                + "        }\n"
+                + "      }\n"
+                + "    };\n"
+                + "    if (remaining === 0) {\n"
+                + "      highlight();\n"
+                + "    }\n"
+                + "    paths.forEach(function (path) {\n"
+                + "      var openNext = function (i) {\n"
+                + "        if (i >= path.length) {\n"
+                + "          if (--remaining === 0) {\n"
+                + "            highlight();\n"
+                + "          }\n"
+                + "          return;\n"
+                + "        }\n"
+                + "        tree.open_node(path[i], function () {\n"
+                + "          openNext(i + 1);\n"
+                + "        }, false);\n"
+                + "      };\n"
+                + "      openNext(0);\n"
+                + "    });\n"
+                + "  }\n"
+                + "  function " + getId() + "Loaded(id, children) {\n"
+                + "    var callback = " + getId() + "Pending[id];\n"
+                + "    delete " + getId() + "Pending[id];\n"
+                + "    if (callback) {\n"
+                + "      callback(children);\n"
+                + "    }\n"
+                + "  }\n"
                 + "  $jq('#tree" + getId() + "').on('deselect_node.jstree', function (e, data) {\n"
                 + "    changed" + layoutId + "({id: '" + getId() + "', value: '#deselected ' + data.node.id});"
                 + "  }).on('select_node.jstree', function (e, data) {\n"
+                + "    if (data.node.id.startsWith('more')) {\n" //the user asked for the next page of children
+                + "      data.instance.deselect_node(data.node, true);\n"
+                + "      changed" + layoutId + "({id: '" + getId() + "', value: '#more ' + data.node.id.substring(4)});"
+                + "      return;\n"
+                + "    }\n"
                 + "    changed" + layoutId + "({id: '" + getId() + "', value: '#selected ' + data.node.id});"
+                + "  }).on('close_node.jstree', function (e, data) {\n"
+                + (unloadCollapsed ? "    changed" + layoutId + "({id: '" + getId() + "', value: '#collapsed ' + data.node.id});" : "")
                 + "  }).on('move_node.jstree', function (e, data) {\n"
                 + "    changed" + layoutId + "({id: '" + getId() + "', value: '#dragged ' + data.node.id + ' ' + data.position});"
                 + "  })\n"
@@ -249,9 +763,14 @@ public class TreeView extends Component {
                 + "                }\n"
                 + "                return true;\n" //allow all other operations
                 + "            },\n"
-                + "            'data' : [\n"
-                + rootNode.getChildrenStr()
-                + "            ]\n"
+                + "            'data' : function (node, callback) {\n"
+                + "                if (node.id === '#') {\n"
+                + "                    callback(" + getId() + "RootData);\n"
+                + "                } else {\n"
+                + "                    " + getId() + "Pending[node.id] = callback;\n"
+                + "                    changed" + layoutId + "({id: '" + getId() + "', value: '#load ' + node.id});"
+                + "                }\n"
+                + "            }\n"
                 + "        }\n"
                 + "    });\n"
                 + "\n" //handle resizing
@@ -265,7 +784,7 @@ public class TreeView extends Component {
                 + "    });\n"
                 + "    resizeObserver" + getId() + ".observe(divElement" + getId() + ");\n"
                 + "</script>\n"
-                + "</div>";
+                + "</div>");
     }
 
     /**
@@ -282,6 +801,173 @@ public class TreeView extends Component {
     @Override
     public void dispose() {
         rootNode.dispose();
+        nodeIndex.clear();
+        componentIndex.clear();
+        searchIndex.clear();
+    }
+
+    /**
+     * Makes changes to a TreeView through a Transaction; see TreeView.mutate
+     */
+    public static interface Mutation {
+
+        /**
+         * Makes the changes
+         *
+         * @param tx records the changes so they can be sent to the browser
+         * together
+         */
+        public void apply(Transaction tx);
+    }
+
+    /**
+     * Transaction changes the nodes of a TreeView right away and keeps track of
+     * what the browser will need once TreeView.mutate is finished
+     */
+    public class Transaction {
+
+        /**
+         * nodes that were added during this transaction
+         */
+        private final Set<TreeNode> added = new HashSet<>();
+        /**
+         * nodes that the browser already has that were moved
+         */
+        private final Set<TreeNode> moved = new LinkedHashSet<>();
+        /**
+         * nodes whose text changed
+         */
+        private final Set<TreeNode> renamed = new LinkedHashSet<>();
+        /**
+         * nodes that gained children, in the order they were changed
+         */
+        private final Set<TreeNode> parents = new LinkedHashSet<>();
+        /**
+         * IDs of nodes that the browser already has that were removed
+         */
+        private final List<String> removed = new ArrayList<>();
+
+        /**
+         * Constructor
+         */
+        private Transaction() {
+        }
+
+        /**
+         * Adds the child to the end of the parent's children
+         *
+         * @param parent the node to add to
+         * @param child the node to add
+         * @param sortable flag indicating if this child can be sorted by the
+         * user
+         * @return this
+         */
+        public Transaction add(TreeNode parent, TreeNode child, boolean sortable) {
+            return add(parent, parent.children.size(), child, sortable);
+        }
+
+        /**
+         * Adds the child to the parent at the given index
+         *
+         * @param parent the node to add to
+         * @param index where to add the child
+         * @param child the node to add
+         * @param sortable flag indicating if this child can be sorted by the
+         * user
+         * @return this
+         */
+        public Transaction add(TreeNode parent, int index, TreeNode child, boolean sortable) {
+            child.sortable = sortable;
+            parent.attach(index, child);
+            added.add(child);
+            parents.add(parent);
+            return this;
+        }
+
+        /**
+         * Removes the node from its parent and disposes of it
+         *
+         * @param node the node to remove
+         * @return this
+         */
+        public Transaction remove(TreeNode node) {
+            if (node.parent == null) {
+                return this;
+            }
+            if (!added.remove(node)) {
+                removed.add(node.getId());
+            }
+            moved.remove(node);
+            renamed.remove(node);
+            node.parent.children.remove(node);
+            unindex(node);
+            node.dispose();
+            return this;
+        }
+
+        /**
+         * Removes all of the children of the node
+         *
+         * @param parent the node whose children should be removed
+         * @return this
+         */
+        public Transaction clear(TreeNode parent) {
+            for (int i = parent.children.size() - 1; i >= 0; i--) {
+                remove(parent.children.get(i));
+            }
+            return this;
+        }
+
+        /**
+         * Moves the node to a new position, possibly under a new parent
+         *
+         * @param node the node to move
+         * @param newParent the parent the node should end up under
+         * @param index the position among the new parent's children
+         * @return this
+         */
+        public Transaction move(TreeNode node, TreeNode newParent, int index) {
+            node.parent.children.remove(node);
+            newParent.children.add(index, node);
+            node.parent = newParent;
+            if (!added.contains(node)) {
+                moved.add(node);
+            }
+            parents.add(newParent);
+            return this;
+        }
+
+        /**
+         * Changes the text of the node
+         *
+         * @param node the node to rename
+         * @param text the new text of the node
+         * @return this
+         */
+        public Transaction rename(TreeNode node, String text) {
+            if (node.component == null) {
+                node.text = text;
+            } else {
+                node.component.setText(text, true, false);
+            }
+            reindex(node);
+            renamed.add(node);
+            return this;
+        }
+
+        /**
+         * @param node a node in the tree
+         * @return true if the browser will get the node along with an
+         * ancestor, because the ancestor was added or hasn't been loaded
+         */
+        private boolean isCovered(TreeNode node) {
+            for (TreeNode ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+                if (added.contains(ancestor) || ancestor.isUnloaded()) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     /**
@@ -305,9 +991,18 @@ public class TreeView extends Component {
         private final List<TreeNode> children = new ArrayList<>();
         /**
          * the Component that is used to represent this TreeNode; if a String
-         * was passed in, then this will be a simple Label
+         * was passed in, then this will be a simple Label, and if this is a
+         * text-only node, this will be null
          */
         public final TextComponent component;
+        /**
+         * the text of a text-only node, which has no component
+         */
+        private String text;
+        /**
+         * the ID of this node, which is used for every lookup and script
+         */
+        private final String id = "node" + hashCode();
         /**
          * this is used to ensure that an identical 'update' doesn't cause
          * unnecessary work
@@ -317,6 +1012,24 @@ public class TreeView extends Component {
          * if true, this node can be dragged/sorted
          */
         public boolean sortable = false;
+        /**
+         * if true, this node's children come from the TreeView's
+         * TreeChildrenProvider when it is expanded
+         */
+        private boolean lazy = false;
+        /**
+         * flag indicating if the children have been requested from the
+         * TreeChildrenProvider
+         */
+        private boolean loaded = false;
+        /**
+         * the number of children that came from the TreeChildrenProvider
+         */
+        private int provided = 0;
+        /**
+         * flag indicating if the TreeChildrenProvider may have more children
+         */
+        private boolean more = false;
 
         /**
          * Constructor
@@ -328,6 +1041,19 @@ public class TreeView extends Component {
             this.component = new Label(name);
         }
 
+        /**
+         * Constructor
+         *
+         * @param name the text of the TreeNode
+         * @param textOnly if true, the node just holds its text rather than a
+         * Label, which uses much less memory in large trees; such a node has a
+         * null component and can't be clicked or styled on its own
+         */
+        public TreeNode(String name, boolean textOnly) {
+            this.component = textOnly ? null : new Label(name);
+            this.text = textOnly ? name : null;
+        }
+
         /**
          * Constructor
          *
@@ -349,12 +1075,68 @@ public class TreeView extends Component {
          * @param session the user's session
          */
         private void init(String masterId, WSession session) {
-            component.init(masterId, session);
+            if (component != null) {
+                component.init(masterId, session);
+            }
             for (TreeNode child : children) {
                 child.init(masterId, session);
             }
         }
 
+        /**
+         * Declares that this node has children that will come from the
+         * TreeView's TreeChildrenProvider when it is expanded, so they don't
+         * have to be created until they're needed
+         *
+         * @param hasChildren true if the children should be requested from the
+         * provider
+         * @return this
+         */
+        public TreeNode setHasChildren(boolean hasChildren) {
+            this.lazy = hasChildren;
+            return this;
+        }
+
+        /**
+         * @return true if this node's children are yet to be requested from
+         * the TreeChildrenProvider
+         */
+        private boolean isUnloaded() {
+            return lazy && !loaded;
+        }
+
+        /**
+         * Adds the child without telling the browser
+         *
+         * @param index where to add the child
+         * @param child the node to add
+         */
+        private void attach(int index, TreeNode child) {
+            TreeView tree = getTreeView();
+            if (tree != null) {
+                child.init(tree.layoutId, tree.session);
+            }
+            children.add(index, child);
+            child.parent = this;
+            if (tree != null) {
+                tree.index(child);
+            }
+        }
+
+        /**
+         * @return the TreeView this node is in, or null if it isn't in one
+         */
+        private TreeView getTreeView() {
+            TreeNode node = this;
+            while (node != null) {
+                if (node.treeview != null) {
+                    return node.treeview;
+                }
+                node = node.parent;
+            }
+            return null;
+        }
+
         /**
          * Add the child node
          *
@@ -375,10 +1157,11 @@ public class TreeView extends Component {
          * user
          */
         public void addChild(int index, TreeNode child, boolean sortable) {
-            child.init(component.layoutId, component.session);
             child.sortable = sortable;
-            children.add(index, child);
-            child.parent = this;
+            attach(index, child);
+            if (isUnloaded()) {
+                return; //the browser will get this along with the provider's children when this node is expanded
+            }
             TreeNode node = this;
             while (node != null) {
                 if (node.treeview != null) {
@@ -417,7 +1200,10 @@ public class TreeView extends Component {
          * @param value the node value
          */
         public void setText(String value) {
-            if (component instanceof TextComponent && !value.equals(((TextComponent) component).getText())) {
+            if (component == null && !value.equals(text)) {
+                text = value;
+                update();
+            } else if (component instanceof TextComponent && !value.equals(((TextComponent) component).getText())) {
                 ((TextComponent) component).setText(value);
                 update();
             }
@@ -430,7 +1216,9 @@ public class TreeView extends Component {
          * @return the display text of the node
          */
         public String getText() {
-            if (component instanceof TextComponent) {
+            if (component == null) {
+                return text;
+            } else if (component instanceof TextComponent) {
                 return ((TextComponent) component).getText();
             } else {
                 return component.toString();
@@ -442,21 +1230,19 @@ public class TreeView extends Component {
          * the changes are reflected in the tree
          */
         public void update() {
-            String update = component.toHtml();
+            TreeView tree = getTreeView();
+            if (tree != null) {
+                tree.reindex(this);
+            }
+            if (tree == null || !tree.isRendered()) {
+                return; //nothing to draw; the browser gets the current text when the tree is rendered
+            }
+            String update = getTextHtml();
             if (prevUpdate.equals(update)) {
                 return;
             }
             prevUpdate = update;
-            TreeNode node = this;
-            while (node != null) {
-                if (node.treeview != null) {
-                    if (node.treeview.isRendered()) { //we actually have to draw this!  it's already rendered
-                        node.treeview.exec("$jq('#tree" + node.treeview.getId() + "').jstree(true).rename_node('" + this.getId() + "', \"" + update.replace("\"", "\\\"").replace("\n", "\\n") + "\");");
-                    }
-                    return;
-                }
-                node = node.parent;
-            }
+            tree.exec("$jq('#tree" + tree.getId() + "').jstree(true).rename_node('" + this.getId() + "', \"" + update.replace("\"", "\\\"").replace("\n", "\\n") + "\");");
         }
 
         /**
@@ -475,6 +1261,10 @@ public class TreeView extends Component {
          */
         public void removeChild(TreeNode child) {
             children.remove(child);
+            TreeView tree = getTreeView();
+            if (tree != null) {
+                tree.unindex(child);
+            }
             child.dispose();
             TreeNode node = this;
             while (node != null) {
@@ -507,11 +1297,18 @@ public class TreeView extends Component {
         public void setChildren(List<TreeNode> children) {
             WSession session = null;
             StringBuilder sb = new StringBuilder();
+            boolean unloaded = isUnloaded();
+            lazy = false; //these children replace anything the provider would have given
+            more = false;
 
             //do the logic to remove existing children
+            TreeView tree = getTreeView();
             for (int i = this.children.size() - 1; i >= 0; i--) {//TreeNode child : this.children) {
                 TreeNode child = this.children.get(i);
                 this.children.remove(child);
+                if (tree != null) {
+                    tree.unindex(child);
+                }
                 child.dispose();
                 TreeNode node = this;
                 while (node != null) {
@@ -529,10 +1326,8 @@ public class TreeView extends Component {
 
             //do the logic to add the list of children
             for (TreeNode child : children) {
-                child.init(component.layoutId, component.session);
-                this.children.add(child);
-                child.parent = this;
-                TreeNode node = this;
+                attach(this.children.size(), child);
+                TreeNode node = unloaded ? null : this; //if the browser hasn't loaded this node's children, it will request them when expanded
                 while (node != null) {
                     if (node.treeview != null) {
                         if (node.treeview.isRendered()) { //we actually have to draw this!  it's already rendered
@@ -562,7 +1357,7 @@ public class TreeView extends Component {
          * @return flag indicating if this node has children
          */
         public boolean hasChildren() {
-            return !children.isEmpty();
+            return !children.isEmpty() || isUnloaded();
         }
 
         /**
@@ -586,28 +1381,46 @@ public class TreeView extends Component {
          * @return a unique ID for this component
          */
         public String getId() {
-            return "node" + hashCode();
+            return id;
         }
 
         /**
          * @return the HTML used to represent this Component
          */
         private String toHtml() {
-            return "{" + "'id': '" + getId() + "', 'text': \"" + component.toHtml().replace("\"", "\\\"").replace("\n", "\\n") + "\""
-                    + (children.isEmpty() ? "" : ", 'children' : [") + getChildrenStr() + (children.isEmpty() ? "" : "]") + "}";
+            String childrenStr = isUnloaded() ? ", 'children' : true" : children.isEmpty() ? "" : ", 'children' : [" + getChildrenStr() + "]";
+            return "{" + "'id': '" + getId() + "', 'text': \"" + getTextHtml().replace("\"", "\\\"").replace("\n", "\\n") + "\"" + childrenStr + "}";
         }
 
         /**
-         * @return a String representation for a all child nodes
+         * @return the HTML shown for this node in the tree
+         */
+        private String getTextHtml() {
+            return component == null ? WTools.sanitize(text) : component.toHtml();
+        }
+
+        /**
+         * @return a String representation for a all child nodes, followed by
+         * an entry for loading more if the provider may have more
          */
         private String getChildrenStr() {
             StringBuilder childrenStr = new StringBuilder();
             for (int i = 0; i < children.size(); i++) {
                 childrenStr.append(children.get(i).toHtml()).append(i == children.size() - 1 ? "" : ", ");
             }
+            if (more) {
+                childrenStr.append(children.isEmpty() ? "" : ", ").append(getMoreStr());
+            }
             return childrenStr.toString();
         }
 
+        /**
+         * @return the entry the user selects to load the next page of children
+         */
+        private String getMoreStr() {
+            return "{'id': 'more" + getId() + "', 'text': 'More...', 'li_attr': {'class': 'tfmore'}}";
+        }
+
         /**
          * removes references to everything
          */
@@ -618,7 +1431,9 @@ public class TreeView extends Component {
             treeview = null;
             parent = null;
             children.clear();
-            component.dispose();
+            if (component != null) {
+                component.dispose();
+            }
         }
 
     }
@@ -0,0 +1,164 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components.chart;
+
+/**
+ * XYBuffer holds the points of a data set in primitive arrays. When it has a
+ * maximum size, it is a ring buffer: appending to a full buffer overwrites the
+ * oldest point rather than moving the others.
+ */
+class XYBuffer {
+
+    /**
+     * the x and y values; the oldest point is at start
+     */
+    private double[] xs, ys;
+    /**
+     * the index of the oldest point and the number of points
+     */
+    private int start = 0, size = 0;
+    /**
+     * the maximum number of points, or 0 for no maximum
+     */
+    private int maxSize = 0;
+
+    /**
+     * Constructor
+     *
+     * @param capacity the number of points to make room for
+     */
+    XYBuffer(int capacity) {
+        xs = new double[Math.max(16, capacity)];
+        ys = new double[xs.length];
+    }
+
+    /**
+     * Adds a point, dropping the oldest point if the buffer is full
+     *
+     * @param x the x value
+     * @param y the y value
+     */
+    void append(double x, double y) {
+        if (maxSize > 0 && size == maxSize) {
+            int index = (start + size) % xs.length;
+            xs[index] = x;
+            ys[index] = y;
+            start = (start + 1) % xs.length;
+            return;
+        }
+        if (size == xs.length) {
+            resize(maxSize > 0 ? Math.min(maxSize, size * 2) : size * 2);
+        }
+        int index = (start + size) % xs.length;
+        xs[index] = x;
+        ys[index] = y;
+        size++;
+    }
+
+    /**
+     * Sets the maximum number of points, dropping the oldest points if there
+     * are too many
+     *
+     * @param maxSize the maximum number of points, or 0 for no maximum
+     */
+    void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        if (this.maxSize > 0 && size > this.maxSize) {
+            start = (start + size - this.maxSize) % xs.length;
+            size = this.maxSize;
+            resize(this.maxSize);
+        }
+    }
+
+    /**
+     * Copies the points, oldest first, into arrays of the given length
+     *
+     * @param length the new length of the arrays; at least size
+     */
+    private void resize(int length) {
+        double[] newXs = new double[length];
+        double[] newYs = new double[length];
+        for (int i = 0; i < size; i++) {
+            newXs[i] = x(i);
+            newYs[i] = y(i);
+        }
+        xs = newXs;
+        ys = newYs;
+        start = 0;
+    }
+
+    /**
+     * @return the number of points
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i the index of the point, where 0 is the oldest
+     * @return the x value of the point
+     */
+    double x(int i) {
+        return xs[(start + i) % xs.length];
+    }
+
+    /**
+     * @param i the index of the point, where 0 is the oldest
+     * @return the y value of the point
+     */
+    double y(int i) {
+        return ys[(start + i) % ys.length];
+    }
+
+    /**
+     * @return copies of the x and y values, oldest first
+     */
+    double[][] toArrays() {
+        double[] newXs = new double[size];
+        double[] newYs = new double[size];
+        for (int i = 0; i < size; i++) {
+            newXs[i] = x(i);
+            newYs[i] = y(i);
+        }
+        return new double[][]{newXs, newYs};
+    }
+
+    /**
+     * Removes all of the points
+     */
+    void clear() {
+        start = 0;
+        size = 0;
+    }
+
+}
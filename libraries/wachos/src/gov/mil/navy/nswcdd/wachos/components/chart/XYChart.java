@@ -33,11 +33,14 @@
 package gov.mil.navy.nswcdd.wachos.components.chart;
 
 import gov.mil.navy.nswcdd.wachos.components.Component;
+import gov.mil.navy.nswcdd.wachos.tools.FlushScheduler;
 import gov.mil.navy.nswcdd.wachos.tools.WTools;
 import gov.mil.navy.nswcdd.wachos.tools.Color;
+import gov.mil.navy.nswcdd.wachos.tools.TypedArrays;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * XYChart is a simple line graph that shows X,Y pairings of data
@@ -48,6 +51,48 @@ public class XYChart extends Component<XYChart> {
      * the sets of XY data to be shown on this graph
      */
     private final List<XYDataSet> dataSets = new ArrayList<>();
+    /**
+     * the maximum number of points kept for each data set, or 0 for no maximum
+     */
+    private int maxPoints = 0;
+    /**
+     * sends the appended points to the client; collects points for about one
+     * animation frame by default
+     */
+    private final FlushScheduler flusher = new FlushScheduler(16, this::flushPoints);
+    /**
+     * how data sets with more points than targetPoints are reduced before
+     * being sent to the client
+     */
+    private Downsampling downsampling = Downsampling.LTTB;
+    /**
+     * the number of points sent for each data set when the chart's width isn't
+     * known yet
+     */
+    private int targetPoints = 1000;
+    /**
+     * if true, the user can zoom with the mouse wheel and pan by dragging
+     */
+    private boolean zoomable = false;
+
+    /**
+     * How large data sets are reduced to about one point per pixel
+     */
+    public enum Downsampling {
+        /**
+         * every point is sent
+         */
+        NONE,
+        /**
+         * largest-triangle-three-buckets, which best preserves the shape of
+         * the line
+         */
+        LTTB,
+        /**
+         * the lowest and highest point of each bucket, which keeps every peak
+         */
+        MIN_MAX
+    }
 
     /**
      * Constructor
@@ -76,6 +121,268 @@ public class XYChart extends Component<XYChart> {
         return "chrt" + hashCode();
     }
 
+    /**
+     * Sets how data sets are reduced before they are sent to the client. Data
+     * sets with more than targetPoints points whose x values never decrease
+     * are reduced to about targetPoints points, or the chart's width in pixels
+     * once it is known; zooming in asks the server for the visible x-range at
+     * full detail.
+     *
+     * @param downsampling how to choose the points that are sent
+     * @param targetPoints the number of points to send for each data set
+     * @return this
+     */
+    public XYChart setDownsampling(Downsampling downsampling, int targetPoints) {
+        this.downsampling = downsampling;
+        this.targetPoints = Math.max(3, targetPoints);
+        if (isRendered()) {
+            redraw();
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the user can zoom into the x-axis with the mouse wheel, pan
+     * by dragging, and double click to see everything again
+     *
+     * @param zoomable true to allow zooming and panning
+     * @return this
+     */
+    public XYChart setZoomable(boolean zoomable) {
+        this.zoomable = zoomable;
+        if (isRendered()) {
+            redraw();
+        }
+        return this;
+    }
+
+    /**
+     * Shows the given x-range, downsampling each data set for that range
+     *
+     * @param xMin the lowest x value to show
+     * @param xMax the highest x value to show
+     */
+    public void setXRange(double xMin, double xMax) {
+        sendRange(xMin, xMax, targetPoints, true);
+    }
+
+    /**
+     * Shows every point again after zooming
+     */
+    public void resetZoom() {
+        sendRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, targetPoints, true);
+    }
+
+    /**
+     * Handles zooming and panning from the client
+     *
+     * @param event "#range [xMin] [xMax] [width in pixels]" or "#range reset
+     * [width in pixels]"
+     */
+    @Override
+    public void fireEvent(String event) {
+        if (!isEnabled() || !event.startsWith("#range ")) {
+            return;
+        }
+        String[] strs = event.split("\\s+");
+        if (strs[1].equals("reset")) {
+            sendRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, (int) Double.parseDouble(strs[2]), false);
+        } else {
+            sendRange(Double.parseDouble(strs[1]), Double.parseDouble(strs[2]), (int) Double.parseDouble(strs[3]), false);
+        }
+    }
+
+    /**
+     * Sends each data set, downsampled for the x-range, to the client
+     *
+     * @param xMin the lowest x value to show
+     * @param xMax the highest x value to show
+     * @param width the number of points wanted for each data set
+     * @param setScale true if the chart's x-axis should be set to the range
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    private void sendRange(double xMin, double xMax, int width, boolean setScale) {
+        if (!isRendered()) {
+            return;
+        }
+        List<double[][]> points = getPoints(xMin, xMax, width > 0 ? width : targetPoints);
+        StringBuilder script = new StringBuilder();
+        for (int d = 0; d < points.size(); d++) {
+            script.append(getId() + "SetData(" + d + ", ");
+            appendArrays(points.get(d), script);
+            script.append(");\n");
+        }
+        if (setScale) {
+            boolean full = Double.isInfinite(xMin) && Double.isInfinite(xMax);
+            script.append(full ? "delete " + getId() + "Chart.options.scales.x.min;\ndelete " + getId() + "Chart.options.scales.x.max;\n"
+                    : getId() + "Chart.options.scales.x.min = " + xMin + ";\n" + getId() + "Chart.options.scales.x.max = " + xMax + ";\n");
+        }
+        script.append(getId() + "Chart.update('none');");
+        exec(script.toString());
+    }
+
+    /**
+     * Gets the points of every data set in the x-range, downsampled to about
+     * the target number of points. Large data sets are downsampled in
+     * parallel.
+     *
+     * @param xMin the lowest x value to show
+     * @param xMax the highest x value to show
+     * @param target the number of points wanted for each data set
+     * @return the x and y values of each data set
+     */
+    private List<double[][]> getPoints(double xMin, double xMax, int target) {
+        List<XYDataSet> sets = new ArrayList<>();
+        List<XYPyramid> pyramids = new ArrayList<>();
+        List<double[][]> raw = new ArrayList<>();
+        int[] versions;
+        synchronized (dataSets) {
+            versions = new int[dataSets.size()];
+            for (XYDataSet dataSet : dataSets) {
+                versions[sets.size()] = dataSet.version;
+                sets.add(dataSet);
+                pyramids.add(dataSet.pyramid);
+                raw.add(dataSet.pyramid == null ? dataSet.points.toArrays() : null); //only copy the points if the pyramid needs to be built again
+            }
+        }
+        double[][][] ret = new double[sets.size()][][];
+        IntStream.range(0, sets.size()).parallel().forEach(d -> {
+            XYPyramid pyramid = pyramids.get(d);
+            double[][] points = raw.get(d);
+            if (pyramid == null) {
+                if (downsampling == Downsampling.NONE || points[0].length <= target || !XYPyramid.isSorted(points[0])) {
+                    ret[d] = points;
+                    return;
+                }
+                pyramid = new XYPyramid(points[0], points[1], target);
+                XYDataSet dataSet = sets.get(d);
+                synchronized (dataSets) {
+                    if (dataSet.version == versions[d]) {
+                        dataSet.pyramid = pyramid; //only keep it if no points were appended while it was built
+                    }
+                }
+            }
+            ret[d] = pyramid.query(xMin, xMax, target, downsampling == Downsampling.MIN_MAX);
+        });
+        return Arrays.asList(ret);
+    }
+
+    /**
+     * Appends the x and y values as two JavaScript typed arrays
+     *
+     * @param points the x and y values
+     * @param script the JavaScript being built
+     */
+    private static void appendArrays(double[][] points, StringBuilder script) {
+        script.append(TypedArrays.toFloat64(points[0])).append(", ").append(TypedArrays.toFloat64(points[1]));
+    }
+
+    /**
+     * Adds points to the end of a data set. Only the new points are sent to
+     * the chart in the browser, collected together once per flush interval,
+     * so this can be called many times per second for streaming data.
+     *
+     * @param dataSet the data set to add to
+     * @param xs the x values of the new points
+     * @param ys the y values of the new points
+     * @throws IllegalArgumentException if there aren't as many y values as x
+     * values
+     */
+    public void appendPoints(XYDataSet dataSet, double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("There are " + xs.length + " x values but " + ys.length + " y values");
+        }
+        synchronized (dataSets) {
+            for (int i = 0; i < xs.length; i++) {
+                dataSet.points.append(xs[i], ys[i]);
+            }
+            dataSet.unsent += xs.length;
+            dataSet.changed(); //the pyramid is built again the next time it's needed
+        }
+        flusher.schedule();
+    }
+
+    /**
+     * Adds points to the end of a data set
+     *
+     * @param dataSetIndex the index of the data set to add to
+     * @param xs the x values of the new points
+     * @param ys the y values of the new points
+     * @throws IllegalArgumentException if there aren't as many y values as x
+     * values
+     */
+    public void appendPoints(int dataSetIndex, double[] xs, double[] ys) {
+        appendPoints(dataSets.get(dataSetIndex), xs, ys);
+    }
+
+    /**
+     * Sets the maximum number of points kept for each data set; once a data
+     * set is full, appending a point drops the oldest one
+     *
+     * @param maxPoints the maximum number of points, or 0 for no maximum
+     * @return this
+     */
+    public XYChart setMaxPoints(int maxPoints) {
+        synchronized (dataSets) {
+            this.maxPoints = Math.max(0, maxPoints);
+            for (XYDataSet dataSet : dataSets) {
+                dataSet.points.setMaxSize(this.maxPoints);
+                dataSet.changed();
+            }
+        }
+        if (isRendered()) {
+            exec(getId() + "Max = " + this.maxPoints + ";\n"
+                    + getId() + "Append(-1, [], []);");
+        }
+        return this;
+    }
+
+    /**
+     * Sets how often the points from appendPoints are sent to the client
+     *
+     * @param millis the number of milliseconds to collect points before
+     * sending them
+     */
+    public void setFlushInterval(long millis) {
+        flusher.setInterval(millis);
+    }
+
+    /**
+     * Sends the points that were appended since the last flush to the client
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    public void flushPoints() {
+        StringBuilder script = new StringBuilder();
+        synchronized (dataSets) {
+            for (int d = 0; d < dataSets.size(); d++) {
+                XYDataSet dataSet = dataSets.get(d);
+                int count = Math.min(dataSet.unsent, dataSet.points.size());
+                dataSet.unsent = 0;
+                if (count == 0 || !isRendered()) {
+                    continue;
+                }
+                double[] xs = new double[count];
+                double[] ys = new double[count];
+                for (int i = 0; i < count; i++) {
+                    xs[i] = dataSet.points.x(dataSet.points.size() - count + i);
+                    ys[i] = dataSet.points.y(dataSet.points.size() - count + i);
+                }
+                script.append(getId() + "Append(" + d + ", " + TypedArrays.toFloat64(xs) + ", " + TypedArrays.toFloat64(ys) + ");\n");
+            }
+        }
+        if (script.length() > 0) {
+            exec(script.toString());
+        }
+    }
+
+    /**
+     * @return "chart", which this component needs
+     */
+    @Override
+    public String[] getModules() {
+        return new String[]{"chart"};
+    }
+
     /**
      * Provides the HTML representation of this Component
      *
@@ -84,24 +391,118 @@ public class XYChart extends Component<XYChart> {
     @Override
     @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
     public String toHtml() {
-        StringBuilder data = new StringBuilder();
-        for (XYDataSet dataSet : dataSets) {
-            StringBuilder xys = new StringBuilder();
-            for (int i = 0; i < dataSet.xs.size(); i++) {
-                xys.append("{x:" + dataSet.xs.get(i) + ",y:" + dataSet.ys.get(i) + "},");
+        synchronized (dataSets) {
+            for (XYDataSet dataSet : dataSets) {
+                dataSet.unsent = 0; //they're all in the page
             }
-            data.append("{ data: [" + xys + "], label: '" + dataSet.name + "', borderColor: '" + WTools.toHex(dataSet.color) + "', borderWidth: 1, pointRadius: 1, fill: false, tension: 0, showLine: true },\n");
+        }
+        List<double[][]> points = getPoints(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, targetPoints);
+        StringBuilder data = new StringBuilder();
+        StringBuilder values = new StringBuilder(); //the points are filled in after the chart is created, from typed arrays
+        for (int d = 0; d < points.size(); d++) {
+            XYDataSet dataSet = dataSets.get(d);
+            data.append("{ data: [], label: '" + dataSet.name + "', borderColor: '" + WTools.toHex(dataSet.color) + "', borderWidth: 1, pointRadius: 1, fill: false, tension: 0, showLine: true },\n");
+            values.append(getId() + "SetData(" + d + ", ");
+            appendArrays(points.get(d), values);
+            values.append(");\n");
         }
 
-        return "<div id='" + getId() + "' " + getProperties() + "style=\"" + getStyle() + "background-color: white\"><canvas id=\"container" + getId() + "\"></canvas>\n"
+        return requireModules("<div id='" + getId() + "' " + getProperties() + "style=\"" + getStyle() + "background-color: white\"><canvas id=\"container" + getId() + "\"></canvas>\n"
                 + "<script>\n"
-                + "new Chart(document.getElementById('container" + getId() + "'), {\n"
+                + "var " + getId() + "Max = " + maxPoints + ";\n"
+                + "var " + getId() + "Chart = new Chart(document.getElementById('container" + getId() + "'), {\n"
                 + "type: 'scatter',\n"
                 + "data: { datasets: [\n"
                 + "" + data + "\n"
-                + "]}})\n"
+                + "]},\n"
+                + "options: { scales: { x: { type: 'linear' } } }});\n"
+                + "function " + getId() + "SetData(dataSet, xs, ys) {\n"
+                + "  var data = [];\n"
+                + "  for (var i = 0; i < xs.length; i++) {\n"
+                + "    data.push({x: xs[i], y: ys[i]});\n"
+                + "  }\n"
+                + "  " + getId() + "Chart.data.datasets[dataSet].data = data;\n"
+                + "}\n"
+                + values
+                + getId() + "Chart.update('none');\n"
+                //appended points are added right away, but the chart is only redrawn once per animation frame
+                + "function " + getId() + "Append(dataSet, xs, ys) {\n"
+                + "  var chart = " + getId() + "Chart;\n"
+                + "  var datasets = chart.data.datasets;\n"
+                + "  if (dataSet >= 0) {\n"
+                + "    for (var i = 0; i < xs.length; i++) {\n"
+                + "      datasets[dataSet].data.push({x: xs[i], y: ys[i]});\n"
+                + "    }\n"
+                + "  }\n"
+                + "  for (var d = 0; d < datasets.length; d++) {\n"
+                + "    if (" + getId() + "Max > 0 && datasets[d].data.length > " + getId() + "Max) {\n"
+                + "      datasets[d].data.splice(0, datasets[d].data.length - " + getId() + "Max);\n"
+                + "    }\n"
+                + "  }\n"
+                + "  if (!chart.tfUpdatePending) {\n"
+                + "    chart.tfUpdatePending = true;\n"
+                + "    requestAnimationFrame(function () {\n"
+                + "      chart.tfUpdatePending = false;\n"
+                + "      chart.update('none');\n"
+                + "    });\n"
+                + "  }\n"
+                + "}\n"
+                + (zoomable ? getZoomScript() : "")
                 + "</script>\n"
-                + "</div>";
+                + "</div>");
+    }
+
+    /**
+     * @return the script that lets the user zoom with the mouse wheel, pan by
+     * dragging and double click to see everything; once the user stops, the
+     * visible range is requested from the server at full detail
+     */
+    private String getZoomScript() {
+        return "(function () {\n"
+                + "  var canvas = document.getElementById('container" + getId() + "');\n"
+                + "  var chart = " + getId() + "Chart;\n"
+                + "  var timer = null, dragX = null;\n"
+                + "  var request = function () {\n"
+                + "    clearTimeout(timer);\n"
+                + "    timer = setTimeout(function () {\n"
+                + "      var x = chart.scales.x;\n"
+                + "      " + createEvent("'#range ' + x.min + ' ' + x.max + ' ' + Math.round(x.width)") + "\n"
+                + "    }, 150);\n"
+                + "  };\n"
+                + "  var show = function (min, max) {\n"
+                + "    chart.options.scales.x.min = min;\n"
+                + "    chart.options.scales.x.max = max;\n"
+                + "    chart.update('none');\n"
+                + "    request();\n"
+                + "  };\n"
+                + "  canvas.addEventListener('wheel', function (e) {\n"
+                + "    e.preventDefault();\n"
+                + "    var x = chart.scales.x;\n"
+                + "    var at = x.getValueForPixel(e.offsetX);\n"
+                + "    var factor = e.deltaY > 0 ? 1.25 : 0.8;\n"
+                + "    show(at - (at - x.min) * factor, at + (x.max - at) * factor);\n"
+                + "  });\n"
+                + "  canvas.addEventListener('mousedown', function (e) {\n"
+                + "    dragX = e.offsetX;\n"
+                + "  });\n"
+                + "  window.addEventListener('mouseup', function () {\n"
+                + "    dragX = null;\n"
+                + "  });\n"
+                + "  canvas.addEventListener('mousemove', function (e) {\n"
+                + "    if (dragX === null) {\n"
+                + "      return;\n"
+                + "    }\n"
+                + "    var x = chart.scales.x;\n"
+                + "    var dx = x.getValueForPixel(dragX) - x.getValueForPixel(e.offsetX);\n"
+                + "    dragX = e.offsetX;\n"
+                + "    show(x.min + dx, x.max + dx);\n"
+                + "  });\n"
+                + "  canvas.addEventListener('dblclick', function () {\n"
+                + "    delete chart.options.scales.x.min;\n"
+                + "    delete chart.options.scales.x.max;\n"
+                + "    " + createEvent("'#range reset ' + Math.round(chart.scales.x.width)") + "\n"
+                + "  });\n"
+                + "})();\n";
     }
 
     /**
@@ -109,7 +510,9 @@ public class XYChart extends Component<XYChart> {
      */
     @Override
     public void dispose() {
-        dataSets.clear();
+        synchronized (dataSets) {
+            dataSets.clear();
+        }
     }
 
     /**
@@ -126,13 +529,25 @@ public class XYChart extends Component<XYChart> {
          */
         private final Color color;
         /**
-         * the x values for the data set
+         * the x and y values for the data set
          */
-        private final List<Double> xs;
+        private final XYBuffer points;
         /**
-         * the y values for the data set
+         * the number of points appended since they were last sent to the
+         * client
          */
-        private final List<Double> ys;
+        private int unsent = 0;
+        /**
+         * the points at several resolutions for downsampling; null until
+         * needed, and after points are appended. Guarded by dataSets, like
+         * version.
+         */
+        private XYPyramid pyramid;
+        /**
+         * counts the changes to the points, so that a pyramid built from an
+         * older copy of them isn't kept
+         */
+        private int version = 0;
 
         /**
          * Constructor
@@ -145,8 +560,36 @@ public class XYChart extends Component<XYChart> {
         public XYDataSet(String name, Color color, List<Double> xs, List<Double> ys) {
             this.name = name;
             this.color = color;
-            this.xs = xs;
-            this.ys = ys;
+            this.points = new XYBuffer(xs.size());
+            for (int i = 0; i < xs.size(); i++) {
+                points.append(xs.get(i), ys.get(i));
+            }
+        }
+
+        /**
+         * Constructor
+         *
+         * @param name the name of the data set
+         * @param color the color of the data set
+         * @param xs the x values for the data set
+         * @param ys the y values for the data set
+         */
+        public XYDataSet(String name, Color color, double[] xs, double[] ys) {
+            this.name = name;
+            this.color = color;
+            this.points = new XYBuffer(xs.length);
+            for (int i = 0; i < xs.length; i++) {
+                points.append(xs[i], ys[i]);
+            }
+        }
+
+        /**
+         * Drops the pyramid after the points change; the caller holds the lock
+         * on dataSets
+         */
+        private void changed() {
+            pyramid = null;
+            version++;
         }
     }
 
@@ -0,0 +1,291 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.components.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * XYPyramid keeps a data set at several resolutions so that any x-range can be
+ * downsampled quickly. Level 0 is the original points; each level after that
+ * keeps the lowest and highest point of every 4 points of the level below, so
+ * it is half the size and still shows every peak. A query picks the finest
+ * level that has few enough points in the range, then downsamples those
+ * points to the requested number.
+ */
+class XYPyramid {
+
+    /**
+     * the x and y values of each level, finest first
+     */
+    private final List<double[][]> levels = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param xs the x values, which must not decrease
+     * @param ys the y values
+     * @param coarsest levels stop being added once a level has this few
+     * points
+     */
+    XYPyramid(double[] xs, double[] ys, int coarsest) {
+        levels.add(new double[][]{xs, ys});
+        double[][] level = levels.get(0);
+        while (level[0].length > Math.max(4, coarsest)) {
+            level = halve(level[0], level[1]);
+            levels.add(level);
+        }
+    }
+
+    /**
+     * @param xs x values
+     * @return true if the x values never decrease, which downsampling needs
+     */
+    static boolean isSorted(double[] xs) {
+        for (int i = 1; i < xs.length; i++) {
+            if (xs[i] < xs[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the next level by keeping the lowest and highest point of every
+     * 4 points, in x order; the groups are independent, so large levels are
+     * built in parallel
+     *
+     * @param xs the x values of the level below
+     * @param ys the y values of the level below
+     * @return the x and y values of the new level
+     */
+    private static double[][] halve(double[] xs, double[] ys) {
+        int groups = (xs.length + 3) / 4;
+        double[] newXs = new double[groups * 2];
+        double[] newYs = new double[groups * 2];
+        IntStream range = IntStream.range(0, groups);
+        (groups > 65536 ? range.parallel() : range).forEach(g -> {
+            int start = g * 4;
+            int end = Math.min(xs.length, start + 4);
+            int min = start, max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (ys[i] < ys[min]) {
+                    min = i;
+                }
+                if (ys[i] > ys[max]) {
+                    max = i;
+                }
+            }
+            int first = Math.min(min, max), second = Math.max(min, max);
+            newXs[g * 2] = xs[first];
+            newYs[g * 2] = ys[first];
+            newXs[g * 2 + 1] = xs[second];
+            newYs[g * 2 + 1] = ys[second];
+        });
+        return new double[][]{newXs, newYs};
+    }
+
+    /**
+     * Gets the points in the x-range, downsampled to about the target number
+     *
+     * @param x0 the lowest x value that is shown
+     * @param x1 the highest x value that is shown
+     * @param target the number of points wanted, usually the chart's width in
+     * pixels
+     * @param minMax true to keep the lowest and highest point of each bucket,
+     * false to use largest-triangle-three-buckets
+     * @return the x and y values to show
+     */
+    double[][] query(double x0, double x1, int target, boolean minMax) {
+        for (int l = 0; l < levels.size(); l++) {
+            double[] xs = levels.get(l)[0];
+            //include one point on each side so the line runs off the edges
+            int from = Math.max(0, lowerBound(xs, x0) - 1);
+            int to = Math.min(xs.length, upperBound(xs, x1) + 1);
+            if (to - from <= target * 4 || l == levels.size() - 1) {
+                double[] ys = levels.get(l)[1];
+                return minMax ? minMax(xs, ys, from, to, target) : lttb(xs, ys, from, to, target);
+            }
+        }
+        return new double[][]{new double[0], new double[0]};
+    }
+
+    /**
+     * @param xs sorted values
+     * @param x the value to look for
+     * @return the index of the first value that is at least x
+     */
+    private static int lowerBound(double[] xs, double x) {
+        int low = 0, high = xs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (xs[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param xs sorted values
+     * @param x the value to look for
+     * @return the index of the first value that is greater than x
+     */
+    private static int upperBound(double[] xs, double x) {
+        int low = 0, high = xs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (xs[mid] <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Downsamples with largest-triangle-three-buckets, which keeps the points
+     * that best preserve the shape of the line
+     *
+     * @param xs the x values
+     * @param ys the y values
+     * @param from the index of the first point
+     * @param to the index after the last point
+     * @param target the number of points to keep
+     * @return the kept x and y values
+     */
+    static double[][] lttb(double[] xs, double[] ys, int from, int to, int target) {
+        int count = to - from;
+        if (count <= target || target < 3) {
+            return slice(xs, ys, from, to);
+        }
+        double[] newXs = new double[target];
+        double[] newYs = new double[target];
+        double bucketSize = (double) (count - 2) / (target - 2);
+        int a = from;
+        newXs[0] = xs[a];
+        newYs[0] = ys[a];
+        for (int b = 0; b < target - 2; b++) {
+            //the average of the next bucket is the third point of the triangle
+            int nextStart = from + (int) ((b + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(to, from + (int) ((b + 2) * bucketSize) + 1);
+            double avgX = 0, avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += xs[i];
+                avgY += ys[i];
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = from + (int) (b * bucketSize) + 1;
+            int end = from + (int) ((b + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((xs[a] - avgX) * (ys[i] - ys[a]) - (xs[a] - xs[i]) * (avgY - ys[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            newXs[b + 1] = xs[chosen];
+            newYs[b + 1] = ys[chosen];
+            a = chosen;
+        }
+        newXs[target - 1] = xs[to - 1];
+        newYs[target - 1] = ys[to - 1];
+        return new double[][]{newXs, newYs};
+    }
+
+    /**
+     * Downsamples by keeping the lowest and highest point of each bucket, which
+     * keeps every peak
+     *
+     * @param xs the x values
+     * @param ys the y values
+     * @param from the index of the first point
+     * @param to the index after the last point
+     * @param target the number of points to keep
+     * @return the kept x and y values
+     */
+    static double[][] minMax(double[] xs, double[] ys, int from, int to, int target) {
+        int count = to - from;
+        int buckets = target / 2;
+        if (count <= target || buckets < 1) {
+            return slice(xs, ys, from, to);
+        }
+        double[] newXs = new double[buckets * 2];
+        double[] newYs = new double[buckets * 2];
+        double bucketSize = (double) count / buckets;
+        for (int b = 0; b < buckets; b++) {
+            int start = from + (int) (b * bucketSize);
+            int end = Math.min(to, from + (int) ((b + 1) * bucketSize));
+            int min = start, max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (ys[i] < ys[min]) {
+                    min = i;
+                }
+                if (ys[i] > ys[max]) {
+                    max = i;
+                }
+            }
+            int first = Math.min(min, max), second = Math.max(min, max);
+            newXs[b * 2] = xs[first];
+            newYs[b * 2] = ys[first];
+            newXs[b * 2 + 1] = xs[second];
+            newYs[b * 2 + 1] = ys[second];
+        }
+        return new double[][]{newXs, newYs};
+    }
+
+    /**
+     * @param xs the x values
+     * @param ys the y values
+     * @param from the index of the first point
+     * @param to the index after the last point
+     * @return copies of the points in the range
+     */
+    private static double[][] slice(double[] xs, double[] ys, int from, int to) {
+        double[] newXs = new double[to - from];
+        double[] newYs = new double[to - from];
+        System.arraycopy(xs, from, newXs, 0, newXs.length);
+        System.arraycopy(ys, from, newYs, 0, newYs.length);
+        return new double[][]{newXs, newYs};
+    }
+
+}
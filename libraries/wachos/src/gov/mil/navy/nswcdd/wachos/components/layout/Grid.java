@@ -288,29 +288,26 @@ public class Grid<T extends Grid> extends Layout<T> {
 
         //this table has been filtered, we need to tell the user!
         if (!filterMessage.equals("")) {
-            html.append("<tr><td colspan=\"" + columns + "\" class=\"ui-widget\">" + filterMessage + "</td></tr>");
+            html.append(getFilterMessageHtml());
         }
 
         //create all of the rows in this grid
         int componentIndex = 0; //which component are we on?
+        int rowIndex = 0; //which row are we on?
         while (columns != 0 && componentIndex < visibleComponents.size()) {
-            html.append("<tr>"); //start the row
+            html.append("<tr" + getRowAttributes(rowIndex) + ">"); //start the row
             boolean topRow = componentIndex < columns;
 
             for (int i = 0; i < columns; i++) {
                 if (visibleComponents.size() > componentIndex) {
-                    Component c = visibleComponents.get(componentIndex);
-                    String type = ((topRow && isTable) ? "th" : "td"); //if it's the top row and this is a table, use "th"; otherwise, use "td"
-                    //this next line of code is where we place the Component
-                    String cBackground = c.getProperty("css.background-color");
-                    html.append("<" + (type.startsWith("th") && cBackground.equals("") ? type + " class=\"ui-state-default\"" : type) + (isTable && !cBackground.equals("") ? " bgcolor=\"" + cBackground + "\"" : "")
-                            + " " + getStyle(c, topRow, i == 0, type.startsWith("th")) + ">" + c.toHtml() + "</" + type + ">");
+                    html.append(getCellHtml(visibleComponents.get(componentIndex), topRow, i == 0));
                 } else {
                     i = columns; //new column!
                 }
                 componentIndex++;
             }
             html.append("</tr>"); //finish the row
+            rowIndex++;
         }
 
         html.append("</table>"); //end the table
@@ -340,6 +337,41 @@ public class Grid<T extends Grid> extends Layout<T> {
         return html.toString();
     }
 
+    /**
+     * @return the HTML of the row that tells the user that data has been
+     * filtered out
+     */
+    protected String getFilterMessageHtml() {
+        return "<tr id=\"filter" + getId() + "\"><td colspan=\"" + columns + "\" class=\"ui-widget\">" + filterMessage + "</td></tr>";
+    }
+
+    /**
+     * Provides any extra attributes for the tr of the given row; there are none
+     * by default
+     *
+     * @param rowIndex the index of the row, where 0 is the top row
+     * @return the attributes to add to the tr, starting with a space
+     */
+    protected String getRowAttributes(int rowIndex) {
+        return "";
+    }
+
+    /**
+     * Returns the th or td that holds the given component
+     *
+     * @param c the component to place in the cell
+     * @param topRow are we on the top row? if so, this may be a header
+     * @param leftCol are we in the left column?
+     * @return the HTML for the th or td, including the component
+     */
+    protected String getCellHtml(Component c, boolean topRow, boolean leftCol) {
+        String type = ((topRow && isTable) ? "th" : "td"); //if it's the top row and this is a table, use "th"; otherwise, use "td"
+        //this next line of code is where we place the Component
+        String cBackground = c.getProperty("css.background-color");
+        return "<" + (type.startsWith("th") && cBackground.equals("") ? type + " class=\"ui-state-default\"" : type) + (isTable && !cBackground.equals("") ? " bgcolor=\"" + cBackground + "\"" : "")
+                + " " + getStyle(c, topRow, leftCol, type.startsWith("th")) + ">" + c.toHtml() + "</" + type + ">";
+    }
+
     /**
      * Returns the styling for the th or td that this component will go into
      *
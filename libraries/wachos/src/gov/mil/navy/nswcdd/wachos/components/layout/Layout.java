@@ -332,13 +332,10 @@ public abstract class Layout<T extends Layout> extends Component<T> {
                     }
                 }
             } else if (component instanceof TreeView) {
-                for (Component nodeComponent : ((TreeView) component).getNodeComponents()) {
-                    if (nodeComponent.getId().equals(componentId)) {
-                        nodeComponent.fireEvent(value);
-                        return true;
-                    } else if (nodeComponent instanceof Layout && findComponentAndFireEvent((Layout) nodeComponent, componentId, value)) {
-                        return true;
-                    }
+                Component nodeComponent = ((TreeView) component).getNodeComponent(componentId);
+                if (nodeComponent != null) {
+                    nodeComponent.fireEvent(value);
+                    return true;
                 }
             } else if (component instanceof Layout && findComponentAndFireEvent((Layout) component, componentId, value)) {
                 return true; //stop looking, we found and updated recursively!
@@ -51,6 +51,11 @@ public class Row {
      * the actual components for each cell name
      */
     protected List<Component> cells = new ArrayList<>();
+    /**
+     * the key this row is stored under in its Table, or null if the row was
+     * added without a key
+     */
+    String key;
 
     /**
      * Constructor
@@ -69,6 +74,18 @@ public class Row {
      * @param cells there must be a cell for each column defined in the header
      */
     public Row(Header header, List cells) {
+        setCells(header, cells);
+    }
+
+    /**
+     * Replaces the cells of this row
+     *
+     * @param header the header object that defines this row
+     * @param cells there must be a cell for each column defined in the header
+     */
+    final void setCells(Header header, List<?> cells) {
+        this.cellNames.clear();
+        this.cells.clear();
         for (int i = 0; i < header.getColumnNames().size(); i++) {
             if (cells.get(i) instanceof Component) {
                 this.cellNames.add(header.getColumnNames().get(i));
@@ -107,4 +124,28 @@ public class Row {
         return cells.size();
     }
 
+    /**
+     * @return the key this row is stored under in its Table, or null if the
+     * row was added without a key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return a unique ID for this row, which is used for its tr
+     */
+    public String getId() {
+        return "row" + hashCode();
+    }
+
+    /**
+     * Disposes each cell in this row
+     */
+    public void dispose() {
+        for (Component<?> cell : cells) {
+            cell.dispose();
+        }
+    }
+
 }
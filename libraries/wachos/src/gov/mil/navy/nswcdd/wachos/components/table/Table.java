@@ -37,15 +37,21 @@ import gov.mil.navy.nswcdd.wachos.components.ComponentListener;
 import gov.mil.navy.nswcdd.wachos.components.layout.Grid;
 import gov.mil.navy.nswcdd.wachos.components.layout.HBox;
 import gov.mil.navy.nswcdd.wachos.components.text.ImageButton;
+import gov.mil.navy.nswcdd.wachos.components.text.Label;
 import gov.mil.navy.nswcdd.wachos.components.text.TextComponent;
+import gov.mil.navy.nswcdd.wachos.tools.DelimitedWriter;
+import gov.mil.navy.nswcdd.wachos.tools.FlushScheduler;
+import gov.mil.navy.nswcdd.wachos.tools.WSession;
 import gov.mil.navy.nswcdd.wachos.tools.WTools;
 import gov.mil.navy.nswcdd.wachos.tools.Color;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -68,7 +74,8 @@ public class Table extends Grid implements Serializable {
      */
     private List<Filter> filters = new ArrayList<>();
     /**
-     * all of the rows of this table
+     * all of the rows of this table; the methods that change the rows are
+     * synchronized on this Table, since flushCells runs on its own thread
      */
     private final List<Row> rows = new ArrayList<>();
     /**
@@ -89,10 +96,25 @@ public class Table extends Grid implements Serializable {
      * column hiding)
      */
     public TableSettingsDialog settingsDialog;
+    /**
+     * the rows of this table that were added with a key, by key; rows without
+     * a key aren't in here, so they can't collide with a user's key
+     */
+    private final Map<String, Row> keyedRows = new HashMap<>();
     /**
      * the currently selected row
      */
-    private int selectedRow = -1;
+    private Row selectedRow = null;
+    /**
+     * cell values from updateCell that haven't been sent to the client yet;
+     * key is the row key, and value is the new value by column name
+     */
+    private final Map<String, Map<String, Object>> dirtyCells = new LinkedHashMap<>();
+    /**
+     * sends the dirty cells to the client; collects changes for about one
+     * animation frame by default
+     */
+    private final FlushScheduler cellFlusher = new FlushScheduler(16, this::flushCells);
     /**
      * buttons that are used for sorting the table
      */
@@ -125,9 +147,8 @@ public class Table extends Grid implements Serializable {
      * @param cells the cell of each item in the row (can be a String or
      * TextComponent)
      */
-    public void addRow(List cells) {
-        rows.add(new Row(header, cells));
-        redraw();
+    public synchronized void addRow(List<?> cells) {
+        addRow(rows.size(), cells);
     }
 
     /**
@@ -138,14 +159,173 @@ public class Table extends Grid implements Serializable {
      * @param cells the cell of each item in the row (can be a String or
      * TextComponent)
      */
-    public void addRow(int index, List cells) {
-        rows.add(index, new Row(header, cells));
-        for (Object cell : cells) {
-            if (cell instanceof Component) {
-                ((Component) cell).init(layoutId, session);
+    public synchronized void addRow(int index, List<?> cells) {
+        StringBuilder script = new StringBuilder();
+        insertRow(index, null, cells, script);
+        patch(script);
+    }
+
+    /**
+     * Adds a row to this table at the last index, stored under the given key so
+     * that it can be updated or removed later on; if a row already exists with
+     * the given key, that row is updated instead
+     *
+     * @param key the unique key of the row, e.g. a track number
+     * @param cells the cell of each item in the row (can be a String or
+     * TextComponent)
+     */
+    public synchronized void addRow(String key, List<?> cells) {
+        StringBuilder script = new StringBuilder();
+        upsertRow(key, cells, script);
+        patch(script);
+    }
+
+    /**
+     * Adds (or updates) several keyed rows at once, sending a single update to
+     * the client
+     *
+     * @param keyedCells the cells of each row, by row key, in the order in
+     * which they should be added
+     */
+    public synchronized void addRows(Map<String, ? extends List<?>> keyedCells) {
+        StringBuilder script = new StringBuilder();
+        for (Map.Entry<String, ? extends List<?>> entry : keyedCells.entrySet()) {
+            upsertRow(entry.getKey(), entry.getValue(), script);
+        }
+        patch(script);
+    }
+
+    /**
+     * Replaces the cells of the row with the given key; nothing happens if
+     * there is no such row
+     *
+     * @param key the key of the row to update
+     * @param cells the new cell of each item in the row (can be a String or
+     * TextComponent)
+     */
+    public synchronized void updateRow(String key, List<?> cells) {
+        Row row = keyedRows.get(key);
+        if (row != null) {
+            StringBuilder script = new StringBuilder();
+            replaceCells(row, cells, script);
+            patch(script);
+        }
+    }
+
+    /**
+     * Sets the value of a single cell in a keyed row. Changes are collected and
+     * sent to the client together, once per flush interval, so this can be
+     * called many times per second for live data; only the latest value of
+     * each cell is sent, and only for rows that are shown.
+     *
+     * @param rowKey the key of the row to update
+     * @param columnName the name of the column to update
+     * @param value the new value of the cell; a String updates the text of the
+     * existing cell, whereas a Component replaces the cell
+     */
+    public void updateCell(String rowKey, String columnName, Object value) {
+        synchronized (dirtyCells) {
+            Map<String, Object> dirtyRow = dirtyCells.get(rowKey);
+            if (dirtyRow == null) {
+                dirtyRow = new LinkedHashMap<>();
+                dirtyCells.put(rowKey, dirtyRow);
             }
+            dirtyRow.put(columnName, value);
         }
-        redraw();
+        cellFlusher.schedule();
+    }
+
+    /**
+     * Sets how often the changes from updateCell are sent to the client
+     *
+     * @param millis the number of milliseconds to collect changes before
+     * sending them
+     */
+    public void setCellFlushInterval(long millis) {
+        cellFlusher.setInterval(millis);
+    }
+
+    /**
+     * Applies all pending changes from updateCell and sends them to the client
+     * as a single update. Only rows whose filtered or sorted columns have
+     * changed are filtered and sorted again.
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    public synchronized void flushCells() {
+        Map<String, Map<String, Object>> changes;
+        synchronized (dirtyCells) {
+            changes = new LinkedHashMap<>(dirtyCells);
+            dirtyCells.clear();
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<String> keyColumns = new ArrayList<>();
+        for (Filter<?> filter : filters) {
+            keyColumns.add(filter.columnName);
+        }
+        keyColumns.add(sortBy);
+
+        StringBuilder script = new StringBuilder();
+        StringBuilder texts = new StringBuilder();
+        for (Map.Entry<String, Map<String, Object>> change : changes.entrySet()) {
+            Row row = keyedRows.get(change.getKey());
+            if (row == null) {
+                continue; //the row was removed in the meantime
+            }
+            boolean redrawRow = false, keyChanged = false;
+            StringBuilder rowTexts = new StringBuilder();
+            for (Map.Entry<String, Object> cellChange : change.getValue().entrySet()) {
+                int index = row.cellNames.indexOf(cellChange.getKey());
+                if (index == -1) {
+                    continue;
+                }
+                Component<?> cell = row.cells.get(index);
+                Object value = cellChange.getValue();
+                if (value instanceof Component || !(cell instanceof TextComponent)) {
+                    Component<?> newCell = value instanceof Component ? (Component<?>) value : new Label(String.valueOf(value));
+                    row.cells.set(index, newCell);
+                    newCell.init(layoutId, session);
+                    cell.dispose();
+                    redrawRow = true;
+                } else {
+                    String text = String.valueOf(value);
+                    if (text.equals(((TextComponent) cell).getText())) {
+                        continue; //nothing changed
+                    }
+                    ((TextComponent) cell).setText(text, false, false);
+                    redrawRow |= !(cell instanceof Label); //only a Label is guaranteed to show its text as the element's text
+                    rowTexts.append("['" + cell.getId() + "'," + toScriptString(text.replace("\\", "\\\\")) + "],");
+                }
+                keyChanged |= keyColumns.contains(cellChange.getKey());
+            }
+            if (keyChanged && !repositionRow(row, script)) {
+                continue; //the row was moved, removed, or is still hidden, so its tr is already up to date
+            }
+            if (!keyChanged && !filteredRows.contains(row)) {
+                continue; //not shown, so there is nothing to send
+            }
+            if (redrawRow) {
+                script.append("$('#" + row.getId() + "').replaceWith(" + toScriptString(getRowHtml(row)) + ");\n");
+                appendToolTips(row, script);
+            } else {
+                texts.append(rowTexts);
+            }
+        }
+        if (texts.length() != 0) {
+            script.append("[" + texts + "].forEach(function(c){$('#'+c[0]).text(c[1]);});\n");
+        }
+        patch(script);
+    }
+
+    /**
+     * Gets the row that was stored with the given key
+     *
+     * @param key the key of the row
+     * @return the matching row, or null if there isn't one
+     */
+    public Row getRow(String key) {
+        return keyedRows.get(key);
     }
 
     /**
@@ -153,11 +333,38 @@ public class Table extends Grid implements Serializable {
      *
      * @param index the index of the row to remove
      */
-    public void removeRow(int index) {
+    public synchronized void removeRow(int index) {
         if (index < rows.size()) {
-            rows.remove(index); //TODO don't we need to also remove listeners on each cell?
-            redraw();
+            StringBuilder script = new StringBuilder();
+            deleteRow(rows.get(index), script);
+            patch(script);
+        }
+    }
+
+    /**
+     * Removes the row with the given key
+     *
+     * @param key the key of the row to remove
+     */
+    public void removeRow(String key) {
+        removeRows(Arrays.asList(key));
+    }
+
+    /**
+     * Removes the rows with the given keys, sending a single update to the
+     * client
+     *
+     * @param keys the keys of the rows to remove
+     */
+    public synchronized void removeRows(Collection<String> keys) {
+        StringBuilder script = new StringBuilder();
+        for (String key : keys) {
+            Row row = keyedRows.get(key);
+            if (row != null) {
+                deleteRow(row, script);
+            }
         }
+        patch(script);
     }
 
     /**
@@ -165,31 +372,320 @@ public class Table extends Grid implements Serializable {
      *
      * @param cells the row of cells to remove
      */
-    public void removeRow(List cells) {
-        List cellsCopy = new ArrayList(cells);
+    public synchronized void removeRow(List<?> cells) {
         for (Row row : rows) {
-            for (Object cell : row.cells) {
-                if (cellsCopy.contains(cell) || cellsCopy.contains(cell.toString())) {
-                    cellsCopy.remove(cell);
+            if (matches(row, cells)) {
+                StringBuilder script = new StringBuilder();
+                deleteRow(row, script);
+                patch(script);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Determines whether the row's cells are the given cells (or have the same
+     * text)
+     *
+     * @param row the row to check
+     * @param cells the cells to compare against, column by column
+     * @return flag indicating if every cell matches
+     */
+    private boolean matches(Row row, List<?> cells) {
+        if (row.cells.size() != cells.size()) {
+            return false;
+        }
+        for (int i = 0; i < cells.size(); i++) {
+            Component<?> cell = row.cells.get(i);
+            Object other = cells.get(i);
+            if (cell != other && (other == null || !cell.toString().equals(other.toString()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a new row, or updates the row if the key is already in use
+     *
+     * @param key the unique key of the row
+     * @param cells the cell of each item in the row
+     * @param script the client-side changes are appended to this
+     */
+    private void upsertRow(String key, List<?> cells, StringBuilder script) {
+        Row row = keyedRows.get(key);
+        if (row == null) {
+            insertRow(rows.size(), key, cells, script);
+        } else {
+            replaceCells(row, cells, script);
+        }
+    }
+
+    /**
+     * Creates a row and adds it at the given index, placing it in the correct
+     * filtered and sorted position on the client
+     *
+     * @param index the index in the list of all rows
+     * @param key the unique key of the row, or null if it doesn't have one
+     * @param cells the cell of each item in the row
+     * @param script the client-side changes are appended to this
+     */
+    private void insertRow(int index, String key, List<?> cells, StringBuilder script) {
+        Row row = new Row(header, cells);
+        row.key = key;
+        for (Component<?> cell : row.cells) {
+            cell.init(layoutId, session);
+        }
+        rows.add(index, row);
+        if (key != null) {
+            keyedRows.put(key, row);
+        }
+        showRow(row, script);
+    }
+
+    /**
+     * Replaces the cells of an existing row, moving it on the client if its
+     * filtered or sorted position has changed
+     *
+     * @param row the row to update
+     * @param cells the new cell of each item in the row
+     * @param script the client-side changes are appended to this
+     */
+    private void replaceCells(Row row, List<?> cells, StringBuilder script) {
+        Component<?>[] oldCells = row.cells.toArray(new Component<?>[0]);
+        row.setCells(header, cells);
+        for (Component<?> cell : oldCells) {
+            if (!row.cells.contains(cell)) {
+                cell.dispose();
+            }
+        }
+        for (Component<?> cell : row.cells) {
+            cell.init(layoutId, session);
+        }
+
+        if (repositionRow(row, script)) {
+            script.append("$('#" + row.getId() + "').replaceWith(" + toScriptString(getRowHtml(row)) + ");\n");
+            appendToolTips(row, script);
+        }
+    }
+
+    /**
+     * Re-applies the filters and sorting to a row whose cells have changed,
+     * moving its tr on the client if it belongs somewhere else now
+     *
+     * @param row the row that has changed
+     * @param script the client-side changes are appended to this
+     * @return true if the row is still shown in the same position, in which
+     * case the caller is responsible for updating its tr in place
+     */
+    private boolean repositionRow(Row row, StringBuilder script) {
+        int oldPosition = filteredRows.indexOf(row);
+        if (oldPosition != -1) {
+            filteredRows.remove(oldPosition);
+        }
+        int newPosition = isFilteredIn(row) ? getFilteredPosition(row) : -1;
+        if (oldPosition != -1 && oldPosition == newPosition) {
+            filteredRows.add(newPosition, row);
+            return true;
+        }
+        if (oldPosition != -1) {
+            script.append("$('#" + row.getId() + "').remove();\n");
+        }
+        showRow(row, script);
+        return false;
+    }
+
+    /**
+     * Removes the row and disposes its cells
+     *
+     * @param row the row to remove
+     * @param script the client-side changes are appended to this
+     */
+    private void deleteRow(Row row, StringBuilder script) {
+        rows.remove(row);
+        if (row.key != null) {
+            keyedRows.remove(row.key, row);
+        }
+        if (filteredRows.remove(row)) {
+            script.append("$('#" + row.getId() + "').remove();\n");
+        }
+        if (selectedRow == row) {
+            selectedRow = null;
+        }
+        row.dispose();
+    }
+
+    /**
+     * If the row passes the filters, adds it to the filtered rows and inserts
+     * its tr next to its neighbor on the client
+     *
+     * @param row the row to show
+     * @param script the client-side changes are appended to this
+     */
+    private void showRow(Row row, StringBuilder script) {
+        if (!isFilteredIn(row)) {
+            return;
+        }
+        int position = getFilteredPosition(row);
+        filteredRows.add(position, row);
+        String html = toScriptString(getRowHtml(row));
+        if (position > 0) {
+            script.append("$('#" + filteredRows.get(position - 1).getId() + "').after(" + html + ");\n");
+        } else if (filteredRows.size() > 1) {
+            script.append("$('#" + filteredRows.get(1).getId() + "').before(" + html + ");\n");
+        } else {
+            script.append("$('#table" + getId() + " > tbody > tr').last().after(" + html + ");\n"); //the header is the only row
+        }
+        appendToolTips(row, script);
+    }
+
+    /**
+     * Finds where the row belongs in the filtered rows, which is based on the
+     * sort column if there is one; otherwise, it's based on the order of all
+     * rows
+     *
+     * @param row the row that isn't in the filtered rows yet
+     * @return the index the row should be inserted at
+     */
+    private int getFilteredPosition(Row row) {
+        if (!sortBy.equals("")) {
+            RowComparator comparator = new RowComparator(sortBy, header.getComparator(sortBy), reverseSort);
+            int low = 0, high = filteredRows.size();
+            while (low < high) { //find the first row that sorts after this one, so ties keep their order
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(filteredRows.get(mid), row) <= 0) {
+                    low = mid + 1;
                 } else {
-                    break;
+                    high = mid;
                 }
             }
-            if (cellsCopy.isEmpty()) {
-                rows.remove(row); //TODO don't we need to also remove listeners on each cell?
-                break;
+            return low;
+        }
+        int index = rows.indexOf(row);
+        if (index == rows.size() - 1) {
+            return filteredRows.size(); //appended, which is the usual case
+        }
+        for (int i = index - 1; i >= 0; i--) {
+            if (isFilteredIn(rows.get(i))) {
+                return filteredRows.indexOf(rows.get(i)) + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Determines whether the row passes all of the current filters
+     *
+     * @param row the row to check
+     * @return flag indicating if the row should be shown
+     */
+    private boolean isFilteredIn(Row row) {
+        for (Filter<?> filter : filters) {
+            Component<?> c = row.get(filter.columnName);
+            if (!(c instanceof TextComponent) || !filter.isValid((TextComponent) c)) {
+                return false;
             }
         }
-        redraw();
+        return true;
+    }
+
+    /**
+     * Creates the tr for the given row, using the visible columns
+     *
+     * @param row the row to represent
+     * @return the HTML of the row
+     */
+    @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
+    private String getRowHtml(Row row) {
+        StringBuilder html = new StringBuilder("<tr" + getRowAttributes(row) + ">");
+        List<String> visibleColumnNames = header.getVisibleColumnNames();
+        for (int i = 0; i < visibleColumnNames.size(); i++) {
+            html.append(getCellHtml(row.get(visibleColumnNames.get(i)), false, i == 0));
+        }
+        return html.append("</tr>").toString();
+    }
+
+    /**
+     * Provides the attributes for the tr of the given row
+     *
+     * @param rowIndex the index of the row, where 0 is the header
+     * @return the ID of the row, and its class if it's selected
+     */
+    @Override
+    protected String getRowAttributes(int rowIndex) {
+        return rowIndex == 0 ? "" : getRowAttributes(filteredRows.get(rowIndex - 1));
+    }
+
+    /**
+     * Provides the attributes for the tr of the given row
+     *
+     * @param row the row that is being drawn
+     * @return the ID of the row, and its class if it's selected
+     */
+    private String getRowAttributes(Row row) {
+        return " id=\"" + row.getId() + "\"" + (row == selectedRow ? " class=\"selected\"" : "");
+    }
+
+    /**
+     * Appends the tooltip scripts for the cells of the given row
+     *
+     * @param row the row containing cells that may have tooltips
+     * @param script the client-side changes are appended to this
+     */
+    private void appendToolTips(Row row, StringBuilder script) {
+        for (Component<?> cell : row.cells) {
+            WTools.createToolTipsScript(cell, script);
+        }
+    }
+
+    /**
+     * Converts the HTML to a JavaScript String
+     *
+     * @param html the HTML to convert
+     * @return the quoted String
+     */
+    private String toScriptString(String html) {
+        return "\"" + html.replace("#LAYOUT_ID#", layoutId).replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /**
+     * Sends the row changes to the client, along with an updated filter
+     * message; nothing is sent if redrawing isn't allowed, since a redraw will
+     * happen afterwards
+     *
+     * @param script the row changes
+     */
+    private void patch(StringBuilder script) {
+        if (!isRendered() || !allowRedrawing) {
+            return;
+        }
+        String message = getFilterMessage();
+        if (!message.equals(filterMessage)) {
+            String previousMessage = filterMessage;
+            filterMessage = message;
+            if (previousMessage.equals("")) {
+                script.append("$('#table" + getId() + " > tbody').prepend(" + toScriptString(getFilterMessageHtml()) + ");\n");
+            } else if (message.equals("")) {
+                script.append("$('#filter" + getId() + "').remove();\n");
+            } else {
+                script.append("$('#filter" + getId() + " > td').text(" + toScriptString(message) + ");\n");
+            }
+        }
+        if (script.length() != 0) {
+            exec(script.toString());
+        }
     }
 
     /**
-     * Overrides redraw, because the selected row needs to be reset
+     * Overrides redraw, because the selected row needs to be reset if it was
+     * removed
      */
     @Override
-    public void redraw() {
+    public synchronized void redraw() {
         if (allowRedrawing) {
-            selectedRow = -1;
+            if (selectedRow != null && !rows.contains(selectedRow)) {
+                selectedRow = null;
+            }
             super.redraw();
         }
     }
@@ -209,23 +705,72 @@ public class Table extends Grid implements Serializable {
     }
 
     /**
-     * Filters the table based on the filters that are set
+     * @return the rows that pass the filters, in sorted order
      */
-    private void filterRows() {
-        filteredRows.clear();
+    private List<Row> getShownRows() {
+        List<Row> shown = new ArrayList<>();
         for (Row row : rows) {
-            boolean valid = true;
-            for (Filter filter : filters) {
-                Component c = row.get(filter.columnName);
-                valid = valid && c instanceof TextComponent && filter.isValid((TextComponent) c);
-            }
-            if (valid) {
-                filteredRows.add(row);
+            if (isFilteredIn(row)) {
+                shown.add(row);
             }
         }
         if (!sortBy.equals("")) {
-            Collections.sort(filteredRows, new RowComparator(sortBy, header.getComparator(sortBy), reverseSort));
+            Collections.sort(shown, new RowComparator(sortBy, header.getComparator(sortBy), reverseSort));
+        }
+        return shown;
+    }
+
+    /**
+     * Allows the user to download the table as a delimited file (CSV, TSV,
+     * etc.) containing the visible columns and the rows that pass the current
+     * filters, in sorted order. The file is streamed to the browser when it
+     * is requested rather than being built in memory.
+     *
+     * @param fileName the name of the file to download
+     * @param delimiter the character that separates values, e.g. ',' or '\t'
+     * @param gzip flag indicating if the file should be gzipped in transit
+     * when the browser accepts it
+     */
+    public synchronized void export(String fileName, char delimiter, boolean gzip) {
+        List<String> columnNames = header.getVisibleColumnNames();
+        List<Row> shown = getShownRows();
+        if (session == null) {
+            session = WSession.getSession(); //can happen if the component hasn't been added to a layout yet
+        }
+        WTools.downloadFile(session, fileName, delimiter == '\t' ? "text/tab-separated-values" : "text/csv", gzip, out -> {
+            DelimitedWriter writer = new DelimitedWriter(out, delimiter);
+            writer.writeRow(columnNames);
+            List<String> values = new ArrayList<>(columnNames.size());
+            for (Row row : shown) {
+                values.clear();
+                for (String columnName : columnNames) {
+                    values.add(toExportString(row.get(columnName)));
+                }
+                writer.writeRow(values);
+            }
+            writer.flush();
+        });
+    }
+
+    /**
+     * @param c a table cell
+     * @return the text of the cell as it should appear in an exported file
+     */
+    private static String toExportString(Component<?> c) {
+        if (c == null) {
+            return "";
+        } else if (c instanceof TextComponent) {
+            return WTools.desanitize(((TextComponent) c).getText());
         }
+        return c.toString();
+    }
+
+    /**
+     * Filters the table based on the filters that are set
+     */
+    private void filterRows() {
+        filteredRows.clear();
+        filteredRows.addAll(getShownRows());
 
         components.clear();
         sortButtons.clear();
@@ -293,7 +838,7 @@ public class Table extends Grid implements Serializable {
      *
      * @param filters the filters that will filter out table data
      */
-    public void setFilters(List<Filter> filters) {
+    public synchronized void setFilters(List<Filter> filters) {
         this.filters = filters;
         redraw();
     }
@@ -341,7 +886,7 @@ public class Table extends Grid implements Serializable {
      *
      * @param columnName the column the table is being sorted on
      */
-    public void sort(String columnName) {
+    public synchronized void sort(String columnName) {
         reverseSort = columnName.equals(sortBy) && !reverseSort;
         sortBy = columnName;
         redraw();
@@ -414,23 +959,47 @@ public class Table extends Grid implements Serializable {
      * @return the HTML representation of this Table
      */
     @Override
-    public String toHtml() {
+    public synchronized String toHtml() {
         filterRows();//ensures that filtered rows are updated
+        filterMessage = getFilterMessage();
+        return super.toHtml();
+    }
 
-        //create a filter message, if anything is filtered out
-        filterMessage = "";
+    /**
+     * @return a filter message, if anything is filtered out; otherwise, ""
+     */
+    private String getFilterMessage() {
+        String message = "";
         if (filteredRows.size() != rows.size()) {
-            filterMessage = "Showing " + filteredRows.size() + " out of " + rows.size() + (rows.size() == 1 ? " row" : " rows");
+            message = "Showing " + filteredRows.size() + " out of " + rows.size() + (rows.size() == 1 ? " row" : " rows");
         }
         int missingColumns = header.getColumnNames().size() - columns;
-        if (filterMessage.length() != 0 && missingColumns != 0) {
-            filterMessage += "; ";
+        if (message.length() != 0 && missingColumns != 0) {
+            message += "; ";
         }
         if (missingColumns != 0) {
-            filterMessage += (missingColumns == 1 ? "a column is hidden" : missingColumns + " columns are hidden");
+            message += (missingColumns == 1 ? "a column is hidden" : missingColumns + " columns are hidden");
         }
+        return message;
+    }
 
-        return super.toHtml();
+    /**
+     * Disposes every row (including rows that are filtered out) along with the
+     * rest of this Table
+     */
+    @Override
+    public synchronized void dispose() {
+        for (Row row : rows) {
+            row.dispose();
+        }
+        rows.clear();
+        filteredRows.clear();
+        keyedRows.clear();
+        selectedRow = null;
+        synchronized (dirtyCells) {
+            dirtyCells.clear();
+        }
+        super.dispose();
     }
 
     /**
@@ -458,7 +1027,7 @@ public class Table extends Grid implements Serializable {
      * @param rowIndex the index of the row that was clicked
      */
     public void setSelectedRow(int rowIndex) {
-        this.selectedRow = rowIndex;
+        this.selectedRow = rowIndex >= 0 && rowIndex < filteredRows.size() ? filteredRows.get(rowIndex) : null;
         rowSelectListener.update(rowIndex + "");
     }
 
@@ -466,7 +1035,7 @@ public class Table extends Grid implements Serializable {
      * @return the currently selected row
      */
     public Row getSelectedRow() {
-        return selectedRow == -1 ? null : filteredRows.get(selectedRow);
+        return selectedRow;
     }
 
     /**
@@ -73,12 +73,20 @@ public class CodeSnippet extends TextComponent {
         return code;
     }
 
+    /**
+     * @return "highlight", which this component needs
+     */
+    @Override
+    public String[] getModules() {
+        return new String[]{"highlight"};
+    }
+
     /**
      * @return the HTML used to represent this Component
      */
     @Override
     public String toHtml() {
-        return "<div id='" + getId() + "' style='font-family: monospace !important; font-size: .8em'><pre><code class=\"hljs\">" + code.replace("<", "&lt;").replace(">", "&gt;")
+        return requireModules("<div id='" + getId() + "' style='font-family: monospace !important; font-size: .8em'><pre><code class=\"hljs\">" + code.replace("<", "&lt;").replace(">", "&gt;")
                 .replace("/*", "/*TF").replaceAll("//([^\\n]*)\\n", "/*$1*/\n").replace("\n", "<br/>")
                 + "</code></pre><script>hljs.highlightBlock($(\"#" + getId() + "\").get(0)); $('#" + getId() + " .hljs-comment').contents().each(function(){\n"
                 + "if (this.textContent.includes('/*TF')) {\n"
@@ -86,7 +94,7 @@ public class CodeSnippet extends TextComponent {
                 + "} else {\n"
                 + "this.textContent = this.textContent.replace('/*','//').replace('*/', '');\n"
                 + "}\n"
-                + "});</script></div>";
+                + "});</script></div>");
     }
 
 }
@@ -216,12 +216,20 @@ public class Quill extends TextArea {
         return background;
     }
 
+    /**
+     * @return "quill", which this component needs
+     */
+    @Override
+    public String[] getModules() {
+        return new String[]{"quill"};
+    }
+
     /**
      * @return the HTML used to represent this Component
      */
     @Override
     public String toHtml() {
-        return "<div id='" + getId() + "' style='overflow: auto; height: " + height + "; width: " + width + "'>"
+        return requireModules("<div id='" + getId() + "' style='overflow: auto; height: " + height + "; width: " + width + "'>"
                 + "<div style='height: 100%; width: 100%; background-color: " + WTools.toHex(background) + "; display:flex; flex-flow: column'>\n"
                 + "  <div id='toolbar" + getId() + "' style='flex: 0 1 auto; padding: 3px'>\n"
                 + "    <span class='ql-formats'><select class='ql-font'></select><select class='ql-size'></select></span>\n"
@@ -244,7 +252,7 @@ public class Quill extends TextArea {
                 + (editable ? "" : "$('#toolbar" + getId() + "').hide(); quill" + getId() + ".enable(false);")
                 + "</script>\n"
                 + "</div>"
-                + "</div>";
+                + "</div>");
     }
 
 }
@@ -34,6 +34,7 @@ package gov.mil.navy.nswcdd.wachos.desktop;
 
 import gov.mil.navy.nswcdd.wachos.desktop.responder.HtmlResponder;
 import gov.mil.navy.nswcdd.wachos.components.layout.Layout;
+import gov.mil.navy.nswcdd.wachos.tools.AssetBundles;
 import gov.mil.navy.nswcdd.wachos.tools.WSession;
 import gov.mil.navy.nswcdd.wachos.tools.WTools;
 import jakarta.servlet.ServletContext;
@@ -110,8 +111,10 @@ public class DesktopBuilder {
         StringBuilder sb = new StringBuilder();
         WTools.createToolTipsScript(layout, sb);
         layout.exec("$('#tooltipInit" + layout.getId() + "').remove();", 5000); //in five seconds, remove the tooltipInit script from the dom because it'll have been run already; this is for tidying
-        String htmlContent = (layout.toHtml() + "<script id='tooltipInit" + layout.getId() + "'>" + sb.toString() + "</script>").replace("#LAYOUT_ID#", layout.getId());
+        String layoutHtml = layout.toHtml();
+        String htmlContent = (AssetBundles.getModuleTags(layoutHtml) + layoutHtml + "<script id='tooltipInit" + layout.getId() + "'>" + sb.toString() + "</script>").replace("#LAYOUT_ID#", layout.getId());
         server.add(new HtmlResponder("wachos" + layout.getId(), HTML.replace("SESSIONHASHCODE", session.hashCode() + "").replace("WACHOS_THEME", session.theme)
+                .replace("WACHOS_STYLE_BUNDLE", AssetBundles.getStyleUrl()).replace("WACHOS_SCRIPT_BUNDLE", AssetBundles.getScriptUrl())
                 .replace("WACHOS_FONTSIZE", session.fontSize).replace("WACHOS_FONT", session.fontFamily).replace("#REPLACE_WITH_COMPONENT", htmlContent).replace("#JCEF_CALLBACK",
                 "<script>var changed" + layout.getId() + "=function(o){ console.log('#WAJAX#' + o.id + '#WACHOSBREAK#' + o.value); };</script>")));
         return layout;
@@ -195,34 +198,9 @@ public class DesktopBuilder {
             + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head id=\"j_idt2:j_idt3\">\n"
             + "<meta http-equiv=\"content-type\" content=\"text/html; charset=UTF-8\">\n"
             + "            <link type=\"text/css\" rel=\"stylesheet\" href=\"themes/WACHOS_THEME.css\" id=\"qtheme\">\n"
-            + "            <script type=\"text/javascript\" src=\"wjs/jquery.js\"></script>\n"
-            + "            <script type=\"text/javascript\" src=\"wjs/jquery-plugins.js\"></script>\n"
-            + "            <script type=\"text/javascript\" src=\"wjs/core.js\"></script>\n"
-            + "            <link type=\"text/css\" rel=\"stylesheet\" href=\"wjs/components.css\">\n"
-            + "            <script type=\"text/javascript\" src=\"wjs/components.js\"></script>\n"
-            + "            <script type=\"text/javascript\">if (window.PrimeFaces){PrimeFaces.settings.locale = 'en_US'; PrimeFaces.settings.projectStage = 'Development'; }</script>\n"
-            + "            <script src=\"wjs/jquery.min.js\"></script>\n"
-            + "            <script>var $jq = jQuery.noConflict();</script>\n"
-            + "            <script src=\"wjs/jquery-ui.min.js\"></script>\n"
-            + "            <script src=\"wjs/jquery.mousewheel.min.js\"></script>\n"
-            + "            <script src=\"wjs/jquery.ui.scrolltabs.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" type=\"text/css\" href=\"wjs/jquery.qtip.min.css\">\n"
-            + "            <script src=\"wjs/jquery.qtip.min.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" type=\"text/css\" href=\"wjs/jquery.contextMenu.css\">\n"
-            + "            <script src=\"wjs/jquery.contextMenu.min.js\"></script>\n"
-            + "            <script src=\"wjs/chart.min.js\"></script>\n"
-            + "            <script src=\"wjs/svg-pan-zoom-container.js\"></script><style>[data-zoom-on-wheel]{overflow:scroll}[data-zoom-on-wheel]>:first-child{width:100%;height:100%;vertical-align:middle;transform-origin:0 0}</style>\n"
-            + "            <script src=\"wjs/jstree.min.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" type=\"text/css\" href=\"wjs/jstree.min.css\">\n"
-            + "            <script src=\"wjs/Sortable.min.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" type=\"text/css\" href=\"wjs/highlight.min.css\">\n"
-            + "            <script src=\"wjs/highlight.min.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" href=\"wjs/katex.min.css\">\n"
-            + "            <script src=\"wjs/katex.min.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" href=\"wjs/quill.snow.css\">\n"
-            + "            <script src=\"wjs/quill.min.js\"></script>\n"
-            + "            <link rel=\"stylesheet\" type=\"text/css\" href=\"wjs/slickgrid.min.css\">\n"
-            + "            <script src=\"wjs/slickgrid.min.js\"></script>\n"
+            + "            <link type=\"text/css\" rel=\"stylesheet\" href=\"WACHOS_STYLE_BUNDLE\">\n"
+            + "            <script type=\"text/javascript\" src=\"WACHOS_SCRIPT_BUNDLE\"></script>\n" //jquery, jquery-ui, qtip, etc. and the module loader; see AssetBundles
+            + "            <style>[data-zoom-on-wheel]{overflow:scroll}[data-zoom-on-wheel]>:first-child{width:100%;height:100%;vertical-align:middle;transform-origin:0 0}</style>\n"
             + "\n"
             + "            <style type=\"text/css\">\n"
             + "                .wfontsize { font-size: WACHOS_FONTSIZEpx }\n"
@@ -276,12 +254,6 @@ public class DesktopBuilder {
             + "                //\n"
             + "                const tfSortableTreeNodes = [];\n"
             + "\n"
-            + "                //set Chart defaults\n"
-            + "                Chart.defaults.animation = false;\n"
-            + "                Chart.defaults.plugins.legend.display = false;\n"
-            + "                Chart.defaults.backgroundColor = 'white';\n"
-            + "                Chart.defaults.maintainAspectRatio = false;\n"
-            + "\n"
             + "                //keep track of where the mouse is\n"
             + "                var tfMouseEvent;\n"
             + "                $(document).mousemove(function (e) {\n"
@@ -32,14 +32,21 @@
  */
 package gov.mil.navy.nswcdd.wachos.desktop;
 
+import gov.mil.navy.nswcdd.wachos.desktop.responder.DownloadResponder;
 import gov.mil.navy.nswcdd.wachos.desktop.responder.FileResponder;
 import static gov.mil.navy.nswcdd.wachos.desktop.responder.FileResponder.getResponse;
+import gov.mil.navy.nswcdd.wachos.desktop.responder.ResourceCache;
+import gov.mil.navy.nswcdd.wachos.desktop.responder.ResourceResponder;
 import gov.mil.navy.nswcdd.wachos.desktop.responder.Responder;
+import gov.mil.navy.nswcdd.wachos.tools.AssetBundles;
+import gov.mil.navy.nswcdd.wachos.tools.ByteRanges;
+import gov.mil.navy.nswcdd.wachos.tools.HttpCache;
+import gov.mil.navy.nswcdd.wachos.tools.JarFiles;
 import gov.mil.navy.nswcdd.wachos.tools.ResourceServlet;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -48,7 +55,6 @@ import nanohttpd.HTTPSession;
 import nanohttpd.NanoHTTPD;
 import nanohttpd.Method;
 import nanohttpd.Response;
-import static nanohttpd.Response.newChunkedResponse;
 import static nanohttpd.Response.newFixedLengthResponse;
 import nanohttpd.Status;
 
@@ -72,15 +78,15 @@ public class NanoServer extends NanoHTTPD {
             @Override
             public Response getResponse(String uri, Map<String, List<String>> params) {
                 String normalizedUri = uri.replaceFirst("/" + getPageId() + "/", ""); //remove page id
-                for (String resourceDir : ResourceServlet.getResourceFolders()) {
-                    File file = new File(resourceDir, normalizedUri); //construct full path to file
-                    if (file.exists()) {
-                        return getResponse(file);
-                    }
+                File file = normalizedUri.isEmpty() || normalizedUri.equals("/") ? null : ResourceServlet.getFile(normalizedUri); //cached, and kept inside the resource folders
+                if (file != null) {
+                    return getResponse(file);
                 }
                 return newFixedLengthResponse(Status.NOT_FOUND, NanoHTTPD.MIME_PLAINTEXT, "404 Not Found"); //File not found or is a directory
             }
         });
+        NanoServer.this.add(new DownloadResponder());
+        ResourceCache.prewarm(ResourceCache.MANIFEST);
     }
 
     /**
@@ -98,6 +104,15 @@ public class NanoServer extends NanoHTTPD {
         return 8080; // No available port found, see if 8080 is available
     }
 
+    /**
+     * Stops the server, and closes the jars that were opened for it
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        JarFiles.clear();
+    }
+
     /**
      * Adds a Responder so that NanoServer can know how to respond when queried
      *
@@ -120,24 +135,186 @@ public class NanoServer extends NanoHTTPD {
     public Response serve(HTTPSession session) {
         Method method = session.getMethod();
         String uri = session.getUri();
+        if (uri.startsWith("/" + AssetBundles.PATH)) {
+            return getBundleResponse(uri.substring(AssetBundles.PATH.length() + 1), session);
+        }
         for (Responder responder : responders) {
             String id = responder.getPageId();
             if ((Method.GET.equals(method) || Method.HEAD.equals(method)) && (uri.startsWith("/" + id + ""))) {
-                Response response = responder.getResponse(session.getUri(), session.getParameters());
+                if (responder instanceof ResourceResponder) {
+                    ResourceCache.Entry entry = ((ResourceResponder) responder).getEntry(uri);
+                    if (entry != null) {
+                        return getEntryResponse(entry, session);
+                    }
+                    continue;
+                }
+                Response response = responder.getResponse(session.getUri(), session.getParameters(), session.getHeaders());
                 if (response != null) {
-                    return response;
+                    return checkRange(checkModified(response, session), session);
                 }
             }
         }
 
         //could be a META-INF resource
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream("META-INF/resources" + uri);
-        if (inputStream != null) {
-            return newChunkedResponse(Status.OK, NanoHTTPD.getMimeTypeForFile(uri), inputStream);
+        ResourceCache.Entry entry = ResourceCache.get("META-INF/resources" + uri);
+        if (entry != null) {
+            return getEntryResponse(entry, session);
         }
 
         System.err.println("Cannot find " + uri);
         return Response.newFixedLengthResponse(Status.NOT_FOUND, "text/plain", "404 Not Found"); //not serving this page :(
     }
 
+    /**
+     * Provides one of the AssetBundles, gzipped if the browser accepts it
+     *
+     * @param name the file name of the bundle
+     * @param session the request
+     * @return the bundle, "304 Not Modified", or "404 Not Found"
+     */
+    private static Response getBundleResponse(String name, HTTPSession session) {
+        AssetBundles.Bundle bundle = AssetBundles.get(name);
+        if (bundle == null) {
+            return Response.newFixedLengthResponse(Status.NOT_FOUND, "text/plain", "404 Not Found");
+        }
+        return getCachedResponse(bundle.mimeType, bundle.content, bundle.gzipped, bundle.etag, HttpCache.IMMUTABLE, session);
+    }
+
+    /**
+     * Provides a classpath resource from the ResourceCache; one that is too
+     * large to keep in memory is streamed from the classpath
+     *
+     * @param entry the resource
+     * @param session the request
+     * @return the resource, "304 Not Modified", or "404 Not Found"
+     */
+    private static Response getEntryResponse(ResourceCache.Entry entry, HTTPSession session) {
+        if (entry.content != null) {
+            return getCachedResponse(entry.mimeType, entry.content, entry.gzipped, entry.etag, HttpCache.getBundledCacheControl(), session);
+        }
+        Response response;
+        try {
+            response = entry.length < 0 ? Response.newChunkedResponse(Status.OK, entry.mimeType, entry.open())
+                    : newFixedLengthResponse(Status.OK, entry.mimeType, entry.open(), entry.length);
+        } catch (IOException e) {
+            return Response.newFixedLengthResponse(Status.NOT_FOUND, "text/plain", "404 Not Found");
+        }
+        response.addHeader("ETag", entry.etag);
+        response.addHeader("Cache-Control", HttpCache.getBundledCacheControl());
+        return checkModified(response, session);
+    }
+
+    /**
+     * Provides content that is held in memory as a fixed-length response,
+     * using the gzipped copy if there is one and the browser accepts it
+     *
+     * @param mimeType the MIME type of the content
+     * @param content the content
+     * @param gzipped the gzipped content, or null if it isn't worth compressing
+     * @param etag the entity tag of the content
+     * @param cacheControl the Cache-Control header value
+     * @param session the request
+     * @return the content, or "304 Not Modified"
+     */
+    private static Response getCachedResponse(String mimeType, byte[] content, byte[] gzipped, String etag, String cacheControl, HTTPSession session) {
+        boolean gzip = gzipped != null && HttpCache.acceptsGzip(session.getHeaders().get("accept-encoding"));
+        Response response = newFixedLengthResponse(Status.OK, mimeType, gzip ? gzipped : content);
+        response.setUseGzip(false); //it's already compressed, or isn't worth compressing, or the browser doesn't want it compressed
+        if (gzip) {
+            response.addHeader("Content-Encoding", "gzip");
+        }
+        response.addHeader("ETag", etag);
+        response.addHeader("Cache-Control", cacheControl);
+        if (gzipped != null) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        return checkModified(response, session);
+    }
+
+    /**
+     * Replaces a file response with "206 Partial Content" if the browser asked
+     * for a Range (and, with If-Range, its copy is still good), or "416 Range
+     * Not Satisfiable" if none of the range is in the file. Several ranges are
+     * sent as multipart/byteranges.
+     *
+     * @param response the full response
+     * @param session the request
+     * @return the full response, or a response with part of it
+     */
+    private static Response checkRange(Response response, HTTPSession session) {
+        FileChannel file = response.getFile();
+        if (file == null || response.getStatus() != Status.OK) {
+            return response;
+        }
+        Map<String, String> headers = session.getHeaders();
+        long length;
+        try {
+            length = file.size();
+        } catch (IOException e) {
+            return response;
+        }
+        long[][] ranges = ByteRanges.parse(headers.get("range"), length);
+        String lastModified = response.getHeader("Last-Modified");
+        if (ranges == null || !ByteRanges.isIfRangeValid(headers.get("if-range"), response.getHeader("ETag"), lastModified == null ? 0 : HttpCache.parseDate(lastModified))) {
+            return response;
+        }
+        Response partial;
+        if (ranges.length == 0) {
+            try {
+                response.close(); //don't leave the file open
+            } catch (IOException e) {
+            }
+            partial = Response.newFixedLengthResponse(Status.RANGE_NOT_SATISFIABLE, NanoHTTPD.MIME_PLAINTEXT, "");
+            partial.setUseGzip(false);
+            partial.addHeader("Content-Range", ByteRanges.getUnsatisfiedRange(length));
+        } else if (ranges.length == 1) {
+            partial = Response.newFileResponse(Status.PARTIAL_CONTENT, response.getMimeType(), file, ranges, new byte[2][0]);
+            partial.addHeader("Content-Range", ByteRanges.getContentRange(ranges[0][0], ranges[0][1], length));
+        } else {
+            String boundary = ByteRanges.newBoundary();
+            partial = Response.newFileResponse(Status.PARTIAL_CONTENT, "multipart/byteranges; boundary=" + boundary, file, ranges,
+                    ByteRanges.getSeparators(ranges, boundary, response.getMimeType(), length));
+        }
+        for (String header : new String[]{"ETag", "Last-Modified", "Cache-Control", "Accept-Ranges"}) {
+            if (response.getHeader(header) != null) {
+                partial.addHeader(header, response.getHeader(header));
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * Replaces a response with "304 Not Modified" if the browser's copy is
+     * still good, according to the response's ETag or Last-Modified
+     *
+     * @param response the full response
+     * @param session the request
+     * @return the full response, or a 304 response with the same validators
+     */
+    private static Response checkModified(Response response, HTTPSession session) {
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        if (response.getStatus() != Status.OK || (etag == null && lastModified == null)) {
+            return response;
+        }
+        Map<String, String> headers = session.getHeaders();
+        if (!HttpCache.isNotModified(etag, lastModified == null ? 0 : HttpCache.parseDate(lastModified), headers.get("if-none-match"), headers.get("if-modified-since"))) {
+            return response;
+        }
+        try {
+            response.close(); //don't leave the file open
+        } catch (IOException e) {
+        }
+        //no Content-Type and no gzip, so the 304 goes out with an empty body
+        //and "Content-Length: 0" instead of a chunked, gzipped one
+        Response notModified = Response.newFixedLengthResponse(Status.NOT_MODIFIED, null, "");
+        notModified.setUseGzip(false);
+        for (String header : new String[]{"ETag", "Last-Modified", "Cache-Control", "Vary"}) {
+            if (response.getHeader(header) != null) {
+                notModified.addHeader(header, response.getHeader(header));
+            }
+        }
+        return notModified;
+    }
+
 }
@@ -0,0 +1,105 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.desktop.responder;
+
+import gov.mil.navy.nswcdd.wachos.tools.DownloadServlet;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.Map;
+import nanohttpd.NanoHTTPD;
+import nanohttpd.Response;
+import static nanohttpd.Response.newChunkedResponse;
+import static nanohttpd.Response.newFixedLengthResponse;
+import nanohttpd.Status;
+
+/**
+ * DownloadResponder streams a download that was registered with
+ * DownloadServlet; this is the desktop equivalent of DownloadServlet
+ */
+public class DownloadResponder implements Responder {
+
+    /**
+     * Constructor
+     */
+    public DownloadResponder() {
+    }
+
+    /**
+     * @return the expected start of the URI
+     */
+    @Override
+    public String getPageId() {
+        return DownloadServlet.PATH;
+    }
+
+    /**
+     * Streams the download for the token in the URI; the content is written
+     * on its own thread and piped into a chunked response
+     *
+     * @param uri the URI of the request
+     * @param params any parameters that are a part of the request
+     * @return a response to the given URI and parameters
+     */
+    @Override
+    public Response getResponse(String uri, Map<String, List<String>> params) {
+        DownloadServlet.Download download = DownloadServlet.take(uri.replaceFirst("/" + getPageId() + "/", ""), null);
+        if (download == null) {
+            return newFixedLengthResponse(Status.NOT_FOUND, NanoHTTPD.MIME_PLAINTEXT, "404 Not Found");
+        }
+        try {
+            PipedInputStream in = new PipedInputStream(64 * 1024);
+            PipedOutputStream pipe = new PipedOutputStream(in);
+            new Thread() {
+                @Override
+                public void run() {
+                    try (OutputStream out = pipe) {
+                        download.writer.write(out);
+                    } catch (IOException e) {
+                        //the browser stopped reading, so there's nobody to tell
+                    }
+                }
+            }.start();
+            Response response = newChunkedResponse(Status.OK, download.contentType, in);
+            response.addHeader("Content-Disposition", download.getContentDisposition());
+            response.addHeader("Cache-Control", "no-store");
+            response.setUseGzip(download.gzip);
+            return response;
+        } catch (IOException e) {
+            return newFixedLengthResponse(Status.INTERNAL_ERROR, NanoHTTPD.MIME_PLAINTEXT, "Internal Server Error: " + e.getMessage());
+        }
+    }
+
+}
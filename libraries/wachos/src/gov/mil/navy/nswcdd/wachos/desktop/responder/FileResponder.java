@@ -32,9 +32,11 @@
  */
 package gov.mil.navy.nswcdd.wachos.desktop.responder;
 
+import gov.mil.navy.nswcdd.wachos.tools.HttpCache;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 import nanohttpd.NanoHTTPD;
@@ -96,12 +98,29 @@ public class FileResponder implements Responder {
      * @return a file response
      */
     public static Response getResponse(File file) {
+        return getResponse(file, HttpCache.getFileCacheControl());
+    }
+
+    /**
+     * Provides a file response to the server request, with an ETag and
+     * Last-Modified so that the NanoServer can answer "304 Not Modified". The
+     * file is sent with transferTo, and the NanoServer can send just part of
+     * it if the browser asks for a Range.
+     *
+     * @param file the file to respond with
+     * @param cacheControl the Cache-Control header to send
+     * @return a file response
+     */
+    public static Response getResponse(File file, String cacheControl) {
         //Check if the file exists and is not a directory
-        if (file.exists() && !file.isDirectory()) {
+        if (file != null && file.exists() && !file.isDirectory()) {
             try {
                 // Open the file
-                FileInputStream fis = new FileInputStream(file);
-                Response response = newFixedLengthResponse(Status.OK, NanoHTTPD.getMimeTypeForFile(file.getName()), fis, file.length());
+                Response response = Response.newFileResponse(Status.OK, NanoHTTPD.getMimeTypeForFile(file.getName()), FileChannel.open(file.toPath(), StandardOpenOption.READ));
+                response.addHeader("ETag", HttpCache.getETag(file));
+                response.addHeader("Last-Modified", HttpCache.formatDate(file.lastModified()));
+                response.addHeader("Cache-Control", cacheControl);
+                response.addHeader("Accept-Ranges", "bytes");
                 return response;
             } catch (IOException e) {
                 e.printStackTrace();
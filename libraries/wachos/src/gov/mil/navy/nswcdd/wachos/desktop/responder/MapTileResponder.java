@@ -32,6 +32,7 @@
  */
 package gov.mil.navy.nswcdd.wachos.desktop.responder;
 
+import gov.mil.navy.nswcdd.wachos.tools.HttpCache;
 import gov.mil.navy.nswcdd.wachos.tools.MapTileServlet;
 import java.util.List;
 import java.util.Map;
@@ -65,7 +66,7 @@ public class MapTileResponder implements Responder {
      */
     @Override
     public Response getResponse(String uri, Map<String, List<String>> params) {
-        return FileResponder.getResponse(MapTileServlet.getFile(uri.replaceFirst("/" + getPageId() + "/", "")));
+        return FileResponder.getResponse(MapTileServlet.getFile(uri.replaceFirst("/" + getPageId() + "/", "")), HttpCache.getMapTileCacheControl());
     }
 
 }
@@ -0,0 +1,342 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.desktop.responder;
+
+import gov.mil.navy.nswcdd.wachos.tools.HttpCache;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import nanohttpd.NanoHTTPD;
+
+/**
+ * ResourceCache keeps classpath resources (the files under META-INF/resources,
+ * and those of a ResourceResponder) in memory once they've been served, so
+ * that the next request doesn't have to find them in a jar and inflate them
+ * again. Text is also kept gzipped. The cache is bounded by the total number
+ * of bytes it holds and drops the least recently used resources first.
+ * Resources too large for a quarter of the cache are never read whole; they
+ * are streamed from the classpath on each request. Up to MAX_MISSING resources
+ * that don't exist are remembered too.
+ */
+public final class ResourceCache {
+
+    /**
+     * the resource that lists the assets to load when the NanoServer starts,
+     * one classpath path per line
+     */
+    public static final String MANIFEST = "META-INF/resources/wjs/prewarm.txt";
+    /**
+     * the most paths of resources that don't exist to remember
+     */
+    private static final int MAX_MISSING = 1000;
+    /**
+     * text smaller than this isn't worth compressing
+     */
+    private static final int MIN_GZIP_LENGTH = 1024;
+    /**
+     * the most bytes the cache holds, 32 MB by default
+     */
+    private static long maxBytes = 32L * 1024 * 1024;
+    /**
+     * the bytes the cache currently holds
+     */
+    private static long bytes = 0;
+    /**
+     * the cached resources, least recently used first
+     */
+    private static final Map<String, Entry> CACHE = new LinkedHashMap<>(128, 0.75f, true);
+    /**
+     * the paths of resources that don't exist, least recently requested first;
+     * guarded by CACHE
+     */
+    private static final Map<String, Boolean> MISSING = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_MISSING;
+        }
+    };
+
+    /**
+     * Only static methods are available
+     */
+    private ResourceCache() {
+    }
+
+    /**
+     * A classpath resource, ready to serve
+     */
+    public static final class Entry {
+
+        /**
+         * the path within the classpath
+         */
+        public final String path;
+        /**
+         * the MIME type, from the file extension
+         */
+        public final String mimeType;
+        /**
+         * the bytes of the resource, or null if it's too large to keep and is
+         * streamed instead; don't modify them
+         */
+        public final byte[] content;
+        /**
+         * the gzipped bytes, or null if the resource isn't compressible text
+         */
+        public final byte[] gzipped;
+        /**
+         * a strong entity tag computed from the bytes, or a weak one from the
+         * size and modification time of a streamed resource
+         */
+        public final String etag;
+        /**
+         * the number of bytes of the resource, or -1 if it's streamed and its
+         * size isn't known
+         */
+        public final long length;
+        /**
+         * where a streamed resource is read from
+         */
+        private final URL url;
+
+        /**
+         * Constructor
+         *
+         * @param path the path within the classpath
+         * @param mimeType the MIME type
+         * @param content the bytes of the resource, or null to stream it
+         * @param gzipped the gzipped bytes, or null
+         * @param etag the entity tag
+         * @param length the number of bytes, or -1 if unknown
+         * @param url where to stream the resource from
+         */
+        private Entry(String path, String mimeType, byte[] content, byte[] gzipped, String etag, long length, URL url) {
+            this.path = path;
+            this.mimeType = mimeType;
+            this.content = content;
+            this.gzipped = gzipped;
+            this.etag = etag;
+            this.length = length;
+            this.url = url;
+        }
+
+        /**
+         * Opens the resource; a streamed resource is read from the classpath
+         * again
+         *
+         * @return the bytes of the resource, uncompressed
+         * @throws IOException if a streamed resource can't be read
+         */
+        public InputStream open() throws IOException {
+            return content != null ? new ByteArrayInputStream(content) : url.openStream();
+        }
+
+        /**
+         * @return the number of bytes this entry counts against the cache
+         */
+        private long size() {
+            return (content == null ? 0 : content.length) + (gzipped == null ? 0 : gzipped.length) + path.length() * 2L + 64;
+        }
+    }
+
+    /**
+     * Gets a classpath resource, reading it only if it isn't in the cache.
+     * Resources too large for a quarter of the cache aren't read here; their
+     * entry has no content and is opened for each request.
+     *
+     * @param path the path within the classpath, such as
+     * META-INF/resources/wjs/FileSaver.min.js
+     * @return the resource, or null if there is no such resource
+     */
+    public static Entry get(String path) {
+        Entry entry;
+        long limit;
+        synchronized (CACHE) {
+            if (MISSING.get(path) != null) {
+                return null;
+            }
+            entry = CACHE.get(path);
+            limit = maxBytes / 4;
+        }
+        if (entry == null) {
+            entry = load(path, limit);
+            synchronized (CACHE) {
+                Entry previous = CACHE.get(path);
+                if (entry == null) {
+                    MISSING.put(path, Boolean.TRUE);
+                } else if (previous != null) {
+                    entry = previous; //another thread beat us to it
+                } else {
+                    CACHE.put(path, entry);
+                    bytes += entry.size();
+                    trim();
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the resources listed in a manifest into the cache, on a background
+     * thread; blank lines and lines starting with # are skipped
+     *
+     * @param manifest the path of the manifest within the classpath
+     */
+    public static void prewarm(String manifest) {
+        List<String> paths = new ArrayList<>();
+        try (InputStream is = ResourceCache.class.getClassLoader().getResourceAsStream(manifest)) {
+            if (is == null) {
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+                    paths.add(line.trim());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (String path : paths) {
+                    get(path);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sets the most bytes the cache holds, dropping resources if it's now over
+     *
+     * @param maxBytes the most bytes, 32 MB by default
+     */
+    public static void setMaxBytes(long maxBytes) {
+        synchronized (CACHE) {
+            ResourceCache.maxBytes = maxBytes;
+            trim();
+        }
+    }
+
+    /**
+     * @return the most bytes the cache holds
+     */
+    public static long getMaxBytes() {
+        synchronized (CACHE) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Empties the cache
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            MISSING.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Drops the least recently used resources until the cache fits; the caller
+     * holds the lock
+     */
+    private static void trim() {
+        Iterator<Entry> iterator = CACHE.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Reads a resource from the classpath; no more than limit + 1 bytes are
+     * read, so a larger resource gets an entry that streams it instead
+     *
+     * @param path the path within the classpath
+     * @param limit the most bytes to keep in memory
+     * @return the resource, or null if there is no such resource
+     */
+    private static Entry load(String path, long limit) {
+        URL url = ResourceCache.class.getClassLoader().getResource(path);
+        if (url == null) {
+            return null;
+        }
+        String mimeType = NanoHTTPD.getMimeTypeForFile(path);
+        byte[] content;
+        try {
+            URLConnection connection = url.openConnection();
+            long length = connection.getContentLengthLong();
+            try (InputStream is = connection.getInputStream()) {
+                content = length > limit ? null : is.readNBytes((int) Math.min(limit + 1, Integer.MAX_VALUE - 8));
+            }
+            if (content == null || content.length > limit) {
+                return new Entry(path, mimeType, null, null, HttpCache.getETag(length, connection.getLastModified()), length, url);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        byte[] gzipped = null;
+        if (content.length >= MIN_GZIP_LENGTH && isText(mimeType)) {
+            gzipped = HttpCache.gzip(content);
+            if (gzipped.length >= content.length) {
+                gzipped = null; //not worth it
+            }
+        }
+        return new Entry(path, mimeType, content, gzipped, HttpCache.getETag(content), content.length, url);
+    }
+
+    /**
+     * @param mimeType a MIME type
+     * @return true if the type is text that compresses well
+     */
+    private static boolean isText(String mimeType) {
+        return mimeType.startsWith("text/") || mimeType.contains("javascript") || mimeType.contains("json") || mimeType.contains("xml");
+    }
+
+}
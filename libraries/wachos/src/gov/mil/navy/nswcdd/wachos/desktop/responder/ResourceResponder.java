@@ -32,12 +32,13 @@
  */
 package gov.mil.navy.nswcdd.wachos.desktop.responder;
 
-import java.io.InputStream;
+import gov.mil.navy.nswcdd.wachos.tools.HttpCache;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import nanohttpd.NanoHTTPD;
 import nanohttpd.Response;
 import static nanohttpd.Response.newChunkedResponse;
+import static nanohttpd.Response.newFixedLengthResponse;
 import nanohttpd.Status;
 
 /**
@@ -82,9 +83,31 @@ public class ResourceResponder implements Responder {
      */
     @Override
     public Response getResponse(String uri, Map<String, List<String>> params) {
-        String normalizedUri = uri.replaceFirst("/" + getPageId() + "/", resourcePath + "/");
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(normalizedUri);
-        return newChunkedResponse(Status.OK, NanoHTTPD.getMimeTypeForFile(normalizedUri), inputStream);
+        ResourceCache.Entry entry = getEntry(uri);
+        if (entry == null) {
+            return null; //let the NanoServer keep looking
+        }
+        Response response;
+        try {
+            response = entry.length < 0 ? newChunkedResponse(Status.OK, entry.mimeType, entry.open())
+                    : newFixedLengthResponse(Status.OK, entry.mimeType, entry.open(), entry.length);
+        } catch (IOException e) {
+            return null;
+        }
+        response.addHeader("ETag", entry.etag);
+        response.addHeader("Cache-Control", HttpCache.getBundledCacheControl());
+        return response;
+    }
+
+    /**
+     * Gets the resource for a request from the ResourceCache, which the
+     * NanoServer uses to send it gzipped when it can
+     *
+     * @param uri the URI of the request
+     * @return the resource, or null if there is no such resource
+     */
+    public ResourceCache.Entry getEntry(String uri) {
+        return ResourceCache.get(uri.replaceFirst("/" + getPageId() + "/", resourcePath + "/"));
     }
 
 }
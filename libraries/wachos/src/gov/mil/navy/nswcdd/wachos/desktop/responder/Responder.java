@@ -55,6 +55,20 @@ public interface Responder {
      */
     public Response getResponse(String uri, Map<String, List<String>> params);
 
+    /**
+     * Provides a response to the server request, for responders that need the
+     * request headers (such as Range); calls getResponse(uri, params) by
+     * default
+     *
+     * @param uri the URI of the request
+     * @param params any parameters that are a part of the request
+     * @param headers the request headers, with lowercase names
+     * @return a response to the given URI, parameters and headers
+     */
+    public default Response getResponse(String uri, Map<String, List<String>> params, Map<String, String> headers) {
+        return getResponse(uri, params);
+    }
+
     /**
      * Gets a value that matches the provided parameter ID
      *
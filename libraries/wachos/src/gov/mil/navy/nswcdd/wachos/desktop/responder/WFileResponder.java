@@ -32,23 +32,21 @@
  */
 package gov.mil.navy.nswcdd.wachos.desktop.responder;
 
+import gov.mil.navy.nswcdd.wachos.tools.ByteRanges;
+import gov.mil.navy.nswcdd.wachos.tools.HttpCache;
+import gov.mil.navy.nswcdd.wachos.tools.JarFiles;
+import gov.mil.navy.nswcdd.wachos.tools.MarkerImages;
 import gov.mil.navy.nswcdd.wachos.tools.ResourceServlet;
-import jakarta.servlet.ServletException;
 import gov.mil.navy.nswcdd.wachos.tools.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import javax.imageio.ImageIO;
 import nanohttpd.NanoHTTPD;
 import nanohttpd.Response;
+import static nanohttpd.Response.newChunkedResponse;
 import static nanohttpd.Response.newFixedLengthResponse;
 import nanohttpd.Status;
 
@@ -58,18 +56,6 @@ import nanohttpd.Status;
  */
 public final class WFileResponder implements Responder {
 
-    /**
-     * send this if the file is not valid, or the color is 0,0,0,0
-     */
-    private static final BufferedImage BLANK_IMAGE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-
-    /**
-     * sets the blank image's only pixel to be transparent
-     */
-    static {
-        BLANK_IMAGE.setRGB(0, 0, (0xFF));
-    }
-
     /**
      * Constructor
      */
@@ -92,18 +78,27 @@ public final class WFileResponder implements Responder {
      * @return a file response to the given URI and parameters
      */
     @Override
-    @SuppressWarnings("UseSpecificCatch")
     public Response getResponse(String uri, Map<String, List<String>> params) {
+        return getResponse(uri, params, Collections.emptyMap());
+    }
+
+    /**
+     * Provides a file resource response to the server request; entries in jars
+     * can be sent in part if the request has a Range
+     *
+     * @param uri the URI of the request
+     * @param params any parameters that are a part of the request
+     * @param headers the request headers, with lowercase names
+     * @return a file response to the given URI and parameters
+     */
+    @Override
+    @SuppressWarnings("UseSpecificCatch")
+    public Response getResponse(String uri, Map<String, List<String>> params, Map<String, String> headers) {
         try {
-            return getFileResponse(params);
+            return getFileResponse(params, headers);
         } catch (Exception e) {
             System.err.println("Failure: " + params.toString().replaceAll("\n", ""));
-            try {
-                InputStream is = toInputStream(BLANK_IMAGE);
-                return newFixedLengthResponse(Status.OK, "", is, (long) is.available());
-            } catch (Exception e2) {
-                return null;
-            }
+            return getMarkerResponse(MarkerImages.BLANK, "no-cache");
         }
     }
 
@@ -111,15 +106,12 @@ public final class WFileResponder implements Responder {
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
      * methods.
      *
-     * @param request servlet request
-     * @param response servlet response
-     * @throws ServletException if a servlet-specific error occurs
+     * @param params any parameters that are a part of the request
+     * @param headers the request headers, with lowercase names
+     * @return a file response to the given parameters
      * @throws IOException if an I/O error occurs
      */
-    private Response getFileResponse(Map<String, List<String>> params) throws IOException {
-        String mimeType = "image/png";
-        InputStream is;
-
+    private Response getFileResponse(Map<String, List<String>> params, Map<String, String> headers) throws IOException {
         String fileStr = getParameter(params, "file");
         File file = fileStr == null ? null : getFile(fileStr);
         if (file != null && (file.isDirectory() || !file.exists())) {
@@ -127,38 +119,73 @@ public final class WFileResponder implements Responder {
         }
         String color = getParameter(params, "color");
         if (fileStr != null && fileStr.startsWith("jar:file:")) { //it's a file in a jar
-            ZipFile jarFile = new ZipFile(fileStr.substring(9, fileStr.indexOf("!")));
-            ZipEntry jarEntry = jarFile.getEntry(fileStr.substring(fileStr.indexOf("!") + 2));
-            is = jarFile.getInputStream(jarEntry);
-            mimeType = NanoHTTPD.getMimeTypeForFile(jarEntry.getName());
+            JarFiles.Entry entry = JarFiles.get(fileStr);
+            return entry == null ? getMarkerResponse(MarkerImages.BLANK, "no-cache") : getJarResponse(entry, headers); //the entry may exist the next time it's asked for
         } else if (file != null && !file.isDirectory()) { //regular file, not a directory
             return FileResponder.getResponse(file);
-        } else if (color != null && !color.equals("0,0,0,0")) {
-            BufferedImage img;
-            String[] rgb = color.split(",");
-            img = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g = img.createGraphics();
-            g.setBackground(new java.awt.Color(0, 0, 0, 0));
-            g.setColor(new java.awt.Color(Integer.parseInt(rgb[0]), Integer.parseInt(rgb[1]), Integer.parseInt(rgb[2]), Integer.parseInt(rgb[3])));
-            g.fillOval(0, 0, 20, 20);
-            is = toInputStream(img);
+        } else { //a marker, or nothing to draw
+            if (fileStr != null) {
+                return getMarkerResponse(MarkerImages.BLANK, "no-cache"); //the file may exist the next time it's asked for
+            }
+            return getMarkerResponse(MarkerImages.get(color, getParameter(params, "shape"), getParameter(params, "size")), HttpCache.IMMUTABLE); //the URL fully describes the marker, so it never changes
+        }
+    }
+
+    /**
+     * Provides an entry in a jar, or the parts of it asked for with a Range
+     * header; the NanoServer answers "304 Not Modified" from its ETag
+     *
+     * @param entry the entry in the jar
+     * @param headers the request headers, with lowercase names
+     * @return the response
+     * @throws IOException if the jar can't be read
+     */
+    private static Response getJarResponse(JarFiles.Entry entry, Map<String, String> headers) throws IOException {
+        String mimeType = NanoHTTPD.getMimeTypeForFile(entry.name);
+        long[][] ranges = null;
+        if (entry.size >= 0 && !HttpCache.isNotModified(entry.etag, entry.lastModified, headers.get("if-none-match"), headers.get("if-modified-since"))
+                && ByteRanges.isIfRangeValid(headers.get("if-range"), entry.etag, entry.lastModified)) {
+            ranges = ByteRanges.parse(headers.get("range"), entry.size);
+        }
+        Response response;
+        if (ranges == null) {
+            InputStream is = entry.open();
+            response = entry.size < 0 ? newChunkedResponse(Status.OK, mimeType, is) : newFixedLengthResponse(Status.OK, mimeType, is, entry.size);
+        } else if (ranges.length == 0) {
+            response = newFixedLengthResponse(Status.RANGE_NOT_SATISFIABLE, NanoHTTPD.MIME_PLAINTEXT, "");
+            response.addHeader("Content-Range", ByteRanges.getUnsatisfiedRange(entry.size));
+        } else if (ranges.length == 1) {
+            byte[][] separators = new byte[2][0];
+            response = newFixedLengthResponse(Status.PARTIAL_CONTENT, mimeType, entry.open(ranges, separators), ByteRanges.getLength(ranges, separators));
+            response.addHeader("Content-Range", ByteRanges.getContentRange(ranges[0][0], ranges[0][1], entry.size));
+            response.setUseGzip(false); //the range is of the uncompressed bytes
         } else {
-            is = toInputStream(BLANK_IMAGE);
+            String boundary = ByteRanges.newBoundary();
+            byte[][] separators = ByteRanges.getSeparators(ranges, boundary, mimeType, entry.size);
+            response = newFixedLengthResponse(Status.PARTIAL_CONTENT, "multipart/byteranges; boundary=" + boundary, entry.open(ranges, separators), ByteRanges.getLength(ranges, separators));
+            response.setUseGzip(false);
         }
-        return newFixedLengthResponse(Status.OK, mimeType, is, (long) is.available());
+        response.addHeader("ETag", entry.etag);
+        response.addHeader("Last-Modified", HttpCache.formatDate(entry.lastModified));
+        response.addHeader("Cache-Control", HttpCache.getFileCacheControl());
+        response.addHeader("Accept-Ranges", "bytes");
+        return response;
     }
 
     /**
-     * Converts a BufferedImage to an InputStream
+     * Provides a cached marker
      *
-     * @param image the image to convert
-     * @return the InputStream
-     * @throws IOException if this process fails
+     * @param marker the marker to send
+     * @param cacheControl the Cache-Control header; IMMUTABLE only for a
+     * marker that the URL fully describes, not for a stand-in for a missing
+     * file
+     * @return the response
      */
-    private InputStream toInputStream(BufferedImage image) throws IOException {
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        ImageIO.write(image, "png", os);
-        return new ByteArrayInputStream(os.toByteArray());
+    private static Response getMarkerResponse(MarkerImages.Marker marker, String cacheControl) {
+        Response response = newFixedLengthResponse(Status.OK, "image/png", marker.png);
+        response.addHeader("ETag", marker.etag);
+        response.addHeader("Cache-Control", cacheControl);
+        return response;
     }
 
     /**
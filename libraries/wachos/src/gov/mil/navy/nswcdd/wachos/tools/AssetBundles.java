@@ -0,0 +1,505 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AssetBundles joins the scripts and stylesheets that every WACHOS page needs
+ * into one script and one stylesheet, so a page loads two files instead of
+ * about 25. Larger libraries that only some components use (Chart.js, jsTree,
+ * highlight.js, KaTeX, Quill, SlickGrid and Three.js) are modules with bundles
+ * of their own, which are loaded with the page only if its first layout uses
+ * them, and otherwise when a component that needs them is first shown (see
+ * Component.getModules).
+ * <p>
+ * Each bundle is built once, the first time it's needed, and kept in memory
+ * along with a gzipped copy. The file names contain a hash of the content, so
+ * browsers can keep them forever: a new version of WACHOS has new names.
+ */
+public final class AssetBundles {
+
+    /**
+     * the path of the bundles, relative to the page
+     */
+    public static final String PATH = "wjs/bundle/";
+    /**
+     * the scripts in the script bundle, in the order the page used to load
+     * them; entries that don't end in .js are inline scripts
+     */
+    private static final String[] SCRIPTS = {
+        "wjs/jquery.js",
+        "wjs/jquery-plugins.js",
+        "wjs/core.js",
+        "wjs/components.js",
+        "if (window.PrimeFaces){PrimeFaces.settings.locale = 'en_US'; PrimeFaces.settings.projectStage = 'Development'; }",
+        "wjs/jquery.min.js",
+        "var $jq = jQuery.noConflict();",
+        "wjs/jquery-ui.min.js",
+        "wjs/jquery.mousewheel.min.js",
+        "wjs/jquery.ui.scrolltabs.js",
+        "wjs/jquery.qtip.min.js",
+        "wjs/jquery.contextMenu.min.js",
+        "wjs/svg-pan-zoom-container.js",
+        "wjs/Sortable.min.js"
+    };
+    /**
+     * the stylesheets in the style bundle, in the order the page used to load
+     * them
+     */
+    private static final String[] STYLES = {
+        "wjs/components.css",
+        "wjs/jquery.qtip.min.css",
+        "wjs/jquery.contextMenu.css"
+    };
+    /**
+     * the modules, by name: the modules they need, their scripts and their
+     * stylesheets; scripts that don't end in .js are run after the files
+     */
+    private static final String[][][] MODULES = {
+        {{"chart"}, {}, {"wjs/chart.min.js",
+            "Chart.defaults.animation = false;\n"
+            + "Chart.defaults.plugins.legend.display = false;\n"
+            + "Chart.defaults.backgroundColor = 'white';\n"
+            + "Chart.defaults.maintainAspectRatio = false;"}, {}},
+        {{"jstree"}, {}, {"wjs/jstree.min.js"}, {"wjs/jstree.min.css"}},
+        {{"highlight"}, {}, {"wjs/highlight.min.js"}, {"wjs/highlight.min.css"}},
+        {{"katex"}, {}, {"wjs/katex.min.js"}, {"wjs/katex.min.css"}},
+        {{"quill"}, {"katex", "highlight"}, {"wjs/quill.min.js"}, {"wjs/quill.snow.css"}}, //for the formula and syntax modules
+        {{"slickgrid"}, {}, {"wjs/slickgrid.min.js"}, {"wjs/slickgrid.min.css"}},
+        {{"three"}, {}, {"wjs/three.min.js"}, {}}
+    };
+    /**
+     * finds the modules in tfRequire(['name', ...], ...)
+     */
+    private static final Pattern REQUIRE = Pattern.compile("tfRequire\\(\\[([^\\]]*)\\]");
+    /**
+     * finds url(...) in a stylesheet
+     */
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+
+    /**
+     * Only static methods are available
+     */
+    private AssetBundles() {
+    }
+
+    /**
+     * A bundle, ready to be served
+     */
+    public static final class Bundle {
+
+        /**
+         * the file name, including the content hash
+         */
+        public final String name;
+        /**
+         * the MIME type
+         */
+        public final String mimeType;
+        /**
+         * the content
+         */
+        public final byte[] content;
+        /**
+         * the gzipped content
+         */
+        public final byte[] gzipped;
+        /**
+         * a strong entity tag from the content hash
+         */
+        public final String etag;
+
+        /**
+         * Constructor
+         *
+         * @param baseName the file name without the hash or extension
+         * @param extension the file extension, such as ".js"
+         * @param mimeType the MIME type
+         * @param text the content
+         */
+        private Bundle(String baseName, String extension, String mimeType, String text) {
+            this.content = text.getBytes(StandardCharsets.UTF_8);
+            String hash = HttpCache.hash(content, 6);
+            this.name = baseName + "-" + hash + extension;
+            this.mimeType = mimeType;
+            this.gzipped = HttpCache.gzip(content);
+            this.etag = "\"" + hash + "\"";
+        }
+    }
+
+    /**
+     * A library that is only loaded when a component needs it
+     */
+    private static final class Module {
+
+        /**
+         * the name of the module, such as "chart"
+         */
+        private final String name;
+        /**
+         * the modules that have to be loaded first
+         */
+        private final String[] dependencies;
+        /**
+         * the script bundle
+         */
+        private final Bundle script;
+        /**
+         * the style bundle, or null if the module has no stylesheets
+         */
+        private final Bundle style;
+
+        /**
+         * Constructor
+         *
+         * @param definition the name, dependencies, scripts and stylesheets
+         */
+        private Module(String[][] definition) {
+            this.name = definition[0][0];
+            this.dependencies = definition[1];
+            this.script = new Bundle(name, ".js", "application/javascript", join(definition[2], false) + "tfModuleLoaded('" + name + "');\n");
+            this.style = definition[3].length == 0 ? null : new Bundle(name, ".css", "text/css", join(definition[3], true));
+        }
+    }
+
+    /**
+     * Holds the bundles, which are built the first time this class is used
+     */
+    private static final class Holder {
+
+        /**
+         * the modules, by name
+         */
+        private static final Map<String, Module> MODULES_BY_NAME = new LinkedHashMap<>();
+        /**
+         * the bundles, by file name
+         */
+        private static final Map<String, Bundle> BUNDLES = new HashMap<>();
+        /**
+         * the script bundle, which ends with the module loader
+         */
+        private static final Bundle SCRIPT;
+        /**
+         * the style bundle
+         */
+        private static final Bundle STYLE = new Bundle("wachos", ".css", "text/css", join(STYLES, true));
+
+        static {
+            for (String[][] definition : MODULES) {
+                Module module = new Module(definition);
+                MODULES_BY_NAME.put(module.name, module);
+                BUNDLES.put(module.script.name, module.script);
+                if (module.style != null) {
+                    BUNDLES.put(module.style.name, module.style);
+                }
+            }
+            SCRIPT = new Bundle("wachos", ".js", "application/javascript", join(SCRIPTS, false) + getLoaderScript() + TypedArrays.getDecoderScript());
+            BUNDLES.put(SCRIPT.name, SCRIPT);
+            BUNDLES.put(STYLE.name, STYLE);
+        }
+    }
+
+    /**
+     * @return the URL of the script bundle, relative to the page
+     */
+    public static String getScriptUrl() {
+        return PATH + Holder.SCRIPT.name;
+    }
+
+    /**
+     * @return the URL of the style bundle, relative to the page
+     */
+    public static String getStyleUrl() {
+        return PATH + Holder.STYLE.name;
+    }
+
+    /**
+     * Gets a bundle by its file name
+     *
+     * @param name the file name, such as wachos-0123456789ab.js
+     * @return the bundle, or null if there is no bundle with that name
+     */
+    public static Bundle get(String name) {
+        return Holder.BUNDLES.get(name);
+    }
+
+    /**
+     * Gets the tags that load, as part of the page, the modules that some HTML
+     * requires, so that the first layout doesn't wait for them
+     *
+     * @param html HTML that may contain tfRequire calls
+     * @return the link and script tags for the modules, dependencies first
+     */
+    public static String getModuleTags(String html) {
+        Set<String> names = new LinkedHashSet<>();
+        Matcher matcher = REQUIRE.matcher(html);
+        while (matcher.find()) {
+            for (String name : matcher.group(1).split(",")) {
+                addModule(name.trim().replace("'", ""), names);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            Module module = Holder.MODULES_BY_NAME.get(name);
+            if (module.style != null) {
+                sb.append("<link type=\"text/css\" rel=\"stylesheet\" href=\"").append(PATH).append(module.style.name).append("\"/>\n");
+            }
+            sb.append("<script type=\"text/javascript\" src=\"").append(PATH).append(module.script.name).append("\"></script>\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Adds a module after the modules it needs
+     *
+     * @param name the name of the module
+     * @param names the modules so far, in the order they're loaded
+     */
+    private static void addModule(String name, Set<String> names) {
+        Module module = Holder.MODULES_BY_NAME.get(name);
+        if (module == null || names.contains(name)) {
+            return; //a script URL, which isn't loaded with the page
+        }
+        for (String dependency : module.dependencies) {
+            addModule(dependency, names);
+        }
+        names.add(name);
+    }
+
+    /**
+     * Wraps JavaScript so that it runs once the modules are loaded; it runs
+     * right away if they already are. Code wrapped this way runs in the order
+     * it was received, as if it were in a script tag.
+     *
+     * @param modules the names of the modules, or the URLs of scripts
+     * @param javascript the code to run
+     * @return the wrapped code
+     */
+    public static String require(String[] modules, String javascript) {
+        StringBuilder sb = new StringBuilder("tfRequire(");
+        appendNames(modules, sb);
+        return sb.append(", \"").append(javascript.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r")
+                .replace("\u2028", "\\u2028").replace("\u2029", "\\u2029").replace("</", "<\\/")).append("\");").toString();
+    }
+
+    /**
+     * Wraps JavaScript that is sent with exec so that it runs once the modules
+     * are loaded. The code becomes the body of a function, which is called
+     * right away when the modules are already loaded and nothing is waiting
+     * ahead of it, so the usual case costs no more than a function call.
+     *
+     * @param modules the names of the modules, or the URLs of scripts
+     * @param javascript the code to run; its declarations are local to it,
+     * as they are when exec evaluates code in the browser
+     * @return the wrapped code
+     */
+    public static String run(String[] modules, String javascript) {
+        StringBuilder sb = new StringBuilder("tfRun(");
+        appendNames(modules, sb);
+        return sb.append(", function () {\n").append(javascript).append("\n});").toString();
+    }
+
+    /**
+     * Appends the names of modules as a JavaScript array of strings
+     *
+     * @param modules the names of the modules, or the URLs of scripts
+     * @param sb the JavaScript being built
+     */
+    private static void appendNames(String[] modules, StringBuilder sb) {
+        sb.append("[");
+        for (int i = 0; i < modules.length; i++) {
+            sb.append(i == 0 ? "'" : ", '").append(modules[i].replace("\\", "\\\\").replace("'", "\\'")).append("'");
+        }
+        sb.append("]");
+    }
+
+    /**
+     * @return the module loader: tfRequire queues code until its modules are
+     * loaded, loading them (and the modules they need) if they haven't been,
+     * and tfRun skips the queue when there is nothing to wait for
+     */
+    private static String getLoaderScript() {
+        StringBuilder modules = new StringBuilder();
+        for (Module module : Holder.MODULES_BY_NAME.values()) {
+            modules.append(modules.length() == 0 ? "" : ",\n").append("  '").append(module.name).append("': {js: '").append(PATH).append(module.script.name)
+                    .append("', css: ").append(module.style == null ? "null" : "'" + PATH + module.style.name + "'").append(", deps: [");
+            for (int i = 0; i < module.dependencies.length; i++) {
+                modules.append(i == 0 ? "'" : ", '").append(module.dependencies[i]).append("'");
+            }
+            modules.append("]}");
+        }
+        return "/* module loader */\n"
+                + "var tfModules = {\n" + modules + "\n};\n"
+                + "var tfModuleState = {};\n"
+                + "var tfRequireQueue = [];\n"
+                + "var tfRequirePumping = false;\n"
+                + "function tfModuleLoaded(name) {\n"
+                + "  tfModuleState[name] = 'loaded';\n"
+                + "  tfRequirePump();\n"
+                + "}\n"
+                + "function tfModuleReady(name) {\n"
+                + "  var module = tfModules[name];\n"
+                + "  return tfModuleState[name] === 'loaded' && (!module || module.deps.every(tfModuleReady));\n"
+                + "}\n"
+                + "function tfLoadModule(name) {\n"
+                + "  if (tfModuleState[name]) {\n"
+                + "    return;\n"
+                + "  }\n"
+                + "  tfModuleState[name] = 'loading';\n"
+                + "  var module = tfModules[name] || {js: name, css: null, deps: []};\n" //any other name is the URL of a script
+                + "  module.deps.forEach(tfLoadModule);\n"
+                + "  if (module.css && !document.querySelector('link[href=\"' + module.css + '\"]')) {\n"
+                + "    var link = document.createElement('link');\n"
+                + "    link.rel = 'stylesheet';\n"
+                + "    link.type = 'text/css';\n"
+                + "    link.href = module.css;\n"
+                + "    document.head.appendChild(link);\n"
+                + "  }\n"
+                + "  if (document.querySelector('script[src=\"' + module.js + '\"]')) {\n"
+                + "    return;\n" //already on its way with the page
+                + "  }\n"
+                + "  var script = document.createElement('script');\n"
+                + "  script.src = module.js;\n"
+                + "  script.async = false;\n" //run in the order they were added, so dependencies come first
+                + "  if (!tfModules[name]) {\n"
+                + "    script.onload = function () { tfModuleLoaded(name); };\n"
+                + "  }\n"
+                + "  script.onerror = function () {\n"
+                + "    console.log('Could not load ' + module.js);\n"
+                + "    tfModuleLoaded(name);\n" //don't hold up everything else
+                + "  };\n"
+                + "  document.head.appendChild(script);\n"
+                + "}\n"
+                + "function tfRequire(names, code) {\n"
+                + "  tfRequireQueue.push({names: names, code: code});\n"
+                + "  names.forEach(tfLoadModule);\n"
+                + "  tfRequirePump();\n"
+                + "}\n"
+                + "function tfRun(names, code) {\n"
+                + "  if (tfRequireQueue.length === 0 && names.every(tfModuleReady)) {\n"
+                + "    code();\n"
+                + "  } else {\n"
+                + "    tfRequire(names, code);\n"
+                + "  }\n"
+                + "}\n"
+                + "function tfRequirePump() {\n"
+                + "  if (tfRequirePumping) {\n"
+                + "    return;\n"
+                + "  }\n"
+                + "  tfRequirePumping = true;\n"
+                + "  while (tfRequireQueue.length > 0 && tfRequireQueue[0].names.every(tfModuleReady)) {\n"
+                + "    var item = tfRequireQueue.shift();\n"
+                + "    if (typeof item.code === 'function') {\n"
+                + "      try {\n"
+                + "        item.code();\n"
+                + "      } catch (err) {\n"
+                + "        console.log(err);\n"
+                + "      }\n"
+                + "    } else if (item.code) {\n"
+                + "      var script = document.createElement('script');\n" //run like a script tag, so its declarations are global
+                + "      script.text = item.code;\n"
+                + "      document.head.appendChild(script);\n"
+                + "      document.head.removeChild(script);\n"
+                + "    }\n"
+                + "  }\n"
+                + "  tfRequirePumping = false;\n"
+                + "}\n";
+    }
+
+    /**
+     * Joins the files into one
+     *
+     * @param paths the paths within META-INF/resources, or inline scripts
+     * @param css true if the files are stylesheets
+     * @return the joined files
+     */
+    private static String join(String[] paths, boolean css) {
+        StringBuilder sb = new StringBuilder();
+        for (String path : paths) {
+            if (!css && !path.endsWith(".js")) {
+                sb.append(path).append("\n;\n");
+                continue;
+            }
+            String text = read("META-INF/resources/" + path).replaceAll("(?m)^[ \\t]*//[#@] sourceMappingURL=.*$", ""); //the maps aren't bundled
+            sb.append("/* ").append(path).append(" */\n");
+            sb.append(css ? rebase(text) : text).append(css ? "\n" : "\n;\n"); //in case a script doesn't end with a semicolon
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Makes the relative URLs in a stylesheet from wjs/ work from wjs/bundle/
+     *
+     * @param css the stylesheet
+     * @return the stylesheet with its relative URLs going up one more folder
+     */
+    private static String rebase(String css) {
+        Matcher matcher = CSS_URL.matcher(css);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String url = matcher.group(2).trim();
+            boolean relative = !(url.startsWith("data:") || url.startsWith("/") || url.startsWith("#") || url.contains("://"));
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(relative ? "url(" + matcher.group(1) + "../" + url + matcher.group(1) + ")" : matcher.group()));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Reads a text resource from the classpath
+     *
+     * @param path the path within the classpath
+     * @return the text
+     */
+    private static String read(String path) {
+        try (InputStream is = AssetBundles.class.getClassLoader().getResourceAsStream(path)) {
+            if (is == null) {
+                throw new IllegalStateException("Missing bundled resource " + path);
+            }
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
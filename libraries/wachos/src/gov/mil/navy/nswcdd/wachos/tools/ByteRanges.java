@@ -0,0 +1,205 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ByteRanges reads the Range header of a request (such as "bytes=0-1023" or
+ * "bytes=500-600,-100") so that the NanoServer and the WFileServlet can send
+ * part of a large file, and lets a download or a video pick up where it left
+ * off. Overlapping and adjacent ranges are merged, and a request for too many
+ * ranges is answered with the whole file.
+ */
+public final class ByteRanges {
+
+    /**
+     * the most ranges answered in one response
+     */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * Only static methods are available
+     */
+    private ByteRanges() {
+    }
+
+    /**
+     * Reads a Range header
+     *
+     * @param range the Range request header, or null
+     * @param length the length of the file
+     * @return the ranges as {first, last} byte positions, sorted and merged;
+     * null if the whole file should be sent; empty if none of the ranges are
+     * in the file (416 Range Not Satisfiable)
+     */
+    public static long[][] parse(String range, long length) {
+        if (range == null || !range.trim().startsWith("bytes=")) {
+            return null; //not a range we understand, so send it all
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (String spec : range.trim().substring(6).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long first;
+            long last;
+            try {
+                if (dash == 0) { //the last n bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    first = Math.max(0, length - suffix);
+                    last = length - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+                    if (first < 0 || last < first) {
+                        return null; //an invalid range like 9-5 means the header is ignored
+                    }
+                    last = Math.min(last, length - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (first >= length || last < first) {
+                continue; //starts after the end of the file, or asks for no bytes
+            }
+            ranges.add(new long[]{first, last});
+        }
+        if (ranges.size() > MAX_RANGES) {
+            return null;
+        }
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] r : ranges) {
+            long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && r[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], r[1]);
+            } else {
+                merged.add(r);
+            }
+        }
+        return merged.toArray(new long[0][]);
+    }
+
+    /**
+     * Determines whether a range can be sent, according to If-Range; if the
+     * file has changed, the whole file is sent instead
+     *
+     * @param ifRange the If-Range request header, or null
+     * @param etag the current ETag of the file
+     * @param lastModified the current modification time in milliseconds
+     * @return true if there's no If-Range, or it matches the file
+     */
+    public static boolean isIfRangeValid(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !ifRange.startsWith("W/") && ifRange.equals(etag); //a weak tag can't be used for ranges
+        }
+        long date = HttpCache.parseDate(ifRange);
+        return date > 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * @param first the first byte of the range
+     * @param last the last byte of the range
+     * @param length the length of the file
+     * @return the Content-Range header value, such as "bytes 0-1023/4096"
+     */
+    public static String getContentRange(long first, long last, long length) {
+        return "bytes " + first + "-" + last + "/" + length;
+    }
+
+    /**
+     * @param length the length of the file
+     * @return the Content-Range header value for 416 Range Not Satisfiable
+     */
+    public static String getUnsatisfiedRange(long length) {
+        return "bytes */" + length;
+    }
+
+    /**
+     * @param ranges the ranges, from parse
+     * @param separators the separators, from getSeparators, or empty ones for
+     * a single range
+     * @return the length of a response with the ranges and separators
+     */
+    public static long getLength(long[][] ranges, byte[][] separators) {
+        long length = 0;
+        for (long[] range : ranges) {
+            length += range[1] - range[0] + 1;
+        }
+        for (byte[] separator : separators) {
+            length += separator.length;
+        }
+        return length;
+    }
+
+    /**
+     * @return a random boundary for a multipart/byteranges response
+     */
+    public static String newBoundary() {
+        return "WACHOS" + Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets the text that goes before each part, and at the end, of a
+     * multipart/byteranges response
+     *
+     * @param ranges the ranges, from parse
+     * @param boundary the boundary, from newBoundary
+     * @param mimeType the MIME type of the file
+     * @param length the length of the file
+     * @return one more separator than there are ranges; the last one ends the
+     * response
+     */
+    public static byte[][] getSeparators(long[][] ranges, String boundary, String mimeType, long length) {
+        byte[][] separators = new byte[ranges.length + 1][];
+        for (int i = 0; i < ranges.length; i++) {
+            separators[i] = ((i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n"
+                    + "Content-Type: " + mimeType + "\r\n"
+                    + "Content-Range: " + getContentRange(ranges[i][0], ranges[i][1], length) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        separators[ranges.length] = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        return separators;
+    }
+
+}
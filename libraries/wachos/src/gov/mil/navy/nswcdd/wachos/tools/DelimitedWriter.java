@@ -0,0 +1,130 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DelimitedWriter writes rows of values as CSV (or TSV, etc.), one row at a
+ * time, so that large exports don't need to be held in memory
+ */
+public class DelimitedWriter {
+
+    /**
+     * the buffered stream that rows are written to
+     */
+    private final BufferedWriter writer;
+    /**
+     * the character between each value, e.g. ',' or '\t'
+     */
+    private final char delimiter;
+
+    /**
+     * Constructor
+     *
+     * @param out the stream to write to, using UTF-8
+     * @param delimiter the character between each value, e.g. ',' or '\t'
+     */
+    public DelimitedWriter(OutputStream out, char delimiter) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Writes a row of values, followed by a line break
+     *
+     * @param values the values of the row
+     * @throws IOException if the row can't be written
+     */
+    public void writeRow(Iterable<String> values) throws IOException {
+        boolean first = true;
+        for (String value : values) {
+            if (!first) {
+                writer.write(delimiter);
+            }
+            writeValue(value);
+            first = false;
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes a row of values, followed by a line break
+     *
+     * @param values the values of the row
+     * @throws IOException if the row can't be written
+     */
+    public void writeRow(String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                writer.write(delimiter);
+            }
+            writeValue(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes a single value, quoting it if it contains the delimiter, a quote,
+     * or a line break
+     *
+     * @param value the value to write
+     * @throws IOException if the value can't be written
+     */
+    private void writeValue(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(delimiter) == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            writer.write(value);
+        } else {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    /**
+     * Flushes anything that is still buffered to the stream
+     *
+     * @throws IOException if the buffer can't be written
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+}
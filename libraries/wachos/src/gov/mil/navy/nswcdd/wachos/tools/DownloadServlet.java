@@ -0,0 +1,233 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * DownloadServlet streams generated files (e.g. a Table exported as CSV) to the
+ * browser. A download is registered under a one-shot token, and its content is
+ * written straight to the response when the browser follows the link, so the
+ * file never has to be held in memory or pushed over the socket. In a web
+ * application, only the HTTP session that registered a download can request
+ * it.
+ */
+@WebServlet("/" + DownloadServlet.PATH + "/*")
+public class DownloadServlet extends HttpServlet {
+
+    /**
+     * the version of this class for serialization
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * the start of the URI for downloads, which is followed by the token
+     */
+    public static final String PATH = "download";
+    /**
+     * a download that isn't requested within this many milliseconds is
+     * discarded
+     */
+    private static final long EXPIRATION = 5 * 60 * 1000;
+    /**
+     * the downloads that are waiting to be requested, by token
+     */
+    private static final Map<String, Download> DOWNLOADS = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a download that can be requested exactly once
+     *
+     * @param session the user's session, which is the only one allowed to
+     * request the download
+     * @param fileName the name of the file the browser will save
+     * @param contentType the MIME type of the file, e.g. text/csv
+     * @param gzip flag indicating if the content should be gzipped when the
+     * browser accepts it
+     * @param writer writes the content of the file when it's requested
+     * @return the token that identifies the download
+     */
+    public static String register(WSession session, String fileName, String contentType, boolean gzip, DownloadWriter writer) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Download> it = DOWNLOADS.values().iterator(); it.hasNext();) {
+            if (now - it.next().created > EXPIRATION) {
+                it.remove(); //nobody asked for it, so don't hang on to it
+            }
+        }
+        String token = UUID.randomUUID().toString();
+        String sessionId = session.pushContext == null ? null : session.httpSession.getId(); //desktop mode has only one user
+        DOWNLOADS.put(token, new Download(sessionId, fileName, contentType, gzip, writer, now));
+        return token;
+    }
+
+    /**
+     * Removes the download so that it can't be requested again
+     *
+     * @param token the token that identifies the download
+     * @param sessionId the ID of the HTTP session requesting the download, or
+     * null in desktop mode
+     * @return the download, or null if the token isn't valid or belongs to
+     * another session
+     */
+    public static Download take(String token, String sessionId) {
+        Download download = token == null ? null : DOWNLOADS.get(token);
+        if (download == null || (download.sessionId != null && !download.sessionId.equals(sessionId))) {
+            return null; //a token that leaks to another session is no use there
+        }
+        return DOWNLOADS.remove(token, download) ? download : null;
+    }
+
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String pathInfo = request.getPathInfo();
+        HttpSession session = request.getSession(false);
+        Download download = take(pathInfo == null ? null : pathInfo.replaceFirst("/", ""), session == null ? null : session.getId());
+        if (download == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setContentType(download.contentType);
+        response.setHeader("Content-Disposition", download.getContentDisposition());
+        response.setHeader("Cache-Control", "no-store");
+        boolean gzip = download.gzip && HttpCache.acceptsGzip(request.getHeader("Accept-Encoding"));
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        try (OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), 8192) : response.getOutputStream()) {
+            download.writer.write(out);
+        }
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Streams a registered download to the browser";
+    }
+
+    /**
+     * Download is a file that has been registered, but not requested yet
+     */
+    public static class Download {
+
+        /**
+         * the ID of the HTTP session that may request this download, or null
+         * if any request may
+         */
+        private final String sessionId;
+        /**
+         * the name of the file the browser will save
+         */
+        public final String fileName;
+        /**
+         * the MIME type of the file
+         */
+        public final String contentType;
+        /**
+         * flag indicating if the content should be gzipped when accepted
+         */
+        public final boolean gzip;
+        /**
+         * writes the content of the file
+         */
+        public final DownloadWriter writer;
+        /**
+         * when this download was registered
+         */
+        private final long created;
+
+        /**
+         * Constructor
+         *
+         * @param sessionId the ID of the HTTP session that may request this
+         * download, or null if any request may
+         * @param fileName the name of the file the browser will save
+         * @param contentType the MIME type of the file
+         * @param gzip flag indicating if the content should be gzipped
+         * @param writer writes the content of the file
+         * @param created when this download was registered
+         */
+        private Download(String sessionId, String fileName, String contentType, boolean gzip, DownloadWriter writer, long created) {
+            this.sessionId = sessionId;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.gzip = gzip;
+            this.writer = writer;
+            this.created = created;
+        }
+
+        /**
+         * @return the value of the Content-Disposition header, which tells the
+         * browser to save the file
+         */
+        public String getContentDisposition() {
+            return "attachment; filename=\"" + fileName.replace("\"", "") + "\"";
+        }
+    }
+
+    /**
+     * DownloadWriter writes the content of a download as it's being requested
+     */
+    public static interface DownloadWriter {
+
+        /**
+         * Writes the content of the file
+         *
+         * @param out the response stream
+         * @throws IOException if the content can't be written
+         */
+        public void write(OutputStream out) throws IOException;
+    }
+
+}
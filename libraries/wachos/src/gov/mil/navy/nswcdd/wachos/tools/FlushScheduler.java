@@ -0,0 +1,117 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * FlushScheduler collects many changes into one message. Each call to schedule
+ * starts a countdown of the flush interval, unless one is already on its way,
+ * and the flush runs when the countdown ends. Every FlushScheduler shares a
+ * small pool of daemon threads, so busy components don't start a thread for
+ * each flush.
+ */
+public class FlushScheduler {
+
+    /**
+     * the threads that run the flushes of every FlushScheduler
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> {
+        Thread thread = new Thread(r, "WACHOS flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * sends the collected changes
+     */
+    private final Runnable flush;
+    /**
+     * true from the time a flush is scheduled until it starts
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    /**
+     * the number of milliseconds to collect changes before flushing them
+     */
+    private volatile long interval;
+
+    /**
+     * Constructor
+     *
+     * @param interval the number of milliseconds to collect changes before
+     * flushing them
+     * @param flush sends the collected changes
+     */
+    public FlushScheduler(long interval, Runnable flush) {
+        this.interval = interval;
+        this.flush = flush;
+    }
+
+    /**
+     * Starts the countdown to flush, unless one is already on its way
+     */
+    public void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        EXECUTOR.schedule(() -> {
+            scheduled.set(false); //changes made while flushing schedule the next flush
+            try {
+                flush.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets how long changes are collected before they are flushed
+     *
+     * @param millis the number of milliseconds to collect changes before
+     * flushing them
+     */
+    public void setInterval(long millis) {
+        this.interval = millis;
+    }
+
+    /**
+     * @return the number of milliseconds changes are collected before they
+     * are flushed
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+}
@@ -0,0 +1,303 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HttpCache holds the validators and Cache-Control policies shared by the
+ * NanoServer responders and the web-mode servlets, so that browsers can keep
+ * what they downloaded and ask "has it changed?" instead of downloading it
+ * again. Classpath resources get an ETag from a hash of their content, and
+ * files get one from their size and modification time.
+ */
+public final class HttpCache {
+
+    /**
+     * lets the browser keep a response for a year without asking again; only
+     * for URLs whose content never changes, such as the AssetBundles (whose
+     * names include a hash of their content) and the marker images (whose
+     * URLs describe them completely)
+     */
+    public static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    /**
+     * the Cache-Control for the resources bundled in META-INF/resources; their
+     * URLs stay the same when the library is upgraded, so the browser checks
+     * its copy against the ETag each time it's used
+     */
+    private static volatile String bundledCacheControl = "no-cache";
+    /**
+     * the Cache-Control for files in the resource folders, which can change
+     * while the application runs; after a minute the browser asks again
+     */
+    private static volatile String fileCacheControl = "public, max-age=60";
+    /**
+     * the Cache-Control for map tiles, which rarely change
+     */
+    private static volatile String mapTileCacheControl = "public, max-age=604800";
+
+    /**
+     * Only static methods are available
+     */
+    private HttpCache() {
+    }
+
+    /**
+     * @return the Cache-Control for the resources bundled in
+     * META-INF/resources
+     */
+    public static String getBundledCacheControl() {
+        return bundledCacheControl;
+    }
+
+    /**
+     * Sets the Cache-Control for the resources bundled in META-INF/resources
+     *
+     * @param cacheControl the header value, such as "public, max-age=3600"
+     * to check for a new copy at most once an hour; "no-cache" by default
+     */
+    public static void setBundledCacheControl(String cacheControl) {
+        bundledCacheControl = cacheControl;
+    }
+
+    /**
+     * @return the Cache-Control for files in the resource folders
+     */
+    public static String getFileCacheControl() {
+        return fileCacheControl;
+    }
+
+    /**
+     * Sets the Cache-Control for files in the resource folders
+     *
+     * @param cacheControl the header value
+     */
+    public static void setFileCacheControl(String cacheControl) {
+        fileCacheControl = cacheControl;
+    }
+
+    /**
+     * @return the Cache-Control for map tiles
+     */
+    public static String getMapTileCacheControl() {
+        return mapTileCacheControl;
+    }
+
+    /**
+     * Sets the Cache-Control for map tiles
+     *
+     * @param cacheControl the header value
+     */
+    public static void setMapTileCacheControl(String cacheControl) {
+        mapTileCacheControl = cacheControl;
+    }
+
+    /**
+     * Gets a weak ETag from a file's size and modification time, which doesn't
+     * require reading the file
+     *
+     * @param file the file
+     * @return the ETag
+     */
+    public static String getETag(File file) {
+        return getETag(file.length(), file.lastModified());
+    }
+
+    /**
+     * Gets a weak ETag from a size and modification time
+     *
+     * @param length the size in bytes
+     * @param lastModified the modification time in milliseconds
+     * @return the ETag
+     */
+    public static String getETag(long length, long lastModified) {
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Gets a strong ETag from a hash of the content
+     *
+     * @param bytes the content
+     * @return the ETag
+     */
+    public static String getETag(byte[] bytes) {
+        return "\"" + hash(bytes, 12) + "\"";
+    }
+
+    /**
+     * @param content the content to hash
+     * @param length the number of bytes of the hash to keep
+     * @return the first bytes of the SHA-256 hash, in hexadecimal
+     */
+    public static String hash(byte[] content, int length) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param content the content to compress
+     * @return the content, gzipped at the best compression
+     */
+    public static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Determines whether the browser's copy is still good. If-None-Match is
+     * used when the browser sent it; otherwise If-Modified-Since is used.
+     *
+     * @param etag the current ETag, or null
+     * @param lastModified the current modification time in milliseconds, or 0
+     * if unknown
+     * @param ifNoneMatch the If-None-Match request header, or null
+     * @param ifModifiedSince the If-Modified-Since request header, or null
+     * @return true if a 304 Not Modified response can be sent
+     */
+    public static boolean isNotModified(String etag, long lastModified, String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            if (etag == null) {
+                return false;
+            }
+            String opaque = stripWeak(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.equals("*") || stripWeak(trimmed).equals(opaque)) { //GET and HEAD use the weak comparison
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince != null && lastModified > 0) {
+            long since = parseDate(ifModifiedSince);
+            return since >= 0 && lastModified / 1000 <= since / 1000; //HTTP dates only have seconds
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the browser accepts a gzipped response; a q-value of 0,
+     * as in "gzip;q=0", means it doesn't
+     *
+     * @param acceptEncoding the Accept-Encoding request header, or null
+     * @return true if the response can be gzipped
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double wildcard = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return q > 0; //named explicitly, so the wildcard doesn't matter
+            } else if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+        return wildcard > 0;
+    }
+
+    /**
+     * @param etag an ETag
+     * @return the ETag without the W/ that marks it as weak
+     */
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Formats a time for the Last-Modified header
+     *
+     * @param millis the time in milliseconds since 1970
+     * @return the time, such as "Tue, 3 Jun 2008 11:05:30 GMT"
+     */
+    public static String formatDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    /**
+     * Reads a time from an HTTP header
+     *
+     * @param date the time, such as "Tue, 3 Jun 2008 11:05:30 GMT"
+     * @return the time in milliseconds since 1970, or -1 if it can't be read
+     */
+    public static long parseDate(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * JarFiles keeps the jars that "jar:file:" requests read from open, so the
+ * WFileServlet and WFileResponder don't open (and leak) a ZipFile and read its
+ * central directory for every icon or model they serve. A jar is reopened if
+ * it changes on disk, and at most 32 are kept open; a jar is only closed once
+ * nothing is reading from it. Small entries are also kept in memory.
+ */
+public final class JarFiles {
+
+    /**
+     * the most jars kept open
+     */
+    private static final int MAX_JARS = 32;
+    /**
+     * how often to check whether a jar has changed, in milliseconds
+     */
+    private static final long CHECK_INTERVAL = 1000;
+    /**
+     * entries up to this size are kept in memory
+     */
+    private static final int MAX_CACHED_ENTRY = 64 * 1024;
+    /**
+     * the most bytes of entries kept in memory
+     */
+    private static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+    /**
+     * the bytes of entries currently kept in memory
+     */
+    private static long cachedBytes = 0;
+    /**
+     * the open jars by path, least recently used first
+     */
+    private static final Map<String, Jar> JARS = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Only static methods are available
+     */
+    private JarFiles() {
+    }
+
+    /**
+     * An open jar, with an index of its entries
+     */
+    private static final class Jar {
+
+        /**
+         * the jar on disk
+         */
+        private final File file;
+        /**
+         * when the jar was last modified, as of opening it
+         */
+        private final long lastModified;
+        /**
+         * the size of the jar, as of opening it
+         */
+        private final long length;
+        /**
+         * the open jar
+         */
+        private final ZipFile zip;
+        /**
+         * the entries that aren't directories, by name
+         */
+        private final Map<String, Entry> entries = new HashMap<>();
+        /**
+         * when the jar was last checked for changes
+         */
+        private long checked;
+        /**
+         * the number of streams reading from the jar
+         */
+        private int readers = 0;
+        /**
+         * whether the jar has been replaced or evicted, and should close once
+         * nothing is reading from it
+         */
+        private boolean retired = false;
+        /**
+         * the bytes of this jar's entries kept in memory
+         */
+        private long cached = 0;
+
+        /**
+         * Opens a jar and indexes its entries
+         *
+         * @param file the jar on disk
+         * @throws IOException if the jar can't be read
+         */
+        private Jar(File file) throws IOException {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.zip = new ZipFile(file);
+            this.checked = System.currentTimeMillis();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry zipEntry = e.nextElement();
+                if (!zipEntry.isDirectory()) {
+                    entries.put(zipEntry.getName(), new Entry(this, zipEntry));
+                }
+            }
+        }
+
+        /**
+         * @return true if the jar on disk is the one that was opened; checked
+         * at most once per CHECK_INTERVAL, with the lock held
+         */
+        private boolean isCurrent() {
+            long now = System.currentTimeMillis();
+            if (now - checked < CHECK_INTERVAL) {
+                return true;
+            }
+            checked = now;
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+        /**
+         * Marks the jar to be closed once nothing is reading from it, and
+         * forgets its entries' bytes; the lock is held
+         */
+        private void retire() {
+            retired = true;
+            cachedBytes -= cached;
+            cached = 0;
+            closeIfUnused();
+        }
+
+        /**
+         * Closes the jar if it's retired and nothing is reading from it; the
+         * lock is held
+         */
+        private void closeIfUnused() {
+            if (retired && readers == 0) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * An entry in a jar
+     */
+    public static final class Entry {
+
+        /**
+         * the jar the entry is in
+         */
+        private final Jar jar;
+        /**
+         * the entry
+         */
+        private final ZipEntry zipEntry;
+        /**
+         * the entry's bytes, if they're kept in memory
+         */
+        private volatile byte[] bytes;
+        /**
+         * the name of the entry, such as icons/save.png
+         */
+        public final String name;
+        /**
+         * the uncompressed size of the entry, or -1 if it isn't known
+         */
+        public final long size;
+        /**
+         * when the entry was last modified, in milliseconds
+         */
+        public final long lastModified;
+        /**
+         * an entity tag for the entry; strong if it comes from the entry's CRC
+         */
+        public final String etag;
+
+        /**
+         * Constructor
+         *
+         * @param jar the jar the entry is in
+         * @param zipEntry the entry
+         */
+        private Entry(Jar jar, ZipEntry zipEntry) {
+            this.jar = jar;
+            this.zipEntry = zipEntry;
+            this.name = zipEntry.getName();
+            this.size = zipEntry.getSize();
+            this.lastModified = zipEntry.getTime() > 0 ? zipEntry.getTime() : jar.lastModified;
+            this.etag = zipEntry.getCrc() >= 0 && size >= 0 ? "\"j" + Long.toHexString(zipEntry.getCrc()) + "-" + Long.toHexString(size) + "\""
+                    : "W/\"" + Long.toHexString(jar.lastModified) + "-" + Integer.toHexString(name.hashCode()) + "\"";
+        }
+
+        /**
+         * Opens the entry; small entries are read once and then kept in memory
+         *
+         * @return a stream of the entry's bytes, which has to be closed
+         * @throws IOException if the jar has been closed or can't be read
+         */
+        public InputStream open() throws IOException {
+            byte[] content = bytes;
+            if (content == null && size >= 0 && size <= MAX_CACHED_ENTRY) {
+                try (InputStream is = openJar()) {
+                    content = is.readAllBytes();
+                }
+                synchronized (JARS) {
+                    if (bytes == null && !jar.retired && cachedBytes + content.length <= MAX_CACHED_BYTES) {
+                        bytes = content;
+                        jar.cached += content.length;
+                        cachedBytes += content.length;
+                    }
+                }
+            }
+            return content != null ? new ByteArrayInputStream(content) : openJar();
+        }
+
+        /**
+         * Opens parts of the entry, for a Range request; the entry is read
+         * once, front to back
+         *
+         * @param ranges the {first, last} byte positions, sorted and merged
+         * (see ByteRanges.parse)
+         * @param separators the bytes to send before each part, and after the
+         * last one (see ByteRanges.getSeparators)
+         * @return a stream of the separators and parts, which has to be closed
+         * @throws IOException if the jar has been closed or can't be read
+         */
+        public InputStream open(long[][] ranges, byte[][] separators) throws IOException {
+            return new RangeInputStream(open(), ranges, separators);
+        }
+
+        /**
+         * @return a stream straight from the jar, which keeps the jar open
+         * until it's closed
+         * @throws IOException if the jar has been closed or can't be read
+         */
+        private InputStream openJar() throws IOException {
+            synchronized (JARS) {
+                if (jar.retired && jar.readers == 0) {
+                    throw new IOException(jar.file + " has been closed");
+                }
+                jar.readers++;
+            }
+            try {
+                return new FilterInputStream(jar.zip.getInputStream(zipEntry)) {
+                    /**
+                     * whether this stream has already been closed
+                     */
+                    private boolean closed = false;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (closed) {
+                            return;
+                        }
+                        closed = true;
+                        try {
+                            super.close();
+                        } finally {
+                            release();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        /**
+         * Lets the jar close, if it's waiting to
+         */
+        private void release() {
+            synchronized (JARS) {
+                jar.readers--;
+                jar.closeIfUnused();
+            }
+        }
+    }
+
+    /**
+     * Gets an entry in a jar, opening the jar if it isn't already open (or if
+     * it has changed since it was opened)
+     *
+     * @param url the location of the entry, such as
+     * jar:file:/plugins/icons.jar!/icons/save.png
+     * @return the entry, or null if the URL isn't for a jar or the entry isn't
+     * in the jar
+     * @throws IOException if the jar can't be read
+     */
+    public static Entry get(String url) throws IOException {
+        int bang = url.indexOf("!/");
+        if (!url.startsWith("jar:file:") || bang < 0) {
+            return null;
+        }
+        String path = url.substring(9, bang);
+        synchronized (JARS) {
+            Jar jar = JARS.get(path);
+            if (jar == null || !jar.isCurrent()) {
+                if (jar != null) {
+                    JARS.remove(path);
+                    jar.retire();
+                }
+                jar = new Jar(new File(path));
+                JARS.put(path, jar);
+                if (JARS.size() > MAX_JARS) {
+                    Iterator<Jar> eldest = JARS.values().iterator();
+                    eldest.next().retire();
+                    eldest.remove();
+                }
+            }
+            return jar.entries.get(url.substring(bang + 2));
+        }
+    }
+
+    /**
+     * Closes every jar once nothing is reading from it; for when the server
+     * stops. Jars are opened again if they're asked for.
+     */
+    public static void clear() {
+        List<Jar> jars;
+        synchronized (JARS) {
+            jars = new ArrayList<>(JARS.values());
+            JARS.clear();
+            for (Jar jar : jars) {
+                jar.retire();
+            }
+        }
+    }
+
+    /**
+     * Reads the separators and the parts of a stream, in order, skipping what
+     * isn't asked for
+     */
+    private static final class RangeInputStream extends InputStream {
+
+        /**
+         * the whole entry
+         */
+        private final InputStream in;
+        /**
+         * the {first, last} byte positions of the parts
+         */
+        private final long[][] ranges;
+        /**
+         * the bytes before each part, and after the last one
+         */
+        private final byte[][] separators;
+        /**
+         * even numbers are separators and odd numbers are parts, so
+         * separators[part / 2] or ranges[part / 2]
+         */
+        private int part = 0;
+        /**
+         * how much of the current separator has been read
+         */
+        private int separatorRead = 0;
+        /**
+         * the position in the entry
+         */
+        private long position = 0;
+        /**
+         * the bytes left in the current part
+         */
+        private long remaining = 0;
+
+        /**
+         * Constructor
+         *
+         * @param in the whole entry
+         * @param ranges the {first, last} byte positions of the parts
+         * @param separators the bytes before each part, and after the last
+         */
+        private RangeInputStream(InputStream in, long[][] ranges, byte[][] separators) {
+            this.in = in;
+            this.ranges = ranges;
+            this.separators = separators;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (part <= 2 * ranges.length) {
+                if (part % 2 == 0) { //a separator
+                    byte[] separator = separators[part / 2];
+                    if (separatorRead < separator.length) {
+                        int n = Math.min(len, separator.length - separatorRead);
+                        System.arraycopy(separator, separatorRead, b, off, n);
+                        separatorRead += n;
+                        return n;
+                    }
+                    part++;
+                    separatorRead = 0;
+                    if (part / 2 < ranges.length) { //get ready for the next part
+                        skipTo(ranges[part / 2][0]);
+                        remaining = ranges[part / 2][1] - ranges[part / 2][0] + 1;
+                    }
+                } else if (remaining > 0) { //a part
+                    int n = in.read(b, off, (int) Math.min(len, remaining));
+                    if (n < 0) {
+                        throw new EOFException("The entry ended before byte " + position);
+                    }
+                    position += n;
+                    remaining -= n;
+                    return n;
+                } else {
+                    part++;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Skips forward in the entry
+         *
+         * @param target the position to skip to
+         * @throws IOException if the entry ends first
+         */
+        private void skipTo(long target) throws IOException {
+            while (position < target) {
+                long skipped = in.skip(target - position);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException("The entry ended before byte " + target);
+                    }
+                    skipped = 1;
+                }
+                position += skipped;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,385 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * MapTileFetcher downloads map tiles into the local cache for the
+ * MapTileServlet. Tiles download on a bounded pool of threads, with a limit on
+ * how many downloads go to the same host at once. Each host has its own queue,
+ * and a thread is only given a download whose host is under its limit, so a
+ * slow host never holds threads that another host's tiles could use. A tile
+ * that is already downloading isn't downloaded again; everyone who asks for it
+ * waits for the same download. Tiles are written to a temporary file and then
+ * moved into place, so a tile in the cache is always complete. Prefetched
+ * tiles wait behind the tiles that were asked for (a prefetch that someone
+ * then asks for moves up with them), and are skipped when many downloads are
+ * waiting.
+ */
+public class MapTileFetcher {
+
+    /**
+     * numbers the download threads
+     */
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    /**
+     * the download threads; it's never given more downloads than it has
+     * threads
+     */
+    private final ThreadPoolExecutor pool;
+    /**
+     * the most downloads at once
+     */
+    private final int threads;
+    /**
+     * prefetches are skipped when this many downloads are waiting
+     */
+    private final int maxQueuedPrefetches;
+    /**
+     * the most downloads from the same host at once
+     */
+    private final int maxPerHost;
+    /**
+     * the waiting and running downloads of each host; guarded by this
+     */
+    private final Map<String, Host> hosts = new HashMap<>();
+    /**
+     * the waiting and running downloads, by the path of the tile; guarded by
+     * this
+     */
+    private final Map<String, Download> inFlight = new HashMap<>();
+    /**
+     * the number of downloads running, and waiting; guarded by this
+     */
+    private int running = 0, waiting = 0;
+    /**
+     * numbers the downloads in the order they were queued; guarded by this
+     */
+    private long sequence = 0;
+    /**
+     * milliseconds to wait for a connection, and then for data
+     */
+    private volatile int timeout = 10000;
+
+    /**
+     * Constructor
+     *
+     * @param threads the most tiles downloading at once
+     * @param maxPerHost the most tiles downloading from the same host at once
+     */
+    public MapTileFetcher(int threads, int maxPerHost) {
+        this.threads = threads;
+        this.maxPerHost = maxPerHost;
+        this.maxQueuedPrefetches = threads * 2;
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "MapTileFetcher-" + THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets how long to wait for a tile server
+     *
+     * @param timeout milliseconds to wait for a connection, and then for data;
+     * 10000 by default
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Downloads a tile into the cache, or joins the download if it's already
+     * in progress
+     *
+     * @param url where to download the tile from
+     * @param file where the tile goes in the cache
+     * @param keep decides whether downloaded bytes are a real tile that should
+     * be kept; the bytes are returned either way
+     * @return the downloaded bytes, or null if the download failed
+     */
+    public CompletableFuture<byte[]> fetch(String url, File file, Predicate<byte[]> keep) {
+        return fetch(url, file, keep, false);
+    }
+
+    /**
+     * Downloads a tile into the cache in the background, unless it's already
+     * there or downloading, or the pool is busy
+     *
+     * @param url where to download the tile from
+     * @param file where the tile goes in the cache
+     * @param keep decides whether downloaded bytes are a real tile that should
+     * be kept
+     */
+    public void prefetch(String url, File file, Predicate<byte[]> keep) {
+        if (!file.exists()) {
+            fetch(url, file, keep, true);
+        }
+    }
+
+    /**
+     * Downloads a tile, or joins the download in progress; a real request
+     * that joins a waiting prefetch moves it up to the tiles that were asked
+     * for
+     *
+     * @param url where to download the tile from
+     * @param file where the tile goes in the cache
+     * @param keep decides whether downloaded bytes should be kept
+     * @param prefetch whether nobody is waiting for the tile
+     * @return the downloaded bytes, or null if the download failed or a
+     * prefetch was skipped
+     */
+    private CompletableFuture<byte[]> fetch(String url, File file, Predicate<byte[]> keep, boolean prefetch) {
+        String key = file.getAbsolutePath();
+        String hostName;
+        try {
+            hostName = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        synchronized (this) {
+            Download existing = inFlight.get(key);
+            if (existing != null) {
+                if (!prefetch && existing.prefetch) {
+                    boolean queued = existing.host.queue.remove(existing);
+                    existing.prefetch = false;
+                    if (queued) {
+                        existing.host.queue.add(existing); //reordered with its new priority
+                    }
+                }
+                return existing.future;
+            } else if (prefetch && waiting >= maxQueuedPrefetches) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Host host = hosts.computeIfAbsent(hostName, name -> new Host());
+            Download download = new Download(key, url, file, keep, prefetch, host, ++sequence);
+            inFlight.put(key, download);
+            host.queue.add(download);
+            waiting++;
+            dispatch();
+            return download.future;
+        }
+    }
+
+    /**
+     * Starts waiting downloads while there are free threads, taking tiles
+     * that were asked for before prefetches and otherwise the oldest first,
+     * from hosts that are under their limit; the caller holds the lock
+     */
+    private void dispatch() {
+        while (running < threads) {
+            Host best = null;
+            for (Host host : hosts.values()) {
+                if (host.active < maxPerHost && !host.queue.isEmpty() && (best == null || host.queue.peek().compareTo(best.queue.peek()) < 0)) {
+                    best = host;
+                }
+            }
+            if (best == null) {
+                return; //nothing waiting, or only for hosts that are at their limit
+            }
+            Download download = best.queue.poll();
+            best.active++;
+            running++;
+            waiting--;
+            pool.execute(download);
+        }
+    }
+
+    /**
+     * The downloads of one host
+     */
+    private static final class Host {
+
+        /**
+         * the downloads waiting for a turn
+         */
+        private final PriorityQueue<Download> queue = new PriorityQueue<>();
+        /**
+         * the number of downloads running
+         */
+        private int active = 0;
+    }
+
+    /**
+     * A tile to download; tiles that were asked for go before prefetches, and
+     * otherwise downloads go in the order they were queued
+     */
+    private final class Download implements Runnable, Comparable<Download> {
+
+        /**
+         * the path of the tile in the cache
+         */
+        private final String key;
+        /**
+         * where to download the tile from
+         */
+        private final String url;
+        /**
+         * where the tile goes in the cache
+         */
+        private final File file;
+        /**
+         * decides whether downloaded bytes should be kept
+         */
+        private final Predicate<byte[]> keep;
+        /**
+         * whether nobody is waiting for the tile; guarded by MapTileFetcher.this
+         */
+        private boolean prefetch;
+        /**
+         * the host the tile comes from
+         */
+        private final Host host;
+        /**
+         * the order the download was queued in
+         */
+        private final long sequence;
+        /**
+         * completed with the downloaded bytes
+         */
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        /**
+         * Constructor
+         *
+         * @param key the path of the tile in the cache
+         * @param url where to download the tile from
+         * @param file where the tile goes in the cache
+         * @param keep decides whether downloaded bytes should be kept
+         * @param prefetch whether nobody is waiting for the tile
+         * @param host the host the tile comes from
+         * @param sequence the order the download was queued in
+         */
+        private Download(String key, String url, File file, Predicate<byte[]> keep, boolean prefetch, Host host, long sequence) {
+            this.key = key;
+            this.url = url;
+            this.file = file;
+            this.keep = keep;
+            this.prefetch = prefetch;
+            this.host = host;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            byte[] bytes = null;
+            try {
+                bytes = download(url);
+                if (bytes != null && keep.test(bytes)) {
+                    write(bytes, file);
+                }
+            } catch (IOException | RuntimeException e) {
+                bytes = null;
+            } finally {
+                future.complete(bytes);
+                synchronized (MapTileFetcher.this) {
+                    inFlight.remove(key);
+                    host.active--;
+                    running--;
+                    dispatch();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Download other) {
+            return prefetch != other.prefetch ? (prefetch ? 1 : -1) : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Downloads a tile
+     *
+     * @param url where to download the tile from
+     * @return the bytes, or null if the server didn't send the tile
+     * @throws IOException if the tile couldn't be downloaded
+     */
+    private byte[] download(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        if (connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_OK) {
+            ((HttpURLConnection) connection).disconnect();
+            return null;
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Writes a tile to a temporary file next to it, and then moves it into
+     * place
+     *
+     * @param bytes the tile
+     * @param file where the tile goes
+     * @throws IOException if the tile couldn't be written
+     */
+    private static void write(byte[] bytes, File file) throws IOException {
+        Path dir = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getName(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+}
@@ -36,10 +36,7 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.Arrays;
 import org.omnifaces.servlet.FileServlet;
 
@@ -82,6 +79,19 @@ public class MapTileServlet extends FileServlet {
      * a blank image, in the event the map tile is not available
      */
     private static File BLANK;
+    /**
+     * the deepest zoom level that is prefetched
+     */
+    private static final int MAX_ZOOM = 19;
+    /**
+     * downloads the tiles that aren't in the cache
+     */
+    private static volatile MapTileFetcher fetcher = new MapTileFetcher(8, 2);
+    /**
+     * whether to prefetch the tiles around each requested tile, and the four
+     * tiles under it at the next zoom level
+     */
+    private static volatile boolean prefetch = true;
 
     /**
      * Initializes the map tile servlet
@@ -120,10 +130,35 @@ public class MapTileServlet extends FileServlet {
     }
 
     /**
-     * Find the map tile and return it
-     * 
-     * @param pathInfo
-     * @return the map tile
+     * Sets what downloads the tiles that aren't in the cache, such as one with
+     * more threads, or one for a local tile server
+     *
+     * @param fetcher downloads the tiles; 8 threads and 2 per host by default
+     */
+    public static void setFetcher(MapTileFetcher fetcher) {
+        MapTileServlet.fetcher = fetcher;
+    }
+
+    /**
+     * Sets whether to prefetch the tiles around each requested tile (and the
+     * four under it at the next zoom level), so that panning and zooming find
+     * them in the cache
+     *
+     * @param prefetch true to prefetch, which is the default
+     */
+    public static void setPrefetch(boolean prefetch) {
+        MapTileServlet.prefetch = prefetch;
+    }
+
+    /**
+     * Find the map tile and return it; a tile that isn't in the cache is
+     * downloaded, and if another request is already downloading it, this waits
+     * for that download
+     *
+     * @param pathInfo the path of the tile, ending in {z}/{x}/{y} and the file
+     * type
+     * @return the map tile, BLANK if the server doesn't have it, or null if it
+     * couldn't be downloaded
      */
     public static File getFile(String pathInfo) {
         if (pathInfo == null || pathInfo.isEmpty() || "/".equals(pathInfo)) {
@@ -131,25 +166,79 @@ public class MapTileServlet extends FileServlet {
         }
 
         File file = new File(CACHE, pathInfo);
-        if (ONLINE && !file.exists()) {
-            //download the file
-            String z = file.getParentFile().getParentFile().getName();
-            String x = file.getParentFile().getName();
-            String fileType = PATTERN.substring(PATTERN.indexOf("."));
-            String y = file.getName().replace(fileType, "");
-            String url = URL + PATTERN.replace("{x}", x).replace("{y}", y).replace("{z}", z);
-            try (InputStream in = new URL(url).openStream()) {
-                if (UNAVAILABLE != null && Integer.parseInt(z) > 13 && Arrays.equals(in.readAllBytes(), UNAVAILABLE)) {
-                    return BLANK;
-                } else {
-                    file.getParentFile().mkdirs();
-                    Files.copy(in, Paths.get(file.toString()));
-                }
-            } catch (Exception e) {
+        if (!ONLINE) {
+            return file;
+        }
+        String fileType = PATTERN.substring(PATTERN.indexOf("."));
+        int z;
+        long x;
+        long y;
+        try {
+            z = Integer.parseInt(file.getParentFile().getParentFile().getName());
+            x = Long.parseLong(file.getParentFile().getName());
+            y = Long.parseLong(file.getName().replace(fileType, ""));
+        } catch (NumberFormatException | NullPointerException e) {
+            return file; //not a tile
+        }
+        File zoomDir = file.getParentFile().getParentFile().getParentFile();
+        if (!file.exists()) {
+            byte[] bytes = fetcher.fetch(getUrl(z, x, y), file, tile -> !isUnavailable(z, tile)).join();
+            if (bytes == null) {
                 return null;
+            } else if (isUnavailable(z, bytes)) {
+                return BLANK;
+            }
+        }
+        if (prefetch) {
+            long size = 1L << z;
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    if ((dx != 0 || dy != 0) && y + dy >= 0 && y + dy < size) {
+                        prefetch(zoomDir, z, Math.floorMod(x + dx, size), y + dy, fileType); //x wraps around the world
+                    }
+                }
+            }
+            if (z < MAX_ZOOM) {
+                for (int i = 0; i < 4; i++) {
+                    prefetch(zoomDir, z + 1, 2 * x + i % 2, 2 * y + i / 2, fileType);
+                }
             }
         }
         return file;
     }
 
+    /**
+     * Downloads a tile into the cache in the background, if it isn't there
+     *
+     * @param zoomDir the folder that holds the zoom level folders
+     * @param z the zoom level
+     * @param x the column
+     * @param y the row
+     * @param fileType the file extension, such as ".png"
+     */
+    private static void prefetch(File zoomDir, int z, long x, long y, String fileType) {
+        File file = new File(zoomDir, z + File.separator + x + File.separator + y + fileType);
+        fetcher.prefetch(getUrl(z, x, y), file, tile -> !isUnavailable(z, tile));
+    }
+
+    /**
+     * @param z the zoom level
+     * @param x the column
+     * @param y the row
+     * @return the URL to download the tile from
+     */
+    private static String getUrl(int z, long x, long y) {
+        return URL + PATTERN.replace("{x}", String.valueOf(x)).replace("{y}", String.valueOf(y)).replace("{z}", String.valueOf(z));
+    }
+
+    /**
+     * @param z the zoom level
+     * @param bytes a downloaded tile
+     * @return true if the tile is the server's "not available" image, which
+     * isn't kept
+     */
+    private static boolean isUnavailable(int z, byte[] bytes) {
+        return UNAVAILABLE != null && z > 13 && Arrays.equals(bytes, UNAVAILABLE);
+    }
+
 }
@@ -0,0 +1,210 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+
+/**
+ * MarkerImages draws the small colored markers served by the WFileServlet and
+ * WFileResponder (such as FileServlet?color=255,0,0,255) and keeps the encoded
+ * PNGs in a bounded, least-recently-used cache. Map views ask for the same few
+ * colors over and over, so after the first request a marker is just bytes.
+ */
+public final class MarkerImages {
+
+    /**
+     * the most markers kept in the cache
+     */
+    private static final int MAX_MARKERS = 512;
+    /**
+     * the default width and height of a marker, in pixels
+     */
+    private static final int DEFAULT_SIZE = 20;
+    /**
+     * the largest width and height of a marker, in pixels
+     */
+    private static final int MAX_SIZE = 256;
+    /**
+     * a transparent 1x1 image, for when there's nothing to draw
+     */
+    public static final Marker BLANK;
+    /**
+     * the encoded markers, least recently used first
+     */
+    private static final Map<String, Marker> CACHE = new LinkedHashMap<String, Marker>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Marker> eldest) {
+            return size() > MAX_MARKERS;
+        }
+    };
+
+    /**
+     * encodes the blank image once
+     */
+    static {
+        BufferedImage blank = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        blank.setRGB(0, 0, (0xFF));
+        BLANK = new Marker(encode(blank));
+    }
+
+    /**
+     * Only static methods are available
+     */
+    private MarkerImages() {
+    }
+
+    /**
+     * A marker encoded as a PNG
+     */
+    public static final class Marker {
+
+        /**
+         * the PNG bytes; don't modify them
+         */
+        public final byte[] png;
+        /**
+         * a strong entity tag computed from the bytes
+         */
+        public final String etag;
+
+        /**
+         * Constructor
+         *
+         * @param png the PNG bytes
+         */
+        private Marker(byte[] png) {
+            this.png = png;
+            CRC32 crc = new CRC32();
+            crc.update(png);
+            this.etag = "\"m" + Long.toHexString(crc.getValue()) + "-" + png.length + "\"";
+        }
+    }
+
+    /**
+     * Gets a marker, drawing and encoding it only if it isn't in the cache
+     *
+     * @param color the color as "red,green,blue,alpha", each from 0 to 255
+     * @param shape "circle" (the default), "square", "diamond" or "triangle";
+     * may be null
+     * @param size the width and height in pixels as text; may be null for 20
+     * @return the marker, or BLANK if the color is missing or fully
+     * transparent
+     * @throws NumberFormatException if the color or size can't be read
+     */
+    public static Marker get(String color, String shape, String size) {
+        if (color == null || color.equals("0,0,0,0")) {
+            return BLANK;
+        }
+        String normalShape = shape == null || shape.isEmpty() ? "circle" : shape.toLowerCase();
+        int pixels = size == null || size.isEmpty() ? DEFAULT_SIZE : Math.max(1, Math.min(MAX_SIZE, Integer.parseInt(size.trim())));
+        String key = color + "|" + normalShape + "|" + pixels;
+        synchronized (CACHE) {
+            Marker marker = CACHE.get(key);
+            if (marker != null) {
+                return marker;
+            }
+        }
+        String[] rgb = color.split(",");
+        java.awt.Color awtColor = new java.awt.Color(Integer.parseInt(rgb[0].trim()), Integer.parseInt(rgb[1].trim()), Integer.parseInt(rgb[2].trim()), Integer.parseInt(rgb[3].trim()));
+        Marker marker = new Marker(encode(draw(awtColor, normalShape, pixels)));
+        synchronized (CACHE) {
+            CACHE.put(key, marker);
+        }
+        return marker;
+    }
+
+    /**
+     * Draws a marker
+     *
+     * @param color the fill color
+     * @param shape the shape of the marker
+     * @param size the width and height in pixels
+     * @return the image
+     */
+    private static BufferedImage draw(java.awt.Color color, String shape, int size) {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setBackground(new java.awt.Color(0, 0, 0, 0));
+        g.setColor(color);
+        switch (shape) {
+            case "square":
+                g.fillRect(0, 0, size, size);
+                break;
+            case "diamond":
+                g.fillPolygon(new Polygon(new int[]{size / 2, size, size / 2, 0}, new int[]{0, size / 2, size, size / 2}, 4));
+                break;
+            case "triangle":
+                g.fillPolygon(new Polygon(new int[]{size / 2, size, 0}, new int[]{0, size, size}, 3));
+                break;
+            default:
+                g.fillOval(0, 0, size, size);
+                break;
+        }
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Encodes an image as a PNG
+     *
+     * @param image the image to encode
+     * @return the PNG bytes
+     */
+    private static byte[] encode(BufferedImage image) {
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", os);
+            return os.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Removes every marker from the cache
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+}
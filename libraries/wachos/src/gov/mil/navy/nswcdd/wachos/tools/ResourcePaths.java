@@ -0,0 +1,240 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ResourcePaths resolves paths within the resource folders for the
+ * ResourceServlet (and, through it, the WFileServlet and NanoServer) and
+ * remembers the answers, including "not there", so a screen that asks for the
+ * same files thousands of times only touches the disk once per file. The
+ * folders that hold the answers are watched with a WatchService, and an answer
+ * is forgotten when something is created or deleted where it points. Paths
+ * outside the folders are always refused, so those answers never change.
+ */
+final class ResourcePaths {
+
+    /**
+     * the most answers remembered for one resource folder; past this, they're
+     * all forgotten
+     */
+    private static final int MAX_ENTRIES = 10000;
+    /**
+     * the answers, by resource folder and then by requested path
+     */
+    private static final Map<String, Map<String, Entry>> ENTRIES = new ConcurrentHashMap<>();
+    /**
+     * the watched directories, by watch key
+     */
+    private static final Map<WatchKey, Path> WATCHED = new ConcurrentHashMap<>();
+    /**
+     * counts the times answers were forgotten, so an answer that was being
+     * worked out while files changed isn't kept
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+    /**
+     * the watch service, or null if it couldn't be started (answers within the
+     * folders aren't remembered then)
+     */
+    private static final WatchService WATCHER;
+
+    /**
+     * starts the thread that forgets answers when files change
+     */
+    static {
+        WatchService watcher = null;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            e.printStackTrace();
+        }
+        WATCHER = watcher;
+        if (WATCHER != null) {
+            Thread thread = new Thread("ResourcePaths watcher") {
+                @Override
+                public void run() {
+                    watch();
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Only static methods are available
+     */
+    private ResourcePaths() {
+    }
+
+    /**
+     * A remembered answer
+     */
+    private static final class Entry {
+
+        /**
+         * the canonical path the request resolved to
+         */
+        private final String path;
+        /**
+         * the file, or null if it doesn't exist or is outside the folder
+         */
+        private final File file;
+
+        /**
+         * Constructor
+         *
+         * @param path the canonical path the request resolved to
+         * @param file the file, or null
+         */
+        private Entry(String path, File file) {
+            this.path = path;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Resolves a path within a resource folder; only files inside the folder
+     * are returned
+     *
+     * @param resourceFolder the canonical path of the resource folder
+     * @param relativePath the requested path, relative to the folder or
+     * absolute
+     * @return the file, or null if it doesn't exist or is outside the folder
+     */
+    static File resolve(String resourceFolder, String relativePath) {
+        Map<String, Entry> entries = ENTRIES.computeIfAbsent(resourceFolder, folder -> new ConcurrentHashMap<>());
+        Entry entry = entries.get(relativePath);
+        if (entry == null) {
+            long generation = GENERATION.get();
+            String path;
+            try {
+                path = new File(relativePath).isAbsolute() ? new File(relativePath).getCanonicalPath() : new File(resourceFolder, relativePath).getCanonicalPath();
+            } catch (IOException e) {
+                return null;
+            }
+            File file = new File(path);
+            boolean inside = path.equals(resourceFolder) || path.startsWith(resourceFolder + File.separator);
+            boolean watched = inside && WATCHER != null && watch(resourceFolder, file); //watch first, so a change right after the check is seen
+            entry = new Entry(path, inside && file.exists() ? file : null);
+            if (watched || !inside) {
+                if (entries.size() >= MAX_ENTRIES) {
+                    entries.clear();
+                }
+                entries.put(relativePath, entry);
+                if (inside && GENERATION.get() != generation) {
+                    entries.remove(relativePath, entry); //something changed while the file was checked, so the answer may be stale
+                }
+            }
+        }
+        return entry.file;
+    }
+
+    /**
+     * Watches the nearest existing directory that holds a file, so that
+     * creating or deleting the file (or a directory on the way to it) is seen
+     *
+     * @param resourceFolder the canonical path of the resource folder
+     * @param file the file
+     * @return true if the directory is being watched
+     */
+    private static boolean watch(String resourceFolder, File file) {
+        File dir = file.getParentFile();
+        while (dir != null && !dir.isDirectory() && dir.getPath().length() > resourceFolder.length()) {
+            dir = dir.getParentFile();
+        }
+        if (dir == null || !dir.isDirectory()) {
+            return false;
+        }
+        try {
+            Path path = dir.toPath();
+            WatchKey key = path.register(WATCHER, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE); //returns the same key if it's already watched
+            WATCHED.put(key, path);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for changes in the watched directories and forgets the answers
+     * they affect; runs on its own thread
+     */
+    private static void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = WATCHER.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = WATCHED.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    GENERATION.incrementAndGet();
+                    ENTRIES.clear(); //we don't know what changed
+                } else {
+                    forget(dir.resolve((Path) event.context()).toString());
+                }
+            }
+            if (!key.reset()) {
+                WATCHED.remove(key); //the directory is gone
+            }
+        }
+    }
+
+    /**
+     * Forgets the answers for a path and anything under it
+     *
+     * @param path the path that was created or deleted
+     */
+    private static void forget(String path) {
+        GENERATION.incrementAndGet(); //before removing, so an answer put after this is checked again
+        for (Map<String, Entry> entries : ENTRIES.values()) {
+            entries.values().removeIf(entry -> entry.path.equals(path) || entry.path.startsWith(path + File.separator));
+        }
+    }
+
+}
@@ -36,8 +36,9 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.omnifaces.servlet.FileServlet;
 
 /**
@@ -50,9 +51,9 @@ import org.omnifaces.servlet.FileServlet;
 public class ResourceServlet extends FileServlet {
 
     /**
-     * for security reasons, only files within this folder can be downloaded
+     * for security reasons, only files within these folders can be downloaded
      */
-    protected static final List<String> RESOURCE_FOLDERS = new ArrayList<>();
+    protected static final List<String> RESOURCE_FOLDERS = new CopyOnWriteArrayList<>();
 
     /**
      * Returns a short description of the servlet.
@@ -73,8 +74,10 @@ public class ResourceServlet extends FileServlet {
     public static void addResourceFolder(String workingDir, String resourceFolder) {
         try {
             String str = new File(workingDir, resourceFolder).getCanonicalPath();
-            if (!RESOURCE_FOLDERS.contains(str) && new File(str).exists()) {
-                RESOURCE_FOLDERS.add(str);
+            synchronized (RESOURCE_FOLDERS) {
+                if (!RESOURCE_FOLDERS.contains(str) && new File(str).exists()) {
+                    RESOURCE_FOLDERS.add(str);
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -82,10 +85,11 @@ public class ResourceServlet extends FileServlet {
     }
 
     /**
-     * @return the folders that can be accessed in this WFileServlet
+     * @return the folders that can be accessed in this WFileServlet; the list
+     * can't be modified
      */
     public static List<String> getResourceFolders() {
-        return new ArrayList<>(RESOURCE_FOLDERS);
+        return Collections.unmodifiableList(RESOURCE_FOLDERS);
     }
 
     /**
@@ -100,23 +104,20 @@ public class ResourceServlet extends FileServlet {
     }
 
     /**
-     * Gets a file with the relative path to one of the resource folders
+     * Gets a file with the relative path to one of the resource folders; the
+     * answers are remembered until the files change (see ResourcePaths)
      *
      * @param relativePath the path to the requested file
-     * @return the file
+     * @return the file, or null if it isn't in any of the resource folders
      */
     public static File getFile(String relativePath) {
         if (relativePath == null || relativePath.isEmpty() || "/".equals(relativePath)) {
             throw new IllegalArgumentException();
         }
         for (String resourceFolder : RESOURCE_FOLDERS) {
-            try {
-                String path = new File(relativePath).isAbsolute() ? new File(relativePath).getCanonicalPath() : new File(resourceFolder, relativePath).getCanonicalPath();
-                File ret = new File(path);
-                if (ret.exists() && (path.equals(resourceFolder) || path.startsWith(resourceFolder + File.separator))) {
-                    return ret;
-                }
-            } catch (IOException e) {
+            File file = ResourcePaths.resolve(resourceFolder, relativePath);
+            if (file != null) {
+                return file;
             }
         }
         return null;
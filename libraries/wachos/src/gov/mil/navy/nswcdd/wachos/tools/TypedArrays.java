@@ -0,0 +1,139 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * Turns numeric arrays into JavaScript expressions that create typed arrays on
+ * the client. The values are sent as base64 instead of decimal text, so they
+ * don't need to be formatted on the server or parsed on the client, and a
+ * double takes about 11 characters instead of as many as 24.
+ */
+public final class TypedArrays {
+
+    /**
+     * Only static methods are available
+     */
+    private TypedArrays() {
+    }
+
+    /**
+     * Converts the values to a JavaScript expression that creates a
+     * Float64Array
+     *
+     * @param values the values to send to the client
+     * @return the JavaScript expression, such as tfFloat64('AAAAAAAA8D8=')
+     */
+    public static String toFloat64(double[] values) {
+        return toFloat64(values, 0, values.length);
+    }
+
+    /**
+     * Converts part of the values to a JavaScript expression that creates a
+     * Float64Array
+     *
+     * @param values the values to send to the client
+     * @param offset the index of the first value to send
+     * @param length the number of values to send
+     * @return the JavaScript expression, such as tfFloat64('AAAAAAAA8D8=')
+     */
+    public static String toFloat64(double[] values, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asDoubleBuffer().put(values, offset, length);
+        return "tfFloat64('" + Base64.getEncoder().encodeToString(buffer.array()) + "')";
+    }
+
+    /**
+     * Converts the values to a JavaScript expression that creates a
+     * Float32Array, which is half the size of a Float64Array and is what WebGL
+     * uses for geometry
+     *
+     * @param values the values to send to the client
+     * @return the JavaScript expression, such as tfFloat32('AACAPw==')
+     */
+    public static String toFloat32(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return "tfFloat32('" + Base64.getEncoder().encodeToString(buffer.array()) + "')";
+    }
+
+    /**
+     * Converts the values to a JavaScript expression that creates a
+     * Float32Array, rounding each value to a float
+     *
+     * @param values the values to send to the client
+     * @return the JavaScript expression, such as tfFloat32('AACAPw==')
+     */
+    public static String toFloat32(double[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : values) {
+            buffer.putFloat((float) value);
+        }
+        return "tfFloat32('" + Base64.getEncoder().encodeToString(buffer.array()) + "')";
+    }
+
+    /**
+     * Converts the values to a JavaScript expression that creates an
+     * Int32Array, such as the indices of a geometry
+     *
+     * @param values the values to send to the client
+     * @return the JavaScript expression, such as tfInt32('AQAAAA==')
+     */
+    public static String toInt32(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values);
+        return "tfInt32('" + Base64.getEncoder().encodeToString(buffer.array()) + "')";
+    }
+
+    /**
+     * @return the functions that decode the expressions on the client, which
+     * are part of the script bundle in AssetBundles
+     */
+    static String getDecoderScript() {
+        return "/* typed arrays */\n"
+                + "function tfBytes(base64) {\n"
+                + "  var str = atob(base64);\n"
+                + "  var bytes = new Uint8Array(str.length);\n"
+                + "  for (var i = 0; i < str.length; i++) {\n"
+                + "    bytes[i] = str.charCodeAt(i);\n"
+                + "  }\n"
+                + "  return bytes.buffer;\n"
+                + "}\n"
+                + "function tfFloat64(base64) { return new Float64Array(tfBytes(base64)); }\n"
+                + "function tfFloat32(base64) { return new Float32Array(tfBytes(base64)); }\n"
+                + "function tfInt32(base64) { return new Int32Array(tfBytes(base64)); }\n";
+    }
+}
@@ -37,19 +37,19 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import gov.mil.navy.nswcdd.wachos.tools.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import javax.imageio.ImageIO;
 
 /**
  * WFileServlet provides a way to reference local files on the system; it also
@@ -57,18 +57,6 @@ import javax.imageio.ImageIO;
  */
 public class WFileServlet extends HttpServlet {
 
-    /**
-     * send this if the file is not valid, or the color is 0,0,0,0
-     */
-    private static final BufferedImage BLANK_IMAGE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-
-    /**
-     * sets the blank image's only pixel to be transparent
-     */
-    static {
-        BLANK_IMAGE.setRGB(0, 0, (0xFF));
-    }
-
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
      * methods.
@@ -108,6 +96,15 @@ public class WFileServlet extends HttpServlet {
         processRequest(request, response);
     }
 
+    /**
+     * Closes the jars that were opened for "jar:file:" requests
+     */
+    @Override
+    public void destroy() {
+        JarFiles.clear();
+        super.destroy();
+    }
+
     /**
      * Returns a short description of the servlet.
      *
@@ -201,41 +198,154 @@ public class WFileServlet extends HttpServlet {
             file = null; //don't process a request on a folder
         }
         String color = getRequestVariable("color", request);
-
-        try (OutputStream out = response.getOutputStream()) {
+        if (fileStr == null || (file == null && !fileStr.startsWith("jar:file:"))) { //a marker, or nothing to draw
             if (fileStr != null) {
-                if (fileStr.startsWith("jar:file:")) { //it's a file in a jar
-                    ZipFile jarFile = new ZipFile(fileStr.substring(9, fileStr.indexOf("!")));
-                    ZipEntry jarEntry = jarFile.getEntry(fileStr.substring(fileStr.indexOf("!") + 2));
-                    InputStream is = jarFile.getInputStream(jarEntry);
-                    byte[] buffer = new byte[10240]; //10 KB
-                    int bytesRead;
-                    while ((bytesRead = is.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
-                    }
-                } else if (file != null && !file.isDirectory()) { //it's a regular file
-                    InputStream is = new FileInputStream(file); //we'll respond with the file
-                    byte[] buffer = new byte[10240]; //10 KB
-                    int bytesRead;
-                    while ((bytesRead = is.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
+                writeMarker(MarkerImages.BLANK, "no-cache", request, response); //the file may exist the next time it's asked for
+                return;
+            }
+            MarkerImages.Marker marker;
+            try {
+                marker = MarkerImages.get(color, getRequestVariable("shape", request), getRequestVariable("size", request));
+            } catch (RuntimeException e) {
+                writeMarker(MarkerImages.BLANK, "no-cache", request, response); //the color or size couldn't be read
+                return;
+            }
+            writeMarker(marker, HttpCache.IMMUTABLE, request, response); //the URL fully describes the marker, so it never changes
+            return;
+        }
+        if (fileStr.startsWith("jar:file:")) { //it's a file in a jar, from a jar that is kept open
+            JarFiles.Entry entry = JarFiles.get(fileStr);
+            if (entry == null) {
+                writeMarker(MarkerImages.BLANK, "no-cache", request, response);
+                return;
+            }
+            String contentType = entry.name.endsWith(".glb") ? "model/gltf-binary" : URLConnection.guessContentTypeFromName(entry.name);
+            writeParts(entry.size, contentType, entry.etag, entry.lastModified, request, response, (out, ranges, separators) -> {
+                try (InputStream is = entry.size < 0 ? entry.open() : entry.open(ranges, separators)) {
+                    is.transferTo(out);
+                }
+            });
+            return;
+        }
+        String contentType = file.getName().endsWith(".glb") ? "model/gltf-binary" : Files.probeContentType(file.toPath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            writeParts(channel.size(), contentType, HttpCache.getETag(file), file.lastModified(), request, response, (out, ranges, separators) -> {
+                WritableByteChannel target = Channels.newChannel(out);
+                for (int i = 0; i < ranges.length; i++) {
+                    out.write(separators[i]);
+                    for (long position = ranges[i][0]; position <= ranges[i][1];) {
+                        long sent = channel.transferTo(position, ranges[i][1] + 1 - position, target);
+                        if (sent <= 0) {
+                            throw new EOFException("The file ended before byte " + position);
+                        }
+                        position += sent;
                     }
-                } else {
-                    ImageIO.write(BLANK_IMAGE, "png", out); //nothing to draw
                 }
-            } else if (color != null && !color.equals("0,0,0,0")) {
-                BufferedImage img;
-                String[] rgb = color.split(",");
-                img = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g = img.createGraphics();
-                g.setBackground(new java.awt.Color(0, 0, 0, 0));
-                g.setColor(new java.awt.Color(Integer.parseInt(rgb[0]), Integer.parseInt(rgb[1]), Integer.parseInt(rgb[2]), Integer.parseInt(rgb[3])));
-                g.fillOval(0, 0, 20, 20);
-                ImageIO.write(img, "png", out); //write it out
-            } else {
-                ImageIO.write(BLANK_IMAGE, "png", out); //nothing to draw
+                out.write(separators[ranges.length]);
+            });
+        }
+    }
+
+    /**
+     * Writes the parts of a file (or jar entry)
+     */
+    private interface PartsWriter {
+
+        /**
+         * Writes each separator followed by its part, and then the last
+         * separator
+         *
+         * @param out the response body
+         * @param ranges the {first, last} byte positions of the parts
+         * @param separators the bytes before each part, and after the last
+         * @throws IOException if an I/O error occurs
+         */
+        void write(OutputStream out, long[][] ranges, byte[][] separators) throws IOException;
+    }
+
+    /**
+     * Writes a file, or the parts of it the browser asked for with a Range
+     * header (206 Partial Content; several ranges are sent as
+     * multipart/byteranges), or just "304 Not Modified" if the browser already
+     * has it
+     *
+     * @param length the length of the file, or -1 if it isn't known
+     * @param contentType the MIME type of the file, or null if it isn't known
+     * @param etag the ETag of the file
+     * @param lastModified when the file was last modified, in milliseconds
+     * @param request servlet request
+     * @param response servlet response
+     * @param writer writes the parts
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeParts(long length, String contentType, String etag, long lastModified, HttpServletRequest request, HttpServletResponse response,
+            PartsWriter writer) throws IOException {
+        contentType = contentType == null ? "application/octet-stream" : contentType;
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", HttpCache.getFileCacheControl());
+        if (HttpCache.isNotModified(etag, lastModified, request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        long[][] ranges = null;
+        if (length >= 0) {
+            response.setHeader("Accept-Ranges", "bytes");
+            if (ByteRanges.isIfRangeValid(request.getHeader("If-Range"), etag, lastModified)) { //if it changed, send all of it
+                ranges = ByteRanges.parse(request.getHeader("Range"), length);
             }
-            response.setContentType(color != null ? "image/png" : file == null ? "image/png" : file.getName().endsWith(".glb") ? "model/gltf-binary" : Files.probeContentType(file.toPath()));
+        }
+        byte[][] separators;
+        if (ranges == null) {
+            ranges = length <= 0 ? new long[0][] : new long[][]{{0, length - 1}};
+            separators = new byte[ranges.length + 1][0];
+            response.setContentType(contentType);
+        } else if (ranges.length == 0) {
+            response.setHeader("Content-Range", ByteRanges.getUnsatisfiedRange(length));
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        } else if (ranges.length == 1) {
+            separators = new byte[2][0];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", ByteRanges.getContentRange(ranges[0][0], ranges[0][1], length));
+            response.setContentType(contentType);
+        } else {
+            String boundary = ByteRanges.newBoundary();
+            separators = ByteRanges.getSeparators(ranges, boundary, contentType, length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+        }
+        if (length >= 0) {
+            response.setContentLengthLong(ByteRanges.getLength(ranges, separators));
+        }
+        try (OutputStream out = response.getOutputStream()) {
+            writer.write(out, ranges, separators);
+        }
+    }
+
+    /**
+     * Writes a cached marker, or just "304 Not Modified" if the browser
+     * already has it
+     *
+     * @param marker the marker to write
+     * @param cacheControl the Cache-Control header; IMMUTABLE only for a
+     * marker that the URL fully describes, not for a stand-in for a missing
+     * file
+     * @param request servlet request
+     * @param response servlet response
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeMarker(MarkerImages.Marker marker, String cacheControl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader("ETag", marker.etag);
+        response.setHeader("Cache-Control", cacheControl);
+        if (HttpCache.isNotModified(marker.etag, 0, request.getHeader("If-None-Match"), null)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType("image/png");
+        response.setContentLength(marker.png.length);
+        try (OutputStream out = response.getOutputStream()) {
+            out.write(marker.png);
         }
     }
 
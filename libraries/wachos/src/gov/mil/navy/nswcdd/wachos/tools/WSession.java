@@ -87,6 +87,11 @@ public class WSession {
      * keeps track of whether the browser is still opened
      */
     private long heartbeat = 0l;
+    /**
+     * the context path of the web application (e.g. "/HelloWachos"), or "" in
+     * desktop mode
+     */
+    private String contextPath = "";
 
     /**
      * Constructor
@@ -96,6 +101,10 @@ public class WSession {
     public WSession(PushContext pushContext) {
         this.pushContext = pushContext;
         this.httpSession = getHttpSession();
+        FacesContext fc = FacesContext.getCurrentInstance();
+        if (fc != null) {
+            this.contextPath = fc.getExternalContext().getRequestContextPath();
+        }
         httpSession.setAttribute("socketChannel", pushContext);
         httpSession.setAttribute("wsession", WSession.this);
     }
@@ -411,6 +420,14 @@ public class WSession {
         return FacesContext.getCurrentInstance().getExternalContext().getApplicationContextPath().replace("/", "");
     }
 
+    /**
+     * @return the context path of the web application (e.g. "/HelloWachos"),
+     * or "" in desktop mode; servlet URLs start with this
+     */
+    public String getContextPath() {
+        return contextPath;
+    }
+
     /**
      * Set the page title
      *
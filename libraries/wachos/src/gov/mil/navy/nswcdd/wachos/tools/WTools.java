@@ -314,6 +314,28 @@ public class WTools {
                 + "tfDownload();");
     }
 
+    /**
+     * Allows the user to download a file whose content is streamed from the
+     * server when the browser requests it, rather than being pushed to the
+     * browser; use this for large files
+     *
+     * @param session the user's session
+     * @param fileName the name of the file to download
+     * @param contentType the MIME type of the file, e.g. text/csv
+     * @param gzip flag indicating if the content should be gzipped when the
+     * browser accepts it
+     * @param writer writes the content of the file to the response
+     */
+    public static void downloadFile(WSession session, String fileName, String contentType, boolean gzip, DownloadServlet.DownloadWriter writer) {
+        String url = session.getContextPath() + "/" + DownloadServlet.PATH + "/" + DownloadServlet.register(session, fileName, contentType, gzip, writer);
+        session.exec("var tfDownloadLink = document.createElement('a');\n"
+                + "tfDownloadLink.href = '" + url + "';\n"
+                + "tfDownloadLink.download = '" + fileName.replace("\\", "\\\\").replace("'", "\\'") + "';\n"
+                + "document.body.appendChild(tfDownloadLink);\n"
+                + "tfDownloadLink.click();\n"
+                + "tfDownloadLink.remove();");
+    }
+
     /**
      * Sanitizes the text to prevent cross-site scripting
      *
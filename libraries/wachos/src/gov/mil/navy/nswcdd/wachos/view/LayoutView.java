@@ -33,6 +33,7 @@
 package gov.mil.navy.nswcdd.wachos.view;
 
 import gov.mil.navy.nswcdd.wachos.components.layout.Layout;
+import gov.mil.navy.nswcdd.wachos.tools.AssetBundles;
 import gov.mil.navy.nswcdd.wachos.tools.WSession;
 import gov.mil.navy.nswcdd.wachos.tools.WTools;
 import jakarta.faces.context.FacesContext;
@@ -59,7 +60,8 @@ public class LayoutView implements Serializable {
         StringBuilder sb = new StringBuilder();
         WTools.createToolTipsScript(layout, sb);
         layout.exec("$('#tooltipInit" + layout.getId() + "').remove();", 5000); //in five seconds, remove the tooltipInit script from the dom because it'll have been run already; this is for tidying
-        return (layout.toHtml() + "<script id='tooltipInit" + layout.getId() + "'>" + sb.toString() + "</script>").replace("#LAYOUT_ID#", layout.getId());
+        String layoutHtml = layout.toHtml();
+        return (AssetBundles.getModuleTags(layoutHtml) + layoutHtml + "<script id='tooltipInit" + layout.getId() + "'>" + sb.toString() + "</script>").replace("#LAYOUT_ID#", layout.getId());
     }
 
     /**
@@ -32,6 +32,7 @@
  */
 package gov.mil.navy.nswcdd.wachos.view;
 
+import gov.mil.navy.nswcdd.wachos.tools.AssetBundles;
 import gov.mil.navy.nswcdd.wachos.tools.WSession;
 import jakarta.faces.view.ViewScoped;
 import jakarta.inject.Named;
@@ -94,4 +95,18 @@ public class SessionView implements Serializable {
         return session.hashCode() + "";
     }
 
+    /**
+     * @return the URL of the bundle of WACHOS scripts
+     */
+    public String getScriptBundle() {
+        return AssetBundles.getScriptUrl();
+    }
+
+    /**
+     * @return the URL of the bundle of WACHOS stylesheets
+     */
+    public String getStyleBundle() {
+        return AssetBundles.getStyleUrl();
+    }
+
 }
@@ -0,0 +1,82 @@
+/**
+ * #%L NanoHttpd-Core %% Copyright (C) 2012 - 2016 nanohttpd %% Redistribution
+ * and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the nanohttpd nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. #L%
+ */
+package nanohttpd;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The OutputStream of a client socket, which also keeps the socket's channel
+ * (if it has one) so that a {@link Response} can send a file with
+ * {@link java.nio.channels.FileChannel#transferTo}, letting the operating
+ * system copy it straight to the socket.
+ */
+class ChannelOutputStream extends FilterOutputStream {
+
+    /**
+     * the socket's channel, or null if it doesn't have one (such as an SSL
+     * socket)
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Creates a new ChannelOutputStream.
+     *
+     * @param socket the client socket
+     * @throws IOException if the socket's OutputStream can't be opened
+     */
+    ChannelOutputStream(Socket socket) throws IOException {
+        super(socket.getOutputStream());
+        this.channel = socket.getChannel();
+    }
+
+    /**
+     * @return the socket's channel, or null if it doesn't have one
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Writes the bytes all at once, rather than one at a time as
+     * {@link FilterOutputStream} does.
+     *
+     * @param b the data
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+}
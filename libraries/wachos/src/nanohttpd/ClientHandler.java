@@ -102,7 +102,7 @@ public class ClientHandler implements Runnable {
     public void run() {
         OutputStream outputStream = null;
         try {
-            outputStream = this.acceptSocket.getOutputStream();
+            outputStream = new ChannelOutputStream(this.acceptSocket); //so files can be sent with transferTo
             TempFileManager tempFileManager = new TempFileManager();
             HTTPSession session = new HTTPSession(httpd, tempFileManager, this.inputStream, outputStream, this.acceptSocket.getInetAddress());
             while (!this.acceptSocket.isClosed()) {
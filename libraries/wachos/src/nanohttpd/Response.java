@@ -31,12 +31,16 @@ package nanohttpd;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.text.SimpleDateFormat;
@@ -77,6 +81,23 @@ public class Response implements Closeable {
 
     private final long contentLength;
 
+    /**
+     * The file to send with transferTo, or null if the data is sent from the
+     * InputStream.
+     */
+    private FileChannel file;
+
+    /**
+     * The {first, last} byte positions of the parts of the file to send.
+     */
+    private long[][] fileRanges;
+
+    /**
+     * The bytes sent before each part of the file, plus the bytes sent after
+     * the last part.
+     */
+    private byte[][] fileSeparators;
+
     /**
      * Headers for the HTTP response. Use {@link #addHeader(String, String)} to
      * add lines. The lowercase map is automatically kept up to date.
@@ -371,6 +392,12 @@ public class Response implements Closeable {
      * @throws IOException If an error occurs while sending the body.
      */
     private void sendBodyWithCorrectTransferAndEncoding(OutputStream outputStream, long pending) throws IOException {
+        if (this.file != null) {
+            if (this.requestMethod != Method.HEAD) {
+                sendFile(outputStream);
+            }
+            return;
+        }
         if (this.requestMethod != Method.HEAD && this.chunkedTransfer) {
             ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(outputStream);
             sendBodyWithCorrectEncoding(chunkedOutputStream, -1);
@@ -446,6 +473,36 @@ public class Response implements Closeable {
         }
     }
 
+    /**
+     * Sends the parts of the file, and the separators around them. The file is
+     * copied with {@link FileChannel#transferTo}, straight to the socket's
+     * channel if it has one.
+     *
+     * @param outputStream The OutputStream to send data to.
+     * @throws IOException If an error occurs while sending the data, or the
+     * file got shorter.
+     */
+    private void sendFile(OutputStream outputStream) throws IOException {
+        WritableByteChannel target = outputStream instanceof ChannelOutputStream ? ((ChannelOutputStream) outputStream).getChannel() : null;
+        if (target == null) {
+            target = Channels.newChannel(outputStream);
+        }
+        for (int i = 0; i < this.fileRanges.length; i++) {
+            outputStream.write(this.fileSeparators[i]);
+            outputStream.flush(); //the headers have to go out before the file
+            long position = this.fileRanges[i][0];
+            long end = this.fileRanges[i][1] + 1;
+            while (position < end) {
+                long sent = this.file.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new EOFException("The file ended before byte " + position);
+                }
+                position += sent;
+            }
+        }
+        outputStream.write(this.fileSeparators[this.fileRanges.length]);
+    }
+
     /**
      * Sets whether to use chunked transfer encoding for the response.
      *
@@ -529,6 +586,62 @@ public class Response implements Closeable {
         return new Response(status, mimeType, data, totalBytes);
     }
 
+    /**
+     * Creates a response that sends a whole file with
+     * {@link FileChannel#transferTo}.
+     *
+     * @param status The HTTP status of the response.
+     * @param mimeType The MIME type of the response content.
+     * @param file The file, which is closed when the response is.
+     * @return A new Response instance.
+     * @throws IOException If the size of the file can't be read.
+     */
+    public static Response newFileResponse(Status status, String mimeType, FileChannel file) throws IOException {
+        long size = file.size();
+        return newFileResponse(status, mimeType, file, size == 0 ? new long[0][] : new long[][]{{0, size - 1}}, new byte[size == 0 ? 1 : 2][0]);
+    }
+
+    /**
+     * Creates a response that sends parts of a file with
+     * {@link FileChannel#transferTo}, which lets the operating system copy the
+     * file straight to the socket when the socket has a channel. This is used
+     * for 206 Partial Content; a multipart/byteranges response puts the part
+     * headers in the separators.
+     *
+     * @param status The HTTP status of the response.
+     * @param mimeType The MIME type of the response content.
+     * @param file The file, which is closed when the response is.
+     * @param ranges The {first, last} byte positions of the parts to send.
+     * @param separators The bytes to send before each part, plus the bytes to
+     * send after the last part; one more than there are ranges.
+     * @return A new Response instance.
+     */
+    public static Response newFileResponse(Status status, String mimeType, FileChannel file, long[][] ranges, byte[][] separators) {
+        long totalBytes = 0;
+        for (long[] range : ranges) {
+            totalBytes += range[1] - range[0] + 1;
+        }
+        for (byte[] separator : separators) {
+            totalBytes += separator.length;
+        }
+        Response response = new Response(status, mimeType, Channels.newInputStream(file), totalBytes);
+        response.file = file;
+        response.fileRanges = ranges;
+        response.fileSeparators = separators;
+        response.setUseGzip(false); //the length has to be known, and the parts are byte positions in the file
+        return response;
+    }
+
+    /**
+     * Retrieves the file this response sends, if it was created with
+     * newFileResponse.
+     *
+     * @return The file, or {@code null}.
+     */
+    public FileChannel getFile() {
+        return this.file;
+    }
+
     /**
      * Creates a text response with known length.
      *
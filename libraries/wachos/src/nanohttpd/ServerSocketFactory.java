@@ -30,6 +30,7 @@ package nanohttpd;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 
 /**
  * Factory class for creating instances of {@link ServerSocket}.
@@ -60,7 +61,7 @@ public class ServerSocketFactory implements IFactoryThrowing<ServerSocket, IOExc
      */
     @Override
     public ServerSocket create() throws IOException {
-        return new ServerSocket();
+        return ServerSocketChannel.open().socket(); //its sockets have channels, so files can be sent with transferTo
     }
 
 }
@@ -0,0 +1,257 @@
+/**
+ * The WACHOS software library is developed by the U.S. Department of Defense
+ * (DoD).  It is made available to the public under the terms of the Apache
+ * License, Version 2.0.
+ *
+ * Copyright (c) 2025, Naval Surface Warfare Center, Dahlgren Division.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Legal Notice: This software is subject to U.S. government licensing and
+ * export control regulations. Unauthorized use, duplication, or distribution is
+ * prohibited. All rights to this software are held by the U.S. Department of
+ * Defense or its contractors.
+ *
+ * Patent Notice: This software may be subject to one or more patent
+ * applications. Users of the software should ensure they comply with any
+ * licensing or usage terms associated with the patent(s). For more
+ * information, please refer to the patent application (Navy Case 109347,
+ * 18/125,944).
+ *
+ * @author Clinton Winfrey
+ * @version 1.0
+ * @since 2025
+ */
+package gov.mil.navy.nswcdd.wachos.tools;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests MapTileFetcher against a local stand-in for a tile server, which
+ * answers /z/x/y.png with the path as the tile and /missing/... with a 404.
+ * The server can hold its answers until the test lets them go.
+ */
+public class MapTileFetcherTest {
+
+    /**
+     * the stand-in tile server
+     */
+    private HttpServer server;
+    /**
+     * the cache folder
+     */
+    private File cache;
+    /**
+     * the paths the server was asked for, in order
+     */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * the number of requests the server is answering now, and the most at
+     * once
+     */
+    private final AtomicInteger active = new AtomicInteger(), maxActive = new AtomicInteger();
+    /**
+     * counted down once for each request that reaches the server
+     */
+    private volatile CountDownLatch arrived = new CountDownLatch(0);
+    /**
+     * the server holds its answers until this is counted down
+     */
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void setUp() throws IOException {
+        cache = Files.createTempDirectory("tiles").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.add(path);
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            arrived.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+            }
+            active.decrementAndGet();
+            byte[] body = path.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(path.startsWith("/missing/") ? 404 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        server.stop(0);
+        deleteAll(cache);
+    }
+
+    /**
+     * Many requests for the same tile share one download, and the tile is
+     * written to the cache without leaving a temporary file behind
+     */
+    @Test
+    public void testConcurrentRequestsShareOneDownload() throws Exception {
+        release = new CountDownLatch(1);
+        MapTileFetcher fetcher = new MapTileFetcher(4, 2);
+        File file = new File(cache, "1/2/3.png");
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(fetcher.fetch(url("localhost", "/1/2/3.png"), file, tile -> true));
+        }
+        release.countDown();
+        for (CompletableFuture<byte[]> future : futures) {
+            assertArrayEquals("/1/2/3.png".getBytes(StandardCharsets.UTF_8), future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, requests.size());
+        assertArrayEquals("/1/2/3.png".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file.toPath()));
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    /**
+     * A host at its limit doesn't hold threads that another host could use
+     */
+    @Test
+    public void testHostLimitDoesNotBlockOtherHosts() throws Exception {
+        release = new CountDownLatch(1);
+        arrived = new CountDownLatch(2);
+        MapTileFetcher fetcher = new MapTileFetcher(4, 2);
+        List<CompletableFuture<byte[]>> slow = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            slow.add(fetcher.fetch(url("localhost", "/1/0/" + i + ".png"), new File(cache, "a/" + i + ".png"), tile -> true));
+        }
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200); //give any extra downloads to the same host a chance to start
+        assertEquals(2, maxActive.get());
+
+        //127.0.0.1 is another host to the fetcher, so it gets one of the free threads
+        arrived = new CountDownLatch(1);
+        CompletableFuture<byte[]> other = fetcher.fetch(url("127.0.0.1", "/2/0/0.png"), new File(cache, "b/0.png"), tile -> true);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+        assertEquals(3, active.get());
+
+        release.countDown();
+        assertArrayEquals("/2/0/0.png".getBytes(StandardCharsets.UTF_8), other.get(10, TimeUnit.SECONDS));
+        for (CompletableFuture<byte[]> future : slow) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(3, maxActive.get()); //two from the slow host and one from the other
+    }
+
+    /**
+     * A prefetch that someone then asks for goes before tiles that were asked
+     * for after it was queued
+     */
+    @Test
+    public void testRequestPromotesQueuedPrefetch() throws Exception {
+        release = new CountDownLatch(1);
+        arrived = new CountDownLatch(1);
+        MapTileFetcher fetcher = new MapTileFetcher(1, 1);
+        CompletableFuture<byte[]> first = fetcher.fetch(url("localhost", "/3/0/0.png"), new File(cache, "0.png"), tile -> true);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS)); //the only thread is busy now
+        fetcher.prefetch(url("localhost", "/3/0/1.png"), new File(cache, "1.png"), tile -> true);
+        CompletableFuture<byte[]> second = fetcher.fetch(url("localhost", "/3/0/2.png"), new File(cache, "2.png"), tile -> true);
+        CompletableFuture<byte[]> promoted = fetcher.fetch(url("localhost", "/3/0/1.png"), new File(cache, "1.png"), tile -> true);
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertArrayEquals("/3/0/1.png".getBytes(StandardCharsets.UTF_8), promoted.get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("/3/0/0.png", "/3/0/1.png", "/3/0/2.png"), requests);
+    }
+
+    /**
+     * Prefetches wait behind tiles that were asked for
+     */
+    @Test
+    public void testPrefetchWaitsBehindRequests() throws Exception {
+        release = new CountDownLatch(1);
+        arrived = new CountDownLatch(1);
+        MapTileFetcher fetcher = new MapTileFetcher(1, 1);
+        CompletableFuture<byte[]> first = fetcher.fetch(url("localhost", "/4/0/0.png"), new File(cache, "0.png"), tile -> true);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+        fetcher.prefetch(url("localhost", "/4/0/1.png"), new File(cache, "1.png"), tile -> true);
+        CompletableFuture<byte[]> second = fetcher.fetch(url("localhost", "/4/0/2.png"), new File(cache, "2.png"), tile -> true);
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && requests.size() < 3; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(List.of("/4/0/0.png", "/4/0/2.png", "/4/0/1.png"), requests);
+    }
+
+    /**
+     * A tile the server doesn't send isn't cached, and neither is one that
+     * the caller decides not to keep
+     */
+    @Test
+    public void testFailedOrUnwantedTilesAreNotCached() throws Exception {
+        MapTileFetcher fetcher = new MapTileFetcher(2, 2);
+        File missing = new File(cache, "missing.png");
+        assertNull(fetcher.fetch(url("localhost", "/missing/0/0.png"), missing, tile -> true).get(10, TimeUnit.SECONDS));
+        assertFalse(missing.exists());
+
+        File unwanted = new File(cache, "unwanted.png");
+        assertArrayEquals("/5/0/0.png".getBytes(StandardCharsets.UTF_8), fetcher.fetch(url("localhost", "/5/0/0.png"), unwanted, tile -> false).get(10, TimeUnit.SECONDS));
+        assertFalse(unwanted.exists());
+    }
+
+    /**
+     * @param host the host name to use for the stand-in server
+     * @param path the path of the tile
+     * @return the URL of the tile on the stand-in server
+     */
+    private String url(String host, String path) {
+        return "http://" + host + ":" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Deletes a folder and everything in it
+     *
+     * @param file the folder
+     */
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+}